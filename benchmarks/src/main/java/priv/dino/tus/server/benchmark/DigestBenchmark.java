@@ -0,0 +1,68 @@
+package priv.dino.tus.server.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import priv.dino.tus.server.core.util.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 校验和计算：整段摘要与 PATCH 时按缓冲区增量计算的摘要
+ *
+ * @author dino
+ * @date 2026/10/18 17:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+    @Param({"md5", "sha1"})
+    private String algorithm;
+
+    @Param({"64", "4096"})
+    private int valueLength;
+
+    @Param({"8192"})
+    private int bufferSize;
+
+    @Param({"1048576"})
+    private int chunkSize;
+
+    private String value;
+
+    private byte[] chunk;
+
+    @Setup
+    public void setUp() {
+        final char[] chars = new char[valueLength];
+        Arrays.fill(chars, 'a');
+        value = new String(chars);
+        chunk = new byte[chunkSize];
+        ThreadLocalRandom.current().nextBytes(chunk);
+    }
+
+    @Benchmark
+    public String digestAsHex() {
+        return DigestUtils.digestAsHex(algorithm, value);
+    }
+
+    @Benchmark
+    public String incrementalChecksum() {
+        final MessageDigest digest = DigestUtils.getChecksumDigest(algorithm);
+        for (int position = 0; position < chunkSize; position += bufferSize) {
+            final DataBuffer buffer = DefaultDataBufferFactory.sharedInstance
+                    .wrap(ByteBuffer.wrap(chunk, position, Math.min(bufferSize, chunkSize - position)).slice());
+            DigestUtils.update(digest, buffer);
+        }
+        return DigestUtils.encodeChecksum(algorithm, digest.digest());
+    }
+}
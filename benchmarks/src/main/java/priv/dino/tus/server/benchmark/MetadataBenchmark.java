@@ -0,0 +1,61 @@
+package priv.dino.tus.server.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import priv.dino.tus.server.core.util.Utils;
+import priv.dino.tus.server.manage.service.UploadService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload-Metadata 与 Upload-Concat 请求头解析
+ *
+ * @author dino
+ * @date 2026/10/18 17:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private final UploadService uploadService = new UploadService(null, null, null, null, null, null, null, null, null, null);
+
+    private String metadata;
+
+    private String[] concatParts;
+
+    @Setup
+    public void setUp() {
+        metadata = "filename " + encode("resume-2026-final (2).pdf")
+                + ",filetype " + encode("application/pdf")
+                + ",fingerprint " + encode("tus-br-resume-2026-final (2).pdf-application/pdf-1048576-1697619200000-https://tus.example.com/tus/upload/");
+        concatParts = new String[16];
+        for (int i = 0; i < concatParts.length; i++) {
+            concatParts[i] = "https://tus.example.com/tus/upload/" + (1715028131254063104L + i);
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public Map<String, String> uploadServiceParseMetadata() {
+        return uploadService.parseMetadata(metadata);
+    }
+
+    @Benchmark
+    public Map<String, String> utilsParseMetadata() {
+        return Utils.parseMetadata(metadata);
+    }
+
+    @Benchmark
+    public Long[] extractPartialUploadIds() {
+        return Utils.extractPartialUploadIds(concatParts);
+    }
+}
@@ -0,0 +1,94 @@
+package priv.dino.tus.server.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.util.FileSystemUtils;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import priv.dino.tus.server.storage.FileChannelCache;
+import priv.dino.tus.server.storage.FileSyncer;
+import priv.dino.tus.server.storage.FlatStorageLayout;
+import priv.dino.tus.server.storage.LocalStorageImpl;
+import priv.dino.tus.server.storage.StorageDisks;
+import priv.dino.tus.server.storage.StoragePaths;
+import priv.dino.tus.server.storage.TrashCollector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顺序读文件（下载非零拷贝路径）：对比堆内存与池化直接内存缓冲区、不同缓冲区大小的吞吐量与 GC 开销。
+ * 每次操作读完整个文件，吞吐量换算为 MB/s：fileSize / 平均耗时；分配量与 GC 次数见 GC 分析器输出。
+ *
+ * @author dino
+ * @date 2026/10/18 20:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    private static final long FILE_ID = 1L;
+
+    @Param({"67108864"})
+    private int fileSize;
+
+    @Param({"4096", "65536", "262144"})
+    private int bufferSize;
+
+    @Param({"false", "true"})
+    private boolean pooled;
+
+    private Path fileDirectory;
+
+    private FileChannelCache fileChannelCache;
+
+    private LocalStorageImpl localStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fileDirectory = Files.createTempDirectory("tus-benchmark");
+        final TusServerProperties tusServerProperties = new TusServerProperties();
+        tusServerProperties.getBuffer().setDownloadSize(bufferSize);
+        final DataBufferFactory bufferFactory = pooled
+                ? new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT)
+                : new DefaultDataBufferFactory();
+        fileChannelCache = new FileChannelCache(tusServerProperties.getChannelCache());
+        localStorage = new LocalStorageImpl(new StorageDisks(new StoragePaths(fileDirectory, new FlatStorageLayout())), fileChannelCache,
+                new TrashCollector(fileDirectory, tusServerProperties.getTrash()), new FileSyncer(tusServerProperties.getDurability()),
+                bufferFactory, tusServerProperties, new UploadMetrics(new SimpleMeterRegistry()));
+
+        final byte[] content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        Files.write(fileDirectory.resolve(String.valueOf(FILE_ID)), content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileChannelCache.destroy();
+        FileSystemUtils.deleteRecursively(fileDirectory);
+    }
+
+    @Benchmark
+    public Long readFile() {
+        return localStorage.readChunk(FILE_ID, 0, fileSize)
+                .map(buffer -> {
+                    final long read = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return read;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
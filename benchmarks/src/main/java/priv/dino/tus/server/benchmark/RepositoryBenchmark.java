@@ -0,0 +1,125 @@
+package priv.dino.tus.server.benchmark;
+
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mapping.callback.ReactiveEntityCallbacks;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.H2Dialect;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.util.FileSystemUtils;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.entitycallback.FileCallback;
+import priv.dino.tus.server.core.util.SnowflakeIdWorker;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.repository.FileRepositoryCustomImpl;
+import priv.dino.tus.server.manage.repository.LogFileRepository;
+import priv.dino.tus.server.storage.FlatStorageLayout;
+import priv.dino.tus.server.storage.StorageDisks;
+import priv.dino.tus.server.storage.StoragePaths;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传记录存储：创建上传（POST）、推进偏移量（PATCH）与读取上传状态（HEAD）
+ * <p>
+ * r2dbc 使用连接池与内存中的 H2，没有网络往返，结果只能看作 MySQL 的下限；log 的日志按默认间隔批量落盘。
+ *
+ * @author dino
+ * @date 2026/10/19 01:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final String DDL = "CREATE TABLE file ("
+            + "id BIGINT PRIMARY KEY, mime_type VARCHAR(255), content_length BIGINT NOT NULL, content_offset BIGINT NOT NULL,"
+            + " last_uploaded_chunk_number BIGINT NOT NULL DEFAULT 0, original_name VARCHAR(500) NOT NULL, fingerprint VARCHAR(500) NOT NULL,"
+            + " is_partial BOOLEAN NOT NULL DEFAULT TRUE, is_virtual BOOLEAN NOT NULL DEFAULT FALSE, concat_manifest CLOB,"
+            + " content_sha256 CHAR(64), disk TINYINT, created_at TIMESTAMP, updated_at TIMESTAMP,"
+            + " is_completed TINYINT AS (CASE WHEN content_offset = content_length THEN 1 ELSE 0 END))";
+
+    @Param({"log", "r2dbc"})
+    private String store;
+
+    private Path fileDirectory;
+    private LogFileRepository logFileRepository;
+    private ConnectionPool connectionPool;
+    private FileRepository fileRepository;
+    private Long uploadId;
+    private long offset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fileDirectory = Files.createTempDirectory("tus-benchmark");
+        final FileCallback fileCallback = new FileCallback(new SnowflakeIdWorker(1, 1),
+                new StorageDisks(new StoragePaths(fileDirectory, new FlatStorageLayout())));
+        if ("log".equals(store)) {
+            logFileRepository = new LogFileRepository(fileDirectory.resolve(".metadata"), new TusServerProperties.MetadataStore(),
+                    ReactiveEntityCallbacks.create(fileCallback));
+            logFileRepository.afterPropertiesSet();
+            fileRepository = logFileRepository;
+        } else {
+            connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(H2ConnectionFactory.inMemory("tus-benchmark")).build());
+            // 打包后的 jar 里方言探测不可靠，直接指定 H2
+            final DatabaseClient databaseClient = DatabaseClient.builder()
+                    .connectionFactory(connectionPool)
+                    .bindMarkers(H2Dialect.INSTANCE.getBindMarkersFactory())
+                    .build();
+            final R2dbcEntityTemplate template = new R2dbcEntityTemplate(databaseClient, H2Dialect.INSTANCE);
+            template.setEntityCallbacks(ReactiveEntityCallbacks.create(fileCallback));
+            databaseClient.sql("DROP TABLE IF EXISTS file").then().then(databaseClient.sql(DDL).then()).block();
+            fileRepository = new R2dbcRepositoryFactory(template).getRepository(FileRepository.class,
+                    RepositoryComposition.RepositoryFragments.just(new FileRepositoryCustomImpl(databaseClient)));
+        }
+        uploadId = this.createUpload().getId();
+        offset = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (logFileRepository != null) {
+            logFileRepository.destroy();
+        }
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+        FileSystemUtils.deleteRecursively(fileDirectory);
+    }
+
+    @Benchmark
+    public File createUpload() {
+        return fileRepository.save(File.builder()
+                .contentLength(Long.MAX_VALUE)
+                .contentOffset(0L)
+                .lastUploadedChunkNumber(0L)
+                .originalName("resume-2026-final (2).pdf")
+                .fingerprint("tus-br-resume-2026-final (2).pdf-application/pdf-1048576")
+                .mimeType("application/pdf")
+                .partialStatus(false)
+                .build()).block();
+    }
+
+    @Benchmark
+    public Integer advanceOffset() {
+        final Integer updated = fileRepository.advanceOffset(uploadId, offset, 65536).block();
+        offset += 65536;
+        return updated;
+    }
+
+    @Benchmark
+    public File findUploadState() {
+        return fileRepository.findUploadStateById(uploadId).block();
+    }
+}
@@ -0,0 +1,44 @@
+package priv.dino.tus.server.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import priv.dino.tus.server.core.util.SnowflakeIdWorker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ID 生成：CAS 实现与原 synchronized 实现在多线程下的吞吐量，线程数可用 -t 调整
+ * <p>
+ * 两者每毫秒最多 4096 个ID，单线程时都可能受此上限约束；CAS 实现在上限内借用下一毫秒，原实现自旋等待
+ *
+ * @author dino
+ * @date 2026/10/18 17:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class SnowflakeBenchmark {
+
+    private final SnowflakeIdWorker snowflakeIdWorker = new SnowflakeIdWorker(1, 1);
+
+    private final LegacySnowflakeIdWorker legacySnowflakeIdWorker = new LegacySnowflakeIdWorker(1, 1);
+
+    @Benchmark
+    public long lockFree() {
+        return snowflakeIdWorker.nextId();
+    }
+
+    @Benchmark
+    public long synchronizedLegacy() {
+        return legacySnowflakeIdWorker.nextId();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public long[] lockFreeBulk() {
+        return snowflakeIdWorker.nextIds(64);
+    }
+}
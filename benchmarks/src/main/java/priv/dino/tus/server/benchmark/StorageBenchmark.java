@@ -0,0 +1,130 @@
+package priv.dino.tus.server.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.util.FileSystemUtils;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.storage.FileChannelCache;
+import priv.dino.tus.server.storage.FileSyncer;
+import priv.dino.tus.server.storage.FlatStorageLayout;
+import priv.dino.tus.server.storage.LocalStorageImpl;
+import priv.dino.tus.server.storage.StorageDisks;
+import priv.dino.tus.server.storage.StoragePaths;
+import priv.dino.tus.server.storage.TrashCollector;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地存储：按不同分块、缓冲区大小、写入单元大小与落盘方式写入 PATCH 数据，以及合并 Upload-Concat 分片
+ * <p>
+ * 结束时打印每次 writeChunk 发起的文件写入次数（tus.upload.writes）。
+ *
+ * @author dino
+ * @date 2026/10/18 17:05
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    private static final long TARGET_ID = 0L;
+
+    @Param({"1048576", "8388608"})
+    private int chunkSize;
+
+    @Param({"8192", "65536"})
+    private int bufferSize;
+
+    @Param({"4"})
+    private int partCount;
+
+    @Param({"NONE", "CHUNK", "GROUP_COMMIT"})
+    private TusServerProperties.Durability.Mode durability;
+
+    @Param({"0", "1048576", "4194304"})
+    private int writeSize;
+
+    private Path fileDirectory;
+
+    private FileChannelCache fileChannelCache;
+
+    private FileSyncer fileSyncer;
+
+    private LocalStorageImpl localStorage;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private long writeChunks;
+
+    private byte[] chunk;
+
+    private List<File> partialUploads;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fileDirectory = Files.createTempDirectory("tus-benchmark");
+        final TusServerProperties tusServerProperties = new TusServerProperties();
+        tusServerProperties.getDurability().setMode(durability);
+        tusServerProperties.getBuffer().setWriteSize(writeSize);
+        meterRegistry = new SimpleMeterRegistry();
+        fileChannelCache = new FileChannelCache(tusServerProperties.getChannelCache());
+        fileSyncer = new FileSyncer(tusServerProperties.getDurability());
+        localStorage = new LocalStorageImpl(new StorageDisks(new StoragePaths(fileDirectory, new FlatStorageLayout())), fileChannelCache,
+                new TrashCollector(fileDirectory, tusServerProperties.getTrash()), fileSyncer, new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT), tusServerProperties,
+                new UploadMetrics(meterRegistry));
+
+        chunk = new byte[chunkSize];
+        ThreadLocalRandom.current().nextBytes(chunk);
+        localStorage.createFile(File.builder().id(TARGET_ID).build()).block();
+
+        partialUploads = new ArrayList<>(partCount);
+        for (long id = 1; id <= partCount; id++) {
+            Files.write(fileDirectory.resolve(String.valueOf(id)), chunk);
+            partialUploads.add(File.builder().id(id).contentLength((long) chunkSize).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (writeChunks > 0) {
+            System.out.printf("%nwrites/op: %.1f%n", meterRegistry.get("tus.upload.writes").counter().count() / writeChunks);
+        }
+        fileSyncer.destroy();
+        fileChannelCache.destroy();
+        FileSystemUtils.deleteRecursively(fileDirectory);
+    }
+
+    private Flux<DataBuffer> parts() {
+        return Flux.range(0, (chunkSize + bufferSize - 1) / bufferSize)
+                .map(i -> DefaultDataBufferFactory.sharedInstance
+                        .wrap(ByteBuffer.wrap(chunk, i * bufferSize, Math.min(bufferSize, chunkSize - i * bufferSize)).slice()));
+    }
+
+    @Benchmark
+    public Integer writeChunk() {
+        writeChunks++;
+        return localStorage.writeChunk(TARGET_ID, this.parts(), 0).block();
+    }
+
+    @Benchmark
+    public Long mergeChunk() {
+        return localStorage.mergeChunk(TARGET_ID, partialUploads).block();
+    }
+}
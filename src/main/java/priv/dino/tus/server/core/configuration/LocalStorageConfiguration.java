@@ -1,17 +1,27 @@
 package priv.dino.tus.server.core.configuration;
 
+import io.netty.buffer.PooledByteBufAllocator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpStatus;
-import priv.dino.tus.server.core.error.GlobalException;
-import reactor.core.publisher.Mono;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.storage.FileChannelCache;
+import priv.dino.tus.server.storage.FileSyncer;
+import priv.dino.tus.server.storage.StorageLayout;
+import priv.dino.tus.server.storage.StorageLayoutMigrator;
+import priv.dino.tus.server.storage.StorageDisks;
+import priv.dino.tus.server.storage.StoragePaths;
+import priv.dino.tus.server.storage.TrashCollector;
 
 import java.io.IOException;
-import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.function.Function;
-
-import static java.nio.file.StandardOpenOption.WRITE;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 本地存储配置
@@ -23,13 +33,55 @@ import static java.nio.file.StandardOpenOption.WRITE;
 public class LocalStorageConfiguration {
 
     @Bean
-    Function<Path, Mono<AsynchronousFileChannel>> channelFunction() {
-        return path -> Mono.fromSupplier(() -> {
-            try {
-                return AsynchronousFileChannel.open(path, WRITE);
-            } catch (IOException e) {
-                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File open operation fault",e);
+    FileChannelCache fileChannelCache(TusServerProperties tusServerProperties) {
+        return new FileChannelCache(tusServerProperties.getChannelCache());
+    }
+
+    @Bean
+    StoragePaths storagePaths(Path fileDirectory, TusServerProperties tusServerProperties) {
+        return new StoragePaths(fileDirectory, StorageLayout.of(tusServerProperties.getLayout().getStrategy()));
+    }
+
+    /**
+     * 文件目录为 0 号盘，额外的存储目录依次编号，使用相同的路径布局
+     */
+    @Bean
+    StorageDisks storageDisks(StoragePaths storagePaths, TusServerProperties tusServerProperties) throws IOException {
+        final List<StoragePaths> roots = new ArrayList<>();
+        roots.add(storagePaths);
+        for (String root : tusServerProperties.getDisks().getRoots()) {
+            final Path path = Paths.get(root);
+            Files.createDirectories(path);
+            if (!Files.isWritable(path)) {
+                throw new AccessDeniedException(root);
             }
-        });
+            roots.add(new StoragePaths(path, storagePaths.getLayout()));
+        }
+        return new StorageDisks(roots, tusServerProperties.getDisks());
+    }
+
+    @Bean
+    StorageLayoutMigrator storageLayoutMigrator(StoragePaths storagePaths, TusServerProperties tusServerProperties) {
+        return new StorageLayoutMigrator(storagePaths, tusServerProperties.getLayout());
+    }
+
+    @Bean
+    FileSyncer fileSyncer(TusServerProperties tusServerProperties) {
+        return new FileSyncer(tusServerProperties.getDurability());
+    }
+
+    /**
+     * 存储读文件使用的缓冲区工厂，池化时与 Reactor Netty 共用默认的池化分配器
+     */
+    @Bean
+    DataBufferFactory storageBufferFactory(TusServerProperties tusServerProperties) {
+        return tusServerProperties.getBuffer().isPooled()
+                ? new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT)
+                : DefaultDataBufferFactory.sharedInstance;
+    }
+
+    @Bean
+    TrashCollector trashCollector(StorageDisks storageDisks, TusServerProperties tusServerProperties) {
+        return new TrashCollector(storageDisks.getRoots(), tusServerProperties.getTrash());
     }
 }
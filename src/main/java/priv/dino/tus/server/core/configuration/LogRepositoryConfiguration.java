@@ -0,0 +1,36 @@
+package priv.dino.tus.server.core.configuration;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mapping.callback.ReactiveEntityCallbacks;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.repository.LogFileRepository;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 上传记录保存在本地追加日志中
+ * <p>
+ * 优先于 R2DBC 的持久层注入；完全不使用数据库时还需排除 R2DBC 的自动配置，见 {@code application-embedded.yml}。
+ *
+ * @author dino
+ * @date 2026/10/19 01:30
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tus-server.metadata-store", name = "type", havingValue = "log")
+public class LogRepositoryConfiguration {
+
+    @Bean
+    @Primary
+    LogFileRepository logFileRepository(Path fileDirectory, TusServerProperties tusServerProperties, BeanFactory beanFactory) {
+        final TusServerProperties.MetadataStore properties = tusServerProperties.getMetadataStore();
+        final Path directory = properties.getDirectory() == null
+                ? fileDirectory.resolve(".metadata")
+                : Paths.get(properties.getDirectory());
+        return new LogFileRepository(directory, properties, ReactiveEntityCallbacks.create(beanFactory));
+    }
+}
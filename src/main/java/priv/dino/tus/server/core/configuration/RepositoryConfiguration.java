@@ -1,5 +1,6 @@
 package priv.dino.tus.server.core.configuration;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.ReactiveAuditorAware;
@@ -7,12 +8,13 @@ import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
 import reactor.core.publisher.Mono;
 
 /**
- * R2DBC 审计
+ * R2DBC 审计，上传记录使用 LOG 存储时不启用
  *
  * @author dino
  * @date 2021/11/17 09:58
  */
 @Configuration
+@ConditionalOnProperty(prefix = "tus-server.metadata-store", name = "type", havingValue = "r2dbc", matchIfMissing = true)
 @EnableR2dbcAuditing
 public class RepositoryConfiguration {
 
@@ -0,0 +1,15 @@
+package priv.dino.tus.server.core.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 后台定时任务配置
+ *
+ * @author dino
+ * @date 2026/10/18 11:20
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
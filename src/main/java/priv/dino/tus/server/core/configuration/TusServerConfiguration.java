@@ -5,12 +5,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.util.SnowflakeIdWorker;
 
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Optional;
 
 /**
  * 服务配置文件
@@ -41,4 +43,23 @@ public class TusServerConfiguration {
         return writeDirectoryPath;
     }
 
+    @Bean
+    public SnowflakeIdWorker snowflakeIdWorker() {
+        final TusServerProperties.Snowflake snowflake = tusServerProperties.getSnowflake();
+        long workerId;
+        long datacenterId;
+        if (snowflake.getWorkerId() == null && snowflake.getDatacenterId() == null) {
+            final long nodeId = SnowflakeIdWorker.deriveNodeId();
+            workerId = nodeId & SnowflakeIdWorker.MAX_WORKER_ID;
+            datacenterId = nodeId >> 5;
+            log.warn("Snowflake node id {} derived from the network address, different hosts may collide; "
+                    + "set tus-server.snowflake.worker-id and datacenter-id explicitly when running several nodes.", nodeId);
+        } else {
+            workerId = Optional.ofNullable(snowflake.getWorkerId()).orElse(0L);
+            datacenterId = Optional.ofNullable(snowflake.getDatacenterId()).orElse(0L);
+        }
+        log.info("Snowflake id worker: datacenterId={}, workerId={}", datacenterId, workerId);
+        return new SnowflakeIdWorker(workerId, datacenterId, snowflake.getClockSkewTolerance());
+    }
+
 }
@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * tus服务配置参数
  *
@@ -38,4 +42,593 @@ public class TusServerProperties {
      * 文件过期周期（单位：天）
      */
     private Long duration;
+
+    /**
+     * 合并配置
+     */
+    private final Merge merge = new Merge();
+
+    /**
+     * 合并扩展配置
+     */
+    private final Concat concat = new Concat();
+
+    /**
+     * 文件通道缓存配置
+     */
+    private final ChannelCache channelCache = new ChannelCache();
+
+    /**
+     * 上传状态缓存配置
+     */
+    private final StateCache stateCache = new StateCache();
+
+    /**
+     * 偏移量持久化配置
+     */
+    private final OffsetPersistence offsetPersistence = new OffsetPersistence();
+
+    /**
+     * ID 生成配置
+     */
+    private final Snowflake snowflake = new Snowflake();
+
+    /**
+     * 过期上传回收配置
+     */
+    private final Reaper reaper = new Reaper();
+
+    /**
+     * 回收站配置
+     */
+    private final Trash trash = new Trash();
+
+    /**
+     * 文件路径布局配置
+     */
+    private final Layout layout = new Layout();
+
+    /**
+     * 写入持久化配置
+     */
+    private final Durability durability = new Durability();
+
+    /**
+     * 存储读写缓冲区配置
+     */
+    private final Buffer buffer = new Buffer();
+
+    /**
+     * 秒传配置
+     */
+    private final Dedup dedup = new Dedup();
+
+    /**
+     * 整个文件摘要配置
+     */
+    private final Hash hash = new Hash();
+
+    /**
+     * 压缩存储配置
+     */
+    private final Compression compression = new Compression();
+
+    /**
+     * PATCH 准入控制配置
+     */
+    private final Admission admission = new Admission();
+
+    /**
+     * 带宽整形配置
+     */
+    private final Shaping shaping = new Shaping();
+
+    /**
+     * 多盘存储配置
+     */
+    private final Disks disks = new Disks();
+
+    /**
+     * 上传记录存储配置
+     */
+    private final MetadataStore metadataStore = new MetadataStore();
+
+    @Data
+    public static class Merge {
+
+        /**
+         * 同时拷贝的分片数
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Concat {
+
+        /**
+         * 以虚拟合并的方式完成 Upload-Concat final：只记录分片清单，不拷贝数据
+         */
+        private boolean virtualFinal = false;
+
+        /**
+         * 是否在磁盘空闲时将虚拟合并文件压实为单个文件
+         */
+        private boolean compaction = true;
+
+        /**
+         * 压实任务的检查间隔（单位：毫秒）
+         */
+        private long compactionInterval = 60000;
+    }
+
+    @Data
+    public static class ChannelCache {
+
+        /**
+         * 同时打开的文件通道数上限
+         */
+        private int maxOpen = 1024;
+
+        /**
+         * 通道空闲多久后关闭（单位：毫秒）
+         */
+        private long idleTimeout = 30000;
+
+        /**
+         * 空闲通道的检查间隔（单位：毫秒）
+         */
+        private long sweepInterval = 5000;
+    }
+
+    @Data
+    public static class StateCache {
+
+        /**
+         * 缓存的上传数上限
+         */
+        private long maximumSize = 100000;
+
+        /**
+         * 缓存项的存活时间（单位：毫秒），不会超过上传的过期时间
+         */
+        private long ttl = 300000;
+    }
+
+    @Data
+    public static class OffsetPersistence {
+
+        /**
+         * 持久化方式：SYNC 每个 PATCH 同步写库；WRITE_BEHIND 先写缓存，由后台批量写库；
+         * FILESYSTEM 以每个上传旁的偏移量记录为准，数据库同 WRITE_BEHIND 一样异步更新
+         */
+        private Mode mode = Mode.SYNC;
+
+        /**
+         * 后台写库的检查间隔（单位：毫秒）
+         */
+        private long flushInterval = 1000;
+
+        /**
+         * 偏移量在内存中最多停留的时间（单位：毫秒），超过后在下一次检查时写库
+         */
+        private long maxStaleness = 5000;
+
+        /**
+         * 单条批量 UPDATE 包含的上传数上限，待写入的上传数达到该值时立即写库
+         */
+        private int batchSize = 500;
+
+        /**
+         * FILESYSTEM 模式启动时是否按偏移量记录修复数据库中未完成上传的偏移量
+         */
+        private boolean reconcile = true;
+
+        /**
+         * 启动修复时同时读取偏移量记录的上传数
+         */
+        private int reconcileParallelism = 16;
+
+        /**
+         * 偏移量是否异步写库（WRITE_BEHIND 与 FILESYSTEM）
+         */
+        public boolean isWriteBehind() {
+            return mode != Mode.SYNC;
+        }
+
+        public boolean isFilesystem() {
+            return mode == Mode.FILESYSTEM;
+        }
+
+        public enum Mode {
+            SYNC, WRITE_BEHIND, FILESYSTEM
+        }
+    }
+
+    @Data
+    public static class Snowflake {
+
+        /**
+         * 工作机器ID(0~31)，与数据中心ID都未配置时由本机网卡地址派生。
+         * 派生值只有 10 位，不同主机可能相同，部署多个节点时必须为每个节点显式配置
+         */
+        private Long workerId;
+
+        /**
+         * 数据中心ID(0~31)
+         */
+        private Long datacenterId;
+
+        /**
+         * 序列用尽时最多借用的未来时间，以及报警前容忍的时钟回退（单位：毫秒）
+         */
+        private long clockSkewTolerance = 5000;
+    }
+
+    @Data
+    public static class Reaper {
+
+        /**
+         * 是否回收过期未完成的上传（删除记录与文件）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 两次回收之间的间隔（单位：毫秒）
+         */
+        private long interval = 60000;
+
+        /**
+         * 每批查询与删除的上传数
+         */
+        private int batchSize = 500;
+
+        /**
+         * 同时删除的文件数
+         */
+        private int parallelism = 4;
+
+        /**
+         * 每秒最多删除的上传数，避免与正在进行的上传争抢磁盘
+         */
+        private int rate = 1000;
+    }
+
+    @Data
+    public static class Trash {
+
+        /**
+         * 同时删除回收站文件的线程数
+         */
+        private int parallelism = 2;
+    }
+
+    @Data
+    public static class Layout {
+
+        /**
+         * 路径布局：FLAT 平铺；HASH 按id散列到两级目录；TIME 按id中的创建日期分目录
+         */
+        private Strategy strategy = Strategy.FLAT;
+
+        /**
+         * 启动后是否在后台将平铺文件迁移到当前布局
+         */
+        private boolean migrate = true;
+
+        /**
+         * 每秒最多迁移的文件数
+         */
+        private int migrateRate = 1000;
+
+        public enum Strategy {
+            FLAT, HASH, TIME
+        }
+    }
+
+    @Data
+    public static class Durability {
+
+        /**
+         * 落盘方式：NONE 不调用 fsync；CHUNK 每个 PATCH 写完后 fsync；GROUP_COMMIT 定期对期间写过的文件统一 fsync 后放行 PATCH
+         */
+        private Mode mode = Mode.NONE;
+
+        /**
+         * GROUP_COMMIT 模式下两次 fsync 之间的间隔（单位：毫秒）
+         */
+        private long interval = 5;
+
+        public enum Mode {
+            NONE, CHUNK, GROUP_COMMIT
+        }
+    }
+
+    @Data
+    public static class Buffer {
+
+        /**
+         * 是否使用 Netty 池化的直接内存缓冲区读文件，否则每次读取分配堆内存
+         */
+        private boolean pooled = true;
+
+        /**
+         * 下载时每次读文件的缓冲区大小（单位：字节）
+         */
+        private int downloadSize = 65536;
+
+        /**
+         * 合并时单次 transferTo 的最大字节数
+         */
+        private int mergeSize = 8388608;
+
+        /**
+         * 计算 Upload-Checksum 时直接内存数据复制到堆内存的分段大小（单位：字节）
+         */
+        private int checksumSize = 65536;
+
+        /**
+         * PATCH 写文件时合并小缓冲区的写入单元大小（单位：字节），攒满后一次写入，为 0 时每个缓冲区写一次
+         */
+        private int writeSize = 1048576;
+    }
+
+    @Data
+    public static class Dedup {
+
+        /**
+         * 是否开启秒传：指纹与长度相同的已完成上传存在时，新上传直接完成并共用数据
+         */
+        private boolean enabled = false;
+
+        /**
+         * 是否要求 Upload-Metadata 中的 sha256 与服务端计算的摘要一致
+         */
+        private boolean verify = false;
+
+        /**
+         * 最近命中的指纹缓存数量上限
+         */
+        private long cacheSize = 100000;
+
+        /**
+         * 指纹缓存的存活时间（单位：毫秒）
+         */
+        private long cacheTtl = 600000;
+    }
+
+    @Data
+    public static class Hash {
+
+        /**
+         * 是否在 PATCH 写入时增量计算整个文件的 SHA-256，完成后通过 HEAD 与下载的 Digest 响应头返回
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class Compression {
+
+        /**
+         * 是否压缩存储：按 MIME 类型选择的上传以可随机访问的 gzip 分帧写入磁盘
+         */
+        private boolean enabled = false;
+
+        /**
+         * 需要压缩的 MIME 类型，支持 {@code text/*} 形式的通配
+         */
+        private List<String> mimeTypes = new ArrayList<>(Arrays.asList("text/*", "application/json", "application/x-ndjson",
+                "application/xml", "application/javascript", "application/x-yaml", "application/csv"));
+
+        /**
+         * 压缩级别（1-9）
+         */
+        private int level = 6;
+
+        /**
+         * 每帧的最大未压缩字节数，读取任意位置时最多需要解压一帧
+         */
+        private int frameSize = 1048576;
+
+        /**
+         * 缓存帧索引的上传数量上限
+         */
+        private long indexCacheSize = 10000;
+    }
+
+    @Data
+    public static class Admission {
+
+        /**
+         * 是否开启 PATCH 准入控制：并发数超过按写文件延迟自适应调整的上限时直接返回 503
+         */
+        private boolean enabled = false;
+
+        /**
+         * 初始并发上限
+         */
+        private int initialLimit = 64;
+
+        /**
+         * 并发上限的下限
+         */
+        private int minLimit = 4;
+
+        /**
+         * 并发上限的上限
+         */
+        private int maxLimit = 1024;
+
+        /**
+         * 短期写入延迟超过长期基线的倍数达到该值时开始降低上限
+         */
+        private double tolerance = 2.0;
+
+        /**
+         * 每次调整时新上限所占的权重（0-1）
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * 采样写入延迟、调整上限的间隔（单位：毫秒）
+         */
+        private long window = 100;
+
+        /**
+         * Retry-After 的最大值（单位：秒）
+         */
+        private long maxRetryAfter = 60;
+    }
+
+    @Data
+    public static class Shaping {
+
+        /**
+         * 是否按客户端限制上传与下载带宽
+         */
+        private boolean enabled = false;
+
+        /**
+         * 客户端标识来源
+         */
+        private Key key = Key.IP;
+
+        /**
+         * key 为 HEADER 时的请求头名称，为 METADATA 时的 Upload-Metadata 键；请求中没有时按 IP 区分，取到的值只保存摘要
+         */
+        private String keyName = "Authorization";
+
+        /**
+         * 每个客户端的上传速率（单位：字节/秒），为 0 时不限制
+         */
+        private long uploadRate = 0;
+
+        /**
+         * 每个客户端的上传突发量（单位：字节）
+         */
+        private long uploadBurst = 1048576;
+
+        /**
+         * 每个客户端的下载速率（单位：字节/秒），为 0 时不限制
+         */
+        private long downloadRate = 0;
+
+        /**
+         * 每个客户端的下载突发量（单位：字节）
+         */
+        private long downloadBurst = 1048576;
+
+        /**
+         * 所有上传与下载合计的速率上限（单位：字节/秒），为 0 时不限制
+         */
+        private long globalRate = 0;
+
+        /**
+         * 合计的突发量（单位：字节）
+         */
+        private long globalBurst = 8388608;
+
+        /**
+         * 保留令牌桶的客户端数量上限
+         */
+        private long maxClients = 100000;
+
+        /**
+         * 客户端空闲多久后丢弃其令牌桶（单位：毫秒）
+         */
+        private long idleTimeout = 60000;
+
+        public enum Key {
+            /**
+             * 客户端 IP
+             */
+            IP,
+            /**
+             * 请求头，如认证头或租户头
+             */
+            HEADER,
+            /**
+             * 创建上传时 Upload-Metadata 中的键，保存在上传记录中，PATCH 与下载按上传所属客户端整形
+             */
+            METADATA
+        }
+    }
+
+    @Data
+    public static class Disks {
+
+        /**
+         * 额外的存储目录，每块盘一个，与文件目录一起组成存储盘列表；为空时只使用文件目录
+         */
+        private List<String> roots = new ArrayList<>();
+
+        /**
+         * 新上传的放置策略
+         */
+        private Placement placement = Placement.LEAST_USED;
+
+        /**
+         * 每块盘独立的 I/O 线程数，只在配置了多块盘时使用
+         */
+        private int ioThreads = 4;
+
+        /**
+         * 内存中缓存的上传所在盘记录数
+         */
+        private long placementCacheSize = 1000000;
+
+        public enum Placement {
+            /**
+             * 已用空间最少的盘
+             */
+            LEAST_USED,
+            /**
+             * 正在写入的上传最少的盘
+             */
+            LEAST_INFLIGHT,
+            /**
+             * 轮流
+             */
+            ROUND_ROBIN
+        }
+    }
+
+    @Data
+    public static class MetadataStore {
+
+        /**
+         * 上传记录的存储方式
+         */
+        private Type type = Type.R2DBC;
+
+        /**
+         * LOG 存储的目录，为空时使用文件目录下的 .metadata
+         */
+        private String directory;
+
+        /**
+         * 日志定期落盘的间隔（单位：毫秒），为 0 时每次写入都落盘
+         */
+        private long flushInterval = 200;
+
+        /**
+         * 生成快照并丢弃旧日志的间隔（单位：毫秒），为 0 时只在日志超过 maxLogSize 时生成
+         */
+        private long snapshotInterval = 300000;
+
+        /**
+         * 日志超过该大小时立即生成快照（单位：字节）
+         */
+        private long maxLogSize = 67108864;
+
+        public enum Type {
+            /**
+             * 通过 R2DBC 保存在数据库中
+             */
+            R2DBC,
+            /**
+             * 保存在本地的追加日志与快照中，不需要数据库
+             */
+            LOG
+        }
+    }
 }
@@ -29,6 +29,8 @@ public interface TusConstant {
 
     String UPLOAD_EXPIRES_HEADER = "Upload-Expires";
 
+    String DIGEST_HEADER = "Digest";
+
     String ACCESS_CONTROL_ALLOW_ORIGIN_HEADER = "Access-Control-Allow-Origin";
     String ACCESS_CONTROL_ALLOW_ORIGIN_VALUE = "*";
 
@@ -37,8 +39,8 @@ public interface TusConstant {
 
     String ACCESS_CONTROL_EXPOSE_HEADER = "Access-Control-Expose-Headers";
     String ACCESS_CONTROL_EXPOSE_OPTIONS_VALUE = "Tus-Resumable, Tus-Version, Tus-Max-Size, Tus-Extension";
-    String ACCESS_CONTROL_EXPOSE_POST_VALUE = "Location, Tus-Resumable";
-    String ACCESS_CONTROL_EXPOSE_HEAD_VALUE = "Upload-Offset, Upload-Length, Tus-Resumable";
+    String ACCESS_CONTROL_EXPOSE_POST_VALUE = "Location, Upload-Offset, Tus-Resumable";
+    String ACCESS_CONTROL_EXPOSE_HEAD_VALUE = "Upload-Offset, Upload-Length, Tus-Resumable, Digest";
     String ACCESS_CONTROL_EXPOSE_PATCH_VALUE = "Upload-Offset, Tus-Resumable";
 
     String CACHE_CONTROL_HEADER = "Cache-Control";
@@ -47,4 +49,8 @@ public interface TusConstant {
     String URL_PREFIX = "/upload";
 
     String CONTENT_TYPE = "application/offset+octet-stream";
+
+    String UPLOAD_CHECKSUM_HEADER = "Upload-Checksum";
+
+    int CHECKSUM_MISMATCH_STATUS = 460;
 }
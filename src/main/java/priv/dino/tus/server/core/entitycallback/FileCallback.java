@@ -9,6 +9,7 @@ import org.springframework.data.relational.core.sql.SqlIdentifier;
 import org.springframework.stereotype.Component;
 import priv.dino.tus.server.core.util.SnowflakeIdWorker;
 import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.storage.StorageDisks;
 import reactor.core.publisher.Mono;
 
 /**
@@ -26,11 +27,14 @@ public class FileCallback implements
         BeforeSaveCallback<File>,
         AfterSaveCallback<File> {
 
+    private final SnowflakeIdWorker snowflakeIdWorker;
+    private final StorageDisks storageDisks;
+
     @Override
     public Publisher<File> onBeforeConvert(File entity, SqlIdentifier table) {
         log.info("[onBeforeConvert]::: entity :{}, table: {}", entity, table);
         if (entity.getId() == null) {
-            entity.setId(new SnowflakeIdWorker(0, 0).nextId());
+            entity.setId(snowflakeIdWorker.nextId());
             return Mono.just(entity);
         }
         return Mono.just(entity);
@@ -45,12 +49,15 @@ public class FileCallback implements
     @Override
     public Publisher<File> onAfterSave(File entity, OutboundRow outboundRow, SqlIdentifier table) {
         log.info("[onAfterSave]::: entity :{}, outboundRow :{}, table: {}", entity, outboundRow, table);
+        storageDisks.record(entity.getId(), entity.getDisk());
         return Mono.just(entity);
     }
 
     @Override
     public Publisher<File> onAfterConvert(File entity, SqlIdentifier table) {
         log.info("[onAfterConvert]::: entity :{}, table: {}", entity, table);
+        // 读出的上传登记所在盘，之后的文件操作不必逐个盘查找
+        storageDisks.record(entity.getId(), entity.getDisk());
         return Mono.just(entity);
     }
 }
@@ -2,10 +2,12 @@ package priv.dino.tus.server.core.error;
 
 import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * 全局异常属性值类
@@ -24,8 +26,10 @@ public class GlobalErrorAttributes extends DefaultErrorAttributes {
             GlobalException ex = (GlobalException) getError(request);
             map.put("exception", ex.getClass().getSimpleName());
             map.put("message", ex.getMessage());
-            map.put("status", ex.getStatus().value());
-            map.put("error", ex.getStatus().getReasonPhrase());
+            map.put("status", ex.getRawStatusCode());
+            map.put("error", Optional.ofNullable(HttpStatus.resolve(ex.getRawStatusCode()))
+                    .map(HttpStatus::getReasonPhrase)
+                    .orElse(ex.getReason()));
 
             return map;
         }
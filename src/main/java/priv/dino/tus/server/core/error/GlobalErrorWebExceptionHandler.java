@@ -15,6 +15,7 @@ import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
@@ -45,7 +46,18 @@ public class GlobalErrorWebExceptionHandler extends AbstractErrorWebExceptionHan
 
         final Map<String, Object> errorPropertiesMap = getErrorAttributes(request, ErrorAttributeOptions.defaults());
 
-        return ServerResponse.status(HttpStatus.BAD_REQUEST)
+        // 带状态码的异常（如 460、503）按其状态返回，其他异常仍返回 400
+        final Throwable error = getError(request);
+        final int status = error instanceof ResponseStatusException
+                ? ((ResponseStatusException) error).getRawStatusCode()
+                : HttpStatus.BAD_REQUEST.value();
+
+        return ServerResponse.status(status)
+                .headers(headers -> {
+                    if (error instanceof ResponseStatusException) {
+                        headers.addAll(((ResponseStatusException) error).getResponseHeaders());
+                    }
+                })
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(BodyInserters.fromValue(errorPropertiesMap));
     }
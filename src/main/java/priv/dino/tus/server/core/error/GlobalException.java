@@ -21,6 +21,10 @@ public class GlobalException extends ResponseStatusException {
         super(status, message, e);
     }
 
+    public GlobalException(int rawStatusCode, String message) {
+        super(rawStatusCode, message, null);
+    }
+
     public GlobalException(int rawStatusCode, String message, Throwable e) {
         super(rawStatusCode, message, e);
     }
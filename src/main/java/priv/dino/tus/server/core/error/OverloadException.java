@@ -0,0 +1,31 @@
+package priv.dino.tus.server.core.error;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * 服务繁忙异常，返回 503 并通过 Retry-After 告知客户端多久后重试
+ *
+ * @author dino
+ * @date 2026/10/18 22:20
+ */
+public class OverloadException extends GlobalException {
+
+    private final long retryAfter;
+
+    public OverloadException(long retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Server is busy, retry after " + retryAfter + " seconds.");
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        return headers;
+    }
+}
@@ -0,0 +1,183 @@
+package priv.dino.tus.server.core.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传链路指标
+ * <p>
+ * 所有指标在启动时注册，请求处理时只做计数与计时，不按上传id等高基数字段打标签。
+ * <ul>
+ *     <li>tus.upload.bytes：写入的字节数，速率即每秒写入字节数</li>
+ *     <li>tus.upload.writes：写文件的次数，tus.upload.bytes 与之相除即平均每次写入的字节数</li>
+ *     <li>tus.upload.write.latency：单次写文件的耗时，不含等待客户端数据的时间，同时作为准入控制的延迟信号</li>
+ *     <li>tus.upload.patch.duration：PATCH 耗时直方图，phase=storage 为写文件，phase=database 为更新偏移量</li>
+ *     <li>tus.upload.patch.active：正在处理的 PATCH 数</li>
+ *     <li>tus.upload.merge.duration / tus.upload.merge.size：Upload-Concat 合并耗时与字节数</li>
+ *     <li>tus.upload.rejections：被拒绝的请求，reason=checksum（460）、offset_mismatch（409）、expired</li>
+ * </ul>
+ * 指标先注册在自带的组合注册表上，作为 {@link MeterBinder} 绑定时再加入应用的注册表；
+ * 不在构造时依赖应用的注册表，否则注册表初始化时绑定的其他 MeterBinder 依赖存储、存储又依赖本类，形成循环依赖。
+ *
+ * @author dino
+ * @date 2026/10/18 17:40
+ */
+@Component
+public class UploadMetrics implements MeterBinder {
+
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private final Counter bytesWritten;
+    private final Counter writes;
+    private final Timer writeLatency;
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final Timer storageWrite;
+    private final Timer databaseUpdate;
+    private final AtomicInteger activePatches = new AtomicInteger();
+    private final Timer mergeDuration;
+    private final DistributionSummary mergeSize;
+    private final Counter checksumFailures;
+    private final Counter offsetMismatches;
+    private final Counter expiredRejections;
+
+    public UploadMetrics() {
+        this.bytesWritten = Counter.builder("tus.upload.bytes")
+                .description("Bytes written by PATCH requests")
+                .baseUnit("bytes")
+                .register(registry);
+        this.writes = Counter.builder("tus.upload.writes")
+                .description("Positional file writes issued by PATCH requests")
+                .register(registry);
+        this.writeLatency = Timer.builder("tus.upload.write.latency")
+                .description("Time of one positional file write, excluding the wait for client data")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+        this.storageWrite = this.patchTimer(registry, "storage");
+        this.databaseUpdate = this.patchTimer(registry, "database");
+        Gauge.builder("tus.upload.patch.active", activePatches, AtomicInteger::get)
+                .description("PATCH requests in flight")
+                .register(registry);
+        this.mergeDuration = Timer.builder("tus.upload.merge.duration")
+                .description("Time to merge Upload-Concat partial uploads")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(registry);
+        this.mergeSize = DistributionSummary.builder("tus.upload.merge.size")
+                .description("Bytes merged per Upload-Concat final upload")
+                .baseUnit("bytes")
+                .register(registry);
+        this.checksumFailures = this.rejections(registry, "checksum");
+        this.offsetMismatches = this.rejections(registry, "offset_mismatch");
+        this.expiredRejections = this.rejections(registry, "expired");
+    }
+
+    public UploadMetrics(MeterRegistry registry) {
+        this();
+        this.bindTo(registry);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        this.registry.add(registry);
+    }
+
+    private Timer patchTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("tus.upload.patch.duration")
+                .description("PATCH latency split by phase")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .register(registry);
+    }
+
+    private Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("tus.upload.rejections")
+                .description("Rejected upload requests by reason")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesWritten.increment(bytes);
+    }
+
+    public void write(long nanos) {
+        writes.increment();
+        writeLatency.record(nanos, TimeUnit.NANOSECONDS);
+        writeCount.increment();
+        writeNanos.add(nanos);
+    }
+
+    /**
+     * 累计的写文件次数，与 {@link #writeNanos()} 一起按区间求平均写入延迟
+     */
+    public long writeCount() {
+        return writeCount.sum();
+    }
+
+    /**
+     * 累计的写文件耗时（单位：纳秒）
+     */
+    public long writeNanos() {
+        return writeNanos.sum();
+    }
+
+    public <T> Mono<T> timeStorageWrite(Mono<T> source) {
+        return this.time(storageWrite, source);
+    }
+
+    public <T> Mono<T> timeDatabaseUpdate(Mono<T> source) {
+        return this.time(databaseUpdate, source);
+    }
+
+    /**
+     * 统计正在处理的 PATCH 数，订阅时加一，结束、出错或取消时减一
+     */
+    public <T> Mono<T> trackPatch(Mono<T> source) {
+        return source
+                .doOnSubscribe(subscription -> activePatches.incrementAndGet())
+                .doFinally(signalType -> activePatches.decrementAndGet());
+    }
+
+    public void merged(long bytes, long nanos) {
+        mergeDuration.record(nanos, TimeUnit.NANOSECONDS);
+        mergeSize.record(bytes);
+    }
+
+    public void checksumFailure() {
+        checksumFailures.increment();
+    }
+
+    public void offsetMismatch() {
+        offsetMismatches.increment();
+    }
+
+    public void expired() {
+        expiredRejections.increment();
+    }
+
+    private <T> Mono<T> time(Timer timer, Mono<T> source) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return source.doFinally(signalType -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+}
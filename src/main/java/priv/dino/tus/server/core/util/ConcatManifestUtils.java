@@ -0,0 +1,72 @@
+package priv.dino.tus.server.core.util;
+
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.storage.FileSegment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 虚拟合并清单工具类
+ * <p>
+ * 清单按 Upload-Concat 的顺序记录组成最终上传的分片 id 及长度，格式为 {@code id:length,id:length}
+ *
+ * @author dino
+ * @date 2026/10/18 11:05
+ */
+public final class ConcatManifestUtils {
+
+    private static final String PART_SEPARATOR = ",";
+    private static final String LENGTH_SEPARATOR = ":";
+
+    private ConcatManifestUtils() {
+    }
+
+    public static String format(List<File> partialUploads) {
+        StringBuilder builder = new StringBuilder();
+        for (File partialUpload : partialUploads) {
+            if (builder.length() > 0) {
+                builder.append(PART_SEPARATOR);
+            }
+            builder.append(partialUpload.getId()).append(LENGTH_SEPARATOR).append(partialUpload.getContentLength());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 解析清单，返回只包含 id 与 contentLength 的分片列表
+     */
+    public static List<File> parse(String manifest) {
+        List<File> partialUploads = new ArrayList<>();
+        for (String part : manifest.split(PART_SEPARATOR)) {
+            String[] element = part.split(LENGTH_SEPARATOR);
+            partialUploads.add(File.builder()
+                    .id(Long.valueOf(element[0]))
+                    .contentLength(Long.valueOf(element[1]))
+                    .build());
+        }
+        return partialUploads;
+    }
+
+    /**
+     * 将最终上传中的 [position, position + count) 区间映射到各分片文件中的区间
+     */
+    public static List<FileSegment> slice(List<File> partialUploads, long position, long count) {
+        List<FileSegment> segments = new ArrayList<>();
+        long start = 0;
+        long end = position + count;
+        for (File partialUpload : partialUploads) {
+            long partEnd = start + partialUpload.getContentLength();
+            if (partEnd > position && start < end) {
+                long from = Math.max(position, start);
+                long to = Math.min(end, partEnd);
+                segments.add(new FileSegment(partialUpload.getId(), from - start, to - from));
+            }
+            if (partEnd >= end) {
+                break;
+            }
+            start = partEnd;
+        }
+        return segments;
+    }
+}
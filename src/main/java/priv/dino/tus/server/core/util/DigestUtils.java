@@ -6,6 +6,7 @@ import org.springframework.util.Base64Utils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -25,6 +26,8 @@ public class DigestUtils {
 
     private static final String MD5 = "md5";
 
+    private static final ThreadLocal<byte[]> STAGING = ThreadLocal.withInitial(() -> new byte[0]);
+
     public static String digestAsHex(String algorithm, String value) {
         if (MD5.equals(algorithm)) {
             return md5DigestAsHex(value.getBytes(UTF_8));
@@ -32,6 +35,69 @@ public class DigestUtils {
         return sha1DigestAsHex(value.getBytes(UTF_8));
     }
 
+    /**
+     * 获取 Upload-Checksum 算法对应的增量摘要
+     *
+     * @param algorithm Upload-Checksum 中的算法名称（md5、sha1）
+     * @return java.security.MessageDigest
+     */
+    public static MessageDigest getChecksumDigest(String algorithm) {
+        if (MD5.equals(algorithm)) {
+            return getDigest("MD5");
+        }
+        return getSha1Digest();
+    }
+
+    /**
+     * 按 {@link #digestAsHex(String, String)} 相同的规则编码摘要结果
+     *
+     * @param algorithm Upload-Checksum 中的算法名称（md5、sha1）
+     * @param digest 摘要结果
+     * @return java.lang.String
+     */
+    public static String encodeChecksum(String algorithm, byte[] digest) {
+        if (MD5.equals(algorithm)) {
+            return toHex(digest);
+        }
+        return Base64Utils.encodeToString(digest);
+    }
+
+    /**
+     * 将数据缓冲区的可读内容写入摘要，不改变缓冲区的读取位置
+     *
+     * @param digest 摘要
+     * @param buffer 数据缓冲区
+     */
+    public static void update(MessageDigest digest, DataBuffer buffer) {
+        digest.update(buffer.asByteBuffer());
+    }
+
+    /**
+     * 将数据缓冲区的可读内容写入摘要，直接内存按 stagingSize 分段复制到线程内复用的数组后再计算，
+     * 避免 JDK 以 4KB 为单位逐段复制
+     *
+     * @param digest 摘要
+     * @param buffer 数据缓冲区
+     * @param stagingSize 分段大小
+     */
+    public static void update(MessageDigest digest, DataBuffer buffer, int stagingSize) {
+        final ByteBuffer byteBuffer = buffer.asByteBuffer();
+        if (byteBuffer.hasArray()) {
+            digest.update(byteBuffer);
+            return;
+        }
+        byte[] staging = STAGING.get();
+        if (staging.length < stagingSize) {
+            staging = new byte[stagingSize];
+            STAGING.set(staging);
+        }
+        while (byteBuffer.hasRemaining()) {
+            final int n = Math.min(byteBuffer.remaining(), staging.length);
+            byteBuffer.get(staging, 0, n);
+            digest.update(staging, 0, n);
+        }
+    }
+
     public static String md5DigestAsHex(byte[] bytes) {
         return org.springframework.util.DigestUtils.md5DigestAsHex(bytes);
     }
@@ -60,9 +126,12 @@ public class DigestUtils {
         if (null == str || 0 == str.length()){
             return null;
         }
+        return toHex(sha1(str.getBytes(UTF_8)));
+    }
+
+    public static String toHex(byte[] md) {
         char[] hexDigits = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
                 'a', 'b', 'c', 'd', 'e', 'f'};
-        byte[] md = sha1(str.getBytes(UTF_8));
         int j = md.length;
         char[] buf = new char[j * 2];
         int k = 0;
@@ -73,6 +142,23 @@ public class DigestUtils {
         return new String(buf);
     }
 
+    /**
+     * Digest 响应头（RFC 3230）的值：{@code sha-256=<base64>}
+     *
+     * @param sha256Hex 十六进制的 SHA-256，为空时返回 null
+     * @return java.lang.String
+     */
+    public static String sha256DigestHeader(String sha256Hex) {
+        if (sha256Hex == null) {
+            return null;
+        }
+        final byte[] digest = new byte[sha256Hex.length() / 2];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) Integer.parseInt(sha256Hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return "sha-256=" + Base64Utils.encodeToString(digest);
+    }
+
     public static String readBase64Content(DataBuffer buffer) {
         byte[] bytes = new byte[buffer.readableByteCount()];
         buffer.read(bytes);
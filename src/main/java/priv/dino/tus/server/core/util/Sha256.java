@@ -0,0 +1,197 @@
+package priv.dino.tus.server.core.util;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * 可导出中间状态的 SHA-256（FIPS 180-4）
+ * <p>
+ * JDK 的 {@link java.security.MessageDigest} 无法保存中间状态，上传跨多个 PATCH、跨节点或重启时只能从头计算。
+ * 本实现的状态（已处理的字节数、8 个哈希值、未满一个分组的剩余数据）可以用 {@link #exportState()} 导出，
+ * 用 {@link #importState(byte[])} 恢复后继续计算。导出的数据带有 CRC32，损坏时恢复失败。
+ * 非线程安全。
+ *
+ * @author dino
+ * @date 2026/10/18 21:10
+ */
+public final class Sha256 {
+
+    private static final int BLOCK = 64;
+    private static final byte VERSION = 1;
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private final int[] h = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+    private final int[] w = new int[64];
+    private final byte[] buffer = new byte[BLOCK];
+    private int buffered;
+    private long length;
+    private byte[] scratch;
+
+    /**
+     * 已处理的字节数
+     */
+    public long length() {
+        return length;
+    }
+
+    public void update(byte[] input, int offset, int len) {
+        length += len;
+        if (buffered > 0) {
+            final int n = Math.min(len, BLOCK - buffered);
+            System.arraycopy(input, offset, buffer, buffered, n);
+            buffered += n;
+            offset += n;
+            len -= n;
+            if (buffered < BLOCK) {
+                return;
+            }
+            this.compress(buffer, 0);
+            buffered = 0;
+        }
+        while (len >= BLOCK) {
+            this.compress(input, offset);
+            offset += BLOCK;
+            len -= BLOCK;
+        }
+        if (len > 0) {
+            System.arraycopy(input, offset, buffer, 0, len);
+            buffered = len;
+        }
+    }
+
+    /**
+     * 处理缓冲区的剩余内容，不改变缓冲区的读取位置
+     */
+    public void update(ByteBuffer input) {
+        final ByteBuffer source = input.duplicate();
+        if (source.hasArray()) {
+            this.update(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            return;
+        }
+        if (scratch == null) {
+            scratch = new byte[8192];
+        }
+        final byte[] chunk = scratch;
+        while (source.hasRemaining()) {
+            final int n = Math.min(source.remaining(), chunk.length);
+            source.get(chunk, 0, n);
+            this.update(chunk, 0, n);
+        }
+    }
+
+    /**
+     * 当前已处理数据的摘要，不影响后续继续计算
+     */
+    public byte[] digest() {
+        final Sha256 copy = importState(this.exportState());
+        final long bits = copy.length * 8;
+        final byte[] padding = new byte[(copy.buffered < 56 ? 56 : 120) - copy.buffered + 8];
+        padding[0] = (byte) 0x80;
+        for (int i = 0; i < 8; i++) {
+            padding[padding.length - 1 - i] = (byte) (bits >>> (8 * i));
+        }
+        copy.update(padding, 0, padding.length);
+        final byte[] out = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            out[4 * i] = (byte) (copy.h[i] >>> 24);
+            out[4 * i + 1] = (byte) (copy.h[i] >>> 16);
+            out[4 * i + 2] = (byte) (copy.h[i] >>> 8);
+            out[4 * i + 3] = (byte) copy.h[i];
+        }
+        return out;
+    }
+
+    /**
+     * 导出中间状态：版本(1) + 长度(8) + 哈希值(32) + 剩余数据长度(1) + 剩余数据 + CRC32(4)
+     */
+    public byte[] exportState() {
+        final ByteBuffer out = ByteBuffer.allocate(1 + 8 + 32 + 1 + buffered + 4);
+        out.put(VERSION).putLong(length);
+        for (int v : h) {
+            out.putInt(v);
+        }
+        out.put((byte) buffered).put(buffer, 0, buffered);
+        final CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        return out.array();
+    }
+
+    /**
+     * 从 {@link #exportState()} 导出的数据恢复
+     *
+     * @throws IllegalArgumentException 数据损坏或版本不符
+     */
+    public static Sha256 importState(byte[] state) {
+        if (state.length < 1 + 8 + 32 + 1 + 4 || state[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported SHA-256 state");
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(state, 0, state.length - 4);
+        final ByteBuffer in = ByteBuffer.wrap(state);
+        if (in.getInt(state.length - 4) != (int) crc.getValue()) {
+            throw new IllegalArgumentException("Corrupted SHA-256 state");
+        }
+        in.position(1);
+        final Sha256 sha256 = new Sha256();
+        sha256.length = in.getLong();
+        for (int i = 0; i < 8; i++) {
+            sha256.h[i] = in.getInt();
+        }
+        sha256.buffered = in.get();
+        if (sha256.buffered < 0 || sha256.buffered >= BLOCK || sha256.buffered != state.length - 46
+                || sha256.length % BLOCK != sha256.buffered) {
+            throw new IllegalArgumentException("Corrupted SHA-256 state");
+        }
+        in.get(sha256.buffer, 0, sha256.buffered);
+        return sha256;
+    }
+
+    private void compress(byte[] block, int offset) {
+        final int[] w = this.w;
+        for (int i = 0; i < 16; i++) {
+            final int p = offset + 4 * i;
+            w[i] = (block[p] << 24) | ((block[p + 1] & 0xff) << 16) | ((block[p + 2] & 0xff) << 8) | (block[p + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            final int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+            final int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+        for (int i = 0; i < 64; i++) {
+            final int t1 = hh + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25))
+                    + ((e & f) ^ (~e & g)) + K[i] + w[i];
+            final int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22))
+                    + ((a & b) ^ (a & c) ^ (b & c));
+            hh = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += hh;
+    }
+}
@@ -1,7 +1,13 @@
 package priv.dino.tus.server.core.util;
 
-import org.springframework.http.HttpStatus;
-import priv.dino.tus.server.core.error.GlobalException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Twitter_Snowflake<br>
@@ -13,52 +19,68 @@ import priv.dino.tus.server.core.error.GlobalException;
  * 10位的数据机器位，可以部署在1024个节点，包括5位datacenterId和5位workerId<br>
  * 12位序列，毫秒内的计数，12位的计数顺序号支持每个节点每毫秒(同一机器，同一时间截)产生4096个ID序号<br>
  * 加起来刚好64位，为一个Long型。<br>
- * SnowFlake的优点是，整体上按照时间自增排序，并且整个分布式系统内不会产生ID碰撞(由数据中心ID和机器ID作区分)，并且效率较高，经测试，SnowFlake每秒能够产生26万ID左右。
+ * SnowFlake的优点是，整体上按照时间自增排序，并且整个分布式系统内不会产生ID碰撞(由数据中心ID和机器ID作区分)，并且效率较高。<br>
+ * <p>
+ * 时间截与序列合并保存在一个 {@link AtomicLong} 中，通过 CAS 更新，无需加锁；整个应用应共享同一个实例。<br>
+ * 时钟回退时不抛出异常，而是沿用上次的时间截继续分配序列（逻辑时钟），ID 仍然单调递增；
+ * 毫秒内序列用尽时，在容忍范围内借用下一毫秒，借满时最多等待系统时钟走过一毫秒；
+ * 时钟回退超出容忍范围后序列用尽时继续推进逻辑时间截，不等待系统时钟追上（可能需要数小时）。<br>
+ * 节点号由网卡地址派生时只有 10 位，不同主机可能相同，多节点部署必须显式配置。
  */
+@Slf4j
 public class SnowflakeIdWorker {
 
     // ==============================Fields===========================================
     /** 开始时间截 (2015-01-01) */
-    private final long twepoch = 1420041600000L;
+    public static final long TWEPOCH = 1420041600000L;
 
     /** 机器id所占的位数 */
-    private final long workerIdBits = 5L;
+    private static final long WORKER_ID_BITS = 5L;
 
     /** 数据标识id所占的位数 */
-    private final long datacenterIdBits = 5L;
+    private static final long DATACENTER_ID_BITS = 5L;
 
     /** 支持的最大机器id，结果是31 (这个移位算法可以很快的计算出几位二进制数所能表示的最大十进制数) */
-    private final long maxWorkerId = -1L ^ (-1L << workerIdBits);
+    public static final long MAX_WORKER_ID = -1L ^ (-1L << WORKER_ID_BITS);
 
     /** 支持的最大数据标识id，结果是31 */
-    private final long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
+    public static final long MAX_DATACENTER_ID = -1L ^ (-1L << DATACENTER_ID_BITS);
 
     /** 序列在id中占的位数 */
-    private final long sequenceBits = 12L;
+    private static final long SEQUENCE_BITS = 12L;
 
     /** 机器ID向左移12位 */
-    private final long workerIdShift = sequenceBits;
+    private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
 
     /** 数据标识id向左移17位(12+5) */
-    private final long datacenterIdShift = sequenceBits + workerIdBits;
+    private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
 
     /** 时间截向左移22位(5+5+12) */
-    private final long timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;
+    public static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
 
     /** 生成序列的掩码，这里为4095 (0b111111111111=0xfff=4095) */
-    private final long sequenceMask = -1L ^ (-1L << sequenceBits);
+    private static final long SEQUENCE_MASK = -1L ^ (-1L << SEQUENCE_BITS);
 
     /** 工作机器ID(0~31) */
-    private long workerId;
+    private final long workerId;
 
     /** 数据中心ID(0~31) */
-    private long datacenterId;
+    private final long datacenterId;
+
+    /** 数据中心ID与工作机器ID移位后的值 */
+    private final long node;
+
+    /** 允许借用的未来时间与报警前容忍的时钟回退（毫秒） */
+    private final long clockSkewTolerance;
 
-    /** 毫秒内序列(0~4095) */
-    private long sequence = 0L;
+    /** 上次分配的 (时间截 - 开始时间截) << 12 | 毫秒内序列，初始为 -1 表示尚未分配 */
+    private final AtomicLong state = new AtomicLong(-1L);
 
-    /** 上次生成ID的时间截 */
-    private long lastTimestamp = -1L;
+    /** 检测到超出容忍范围的时钟回退次数 */
+    private final AtomicLong clockBackwards = new AtomicLong();
+
+    /** 上次报警时的时间截，同一时间截只报警一次 */
+    private final AtomicLong lastWarnedTimestamp = new AtomicLong(-1L);
 
     //==============================Constructors=====================================
     /**
@@ -67,14 +89,26 @@ public class SnowflakeIdWorker {
      * @param datacenterId 数据中心ID (0~31)
      */
     public SnowflakeIdWorker(long workerId, long datacenterId) {
-        if (workerId > maxWorkerId || workerId < 0) {
-            throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", maxWorkerId));
+        this(workerId, datacenterId, 5000L);
+    }
+
+    /**
+     * 构造函数
+     * @param workerId 工作ID (0~31)
+     * @param datacenterId 数据中心ID (0~31)
+     * @param clockSkewTolerance 允许借用的未来时间与报警前容忍的时钟回退（毫秒）
+     */
+    public SnowflakeIdWorker(long workerId, long datacenterId, long clockSkewTolerance) {
+        if (workerId > MAX_WORKER_ID || workerId < 0) {
+            throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", MAX_WORKER_ID));
         }
-        if (datacenterId > maxDatacenterId || datacenterId < 0) {
-            throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
+        if (datacenterId > MAX_DATACENTER_ID || datacenterId < 0) {
+            throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", MAX_DATACENTER_ID));
         }
         this.workerId = workerId;
         this.datacenterId = datacenterId;
+        this.node = (datacenterId << DATACENTER_ID_SHIFT) | (workerId << WORKER_ID_SHIFT);
+        this.clockSkewTolerance = clockSkewTolerance;
     }
 
     // ==============================Methods==========================================
@@ -82,49 +116,92 @@ public class SnowflakeIdWorker {
      * 获得下一个ID (该方法是线程安全的)
      * @return SnowflakeId
      */
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-
-        //如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
-        }
+    public long nextId() {
+        return this.toId(this.reserve(1));
+    }
 
-        //如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & sequenceMask;
-            //毫秒内序列溢出
-            if (sequence == 0) {
-                //阻塞到下一个毫秒,获得新的时间戳
-                timestamp = tilNextMillis(lastTimestamp);
+    /**
+     * 一次预留多个连续的ID，用于批量创建
+     * @param count 数量
+     * @return SnowflakeId 数组，按升序排列
+     */
+    public long[] nextIds(int count) {
+        final long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            final long first = this.reserve(count - filled);
+            final long reserved = Math.min(count - filled, SEQUENCE_MASK - (first & SEQUENCE_MASK) + 1);
+            for (long i = 0; i < reserved; i++) {
+                ids[filled++] = this.toId(first + i);
             }
         }
-        //时间戳改变，毫秒内序列重置
-        else {
-            sequence = 0L;
-        }
+        return ids;
+    }
 
-        //上次生成ID的时间截
-        lastTimestamp = timestamp;
+    /**
+     * 从ID中取出生成时的时间截（毫秒）
+     * @param id SnowflakeId
+     * @return 时间截
+     */
+    public static long extractTimestamp(long id) {
+        return (id >>> TIMESTAMP_LEFT_SHIFT) + TWEPOCH;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
 
-        //移位并通过或运算拼到一起组成64位的ID
-        return ((timestamp - twepoch) << timestampLeftShift) //
-                | (datacenterId << datacenterIdShift) //
-                | (workerId << workerIdShift) //
-                | sequence;
+    public long getDatacenterId() {
+        return datacenterId;
+    }
+
+    public long getClockBackwards() {
+        return clockBackwards.get();
     }
 
     /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
-     * @param lastTimestamp 上次生成ID的时间截
-     * @return 当前时间戳
+     * 在同一毫秒内预留至多 max 个序列
+     * @param max 希望预留的数量
+     * @return 第一个序列对应的状态，实际预留数量为 min(max, 4096 - 序列)
      */
-    protected long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+    private long reserve(int max) {
+        for (;;) {
+            final long current = state.get();
+            final long lastTimestamp = current >> SEQUENCE_BITS;
+            final long sequence = current & SEQUENCE_MASK;
+            final long timestamp = timeGen() - TWEPOCH;
+
+            final long first;
+            if (timestamp > lastTimestamp) {
+                //时间戳改变，毫秒内序列重置
+                first = timestamp << SEQUENCE_BITS;
+            } else if (sequence < SEQUENCE_MASK) {
+                //同一毫秒或时钟回退，沿用上次的时间截继续分配序列
+                if (lastTimestamp - timestamp > clockSkewTolerance && lastWarnedTimestamp.getAndSet(lastTimestamp) != lastTimestamp) {
+                    clockBackwards.incrementAndGet();
+                    log.warn("Clock moved backwards by {} milliseconds, keep issuing ids from the last timestamp.", lastTimestamp - timestamp);
+                }
+                first = current + 1;
+            } else if (lastTimestamp + 1 - timestamp <= clockSkewTolerance || lastTimestamp - timestamp > clockSkewTolerance) {
+                //毫秒内序列溢出，借用下一毫秒；时钟回退超出容忍范围时等待没有意义，同样推进逻辑时间截
+                first = (lastTimestamp + 1) << SEQUENCE_BITS;
+            } else {
+                //借满容忍范围，等待系统时钟走过下一毫秒
+                Thread.yield();
+                continue;
+            }
+            final long reserved = Math.min(max, SEQUENCE_MASK - (first & SEQUENCE_MASK) + 1);
+            if (state.compareAndSet(current, first + reserved - 1)) {
+                return first;
+            }
         }
-        return timestamp;
+    }
+
+    /**
+     * 移位并通过或运算拼到一起组成64位的ID
+     */
+    private long toId(long reserved) {
+        return ((reserved >> SEQUENCE_BITS) << TIMESTAMP_LEFT_SHIFT) | node | (reserved & SEQUENCE_MASK);
     }
 
     /**
@@ -135,14 +212,30 @@ public class SnowflakeIdWorker {
         return System.currentTimeMillis();
     }
 
-    //==============================Test=============================================
-    /** 测试 */
-    public static void main(String[] args) {
-        SnowflakeIdWorker idWorker = new SnowflakeIdWorker(0, 0);
-        for (int i = 0; i < 1000; i++) {
-            long id = idWorker.nextId();
-            System.out.println(Long.toBinaryString(id));
-            System.out.println(id);
+    /**
+     * 未配置时由本机网卡地址（取不到时用主机名）派生 10 位节点号，高 5 位为数据中心ID，低 5 位为工作机器ID
+     * @return 节点号 (0~1023)
+     */
+    public static long deriveNodeId() {
+        long hash = 0;
+        try {
+            final Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                final NetworkInterface networkInterface = interfaces.nextElement();
+                final byte[] mac = networkInterface.isLoopback() ? null : networkInterface.getHardwareAddress();
+                if (mac != null && mac.length > 0) {
+                    for (byte b : mac) {
+                        hash = 31 * hash + (b & 0xff);
+                    }
+                    break;
+                }
+            }
+            if (hash == 0) {
+                hash = InetAddress.getLocalHost().getHostName().hashCode();
+            }
+        } catch (SocketException | UnknownHostException e) {
+            log.warn("Unable to derive snowflake node id from network, fallback to 0.", e);
         }
+        return hash & ((MAX_DATACENTER_ID << WORKER_ID_BITS) | MAX_WORKER_ID);
     }
 }
@@ -16,14 +16,18 @@ import org.springframework.http.server.PathContainer;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
+import priv.dino.tus.server.core.util.DigestUtils;
 import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
 import priv.dino.tus.server.core.util.UploadExpiredUtils;
 import priv.dino.tus.server.manage.domain.File;
 import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
 import priv.dino.tus.server.manage.service.UploadService;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.springframework.http.HttpStatus.*;
@@ -47,6 +51,7 @@ public class UploadController {
     private final TusServerProperties tusServerProperties;
     private final UploadService uploadService;
     private final UploadExpiredUtils uploadExpiredUtils;
+    private final BandwidthShaper bandwidthShaper;
 
     @Operation(summary = "通过id获取文件信息。" )
     @GetMapping("/{id}")
@@ -90,7 +95,8 @@ public class UploadController {
                     @ApiResponse(responseCode = "413", description = "上传大小过大。"),
                     @ApiResponse(responseCode = "400", description = "错误的请求。"),
                     @ApiResponse(responseCode = "201", description = "上传工作单元已创建。",
-                            headers = {@Header(name = "Location", description = "创建的上传工作单元的 uri。", required = true)})})
+                            headers = {@Header(name = "Location", description = "创建的上传工作单元的 uri。", required = true),
+                                    @Header(name = "Upload-Offset", description = "已上传的字节数，秒传命中时等于 Upload-Length。")})})
     @PostMapping
     public Mono<ResponseEntity<Object>> uploadStart(
             @NonNull @RequestHeader(name = "Upload-Length") final Long fileSize,
@@ -126,17 +132,18 @@ public class UploadController {
                 .contentOffset(0L)
                 .lastUploadedChunkNumber(0L)
                 .fingerprint(parsedMetadata.getOrDefault("fingerprint", "FINGERPRINT NAME NOT EXISTS"))
+                .shapingKey(bandwidthShaper.creationKey(request))
                 .build();
 
         return uploadService
-                .createUpload(file)
-                .map(f -> Stream.concat(
-                        request.getPath().elements().stream().map(PathContainer.Element::value),
-                        Stream.of(f.getId().toString())
-                ))
-                .map(stringStream -> ResponseEntity
-                        .created(uriComponentsBuilder.pathSegment(stringStream.filter(s -> !"/".equals(s)).toArray(String[]::new)).build().toUri())
+                .createUpload(file, parsedMetadata)
+                .map(f -> ResponseEntity
+                        .created(uriComponentsBuilder.pathSegment(Stream.concat(
+                                request.getPath().elements().stream().map(PathContainer.Element::value),
+                                Stream.of(f.getId().toString())
+                        ).filter(s -> !"/".equals(s)).toArray(String[]::new)).build().toUri())
                         .header(ACCESS_CONTROL_EXPOSE_HEADER, ACCESS_CONTROL_EXPOSE_POST_VALUE)
+                        .header(UPLOAD_OFFSET_HEADER, f.getContentOffset().toString())
                         .header(TUS_RESUMABLE_HEADER, TUS_RESUMABLE_VALUE)
                         .build()
                 )
@@ -160,7 +167,7 @@ public class UploadController {
         log.debug("3 HEAD START");
         log.debug("id value: " + id);
 
-        return filesRepository.findById(id).map(e ->
+        return uploadService.findUpload(id).map(e ->
                         ResponseEntity
                                 .status(OK)
                                 .headers(new HttpHeaders())
@@ -169,6 +176,8 @@ public class UploadController {
                                 .header(UPLOAD_LENGTH_HEADER, e.getContentLength().toString())
                                 .header(UPLOAD_OFFSET_HEADER, e.getContentOffset().toString())
                                 .header(TUS_RESUMABLE_HEADER, TUS_RESUMABLE_VALUE)
+                                .headers(h -> Optional.ofNullable(DigestUtils.sha256DigestHeader(e.getContentSha256()))
+                                        .ifPresent(digest -> h.set(DIGEST_HEADER, digest)))
                                 .build())
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
@@ -204,7 +213,7 @@ public class UploadController {
         log.debug("SnowflakeID value: " + id);
 
         return uploadService
-                .uploadChunkAndGetUpdatedOffset(id, request.getBody(), offset, length)
+                .uploadChunkAndGetUpdatedOffset(id, bandwidthShaper.shapeUpload(request, id, request.getBody()), offset, length)
                 .log()
                 .map(e -> ResponseEntity
                         .status(NO_CONTENT)
@@ -227,7 +236,15 @@ public class UploadController {
     public Mono<Void> delete(@NonNull @PathVariable("id") final Long id) {
         log.debug("5 DELETE START");
         log.debug("id value: " + id);
-        return filesRepository.deleteById(id);
+        return uploadService.deleteUpload(id);
+    }
+
+    @DeleteMapping
+    @ResponseStatus(NO_CONTENT)
+    public Mono<Void> deleteAll(@NonNull @RequestBody final List<Long> ids) {
+        log.debug("5 BULK DELETE START");
+        log.debug("ids size: {}", ids.size());
+        return uploadService.terminateUploads(ids);
     }
 
 
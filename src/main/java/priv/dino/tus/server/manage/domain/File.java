@@ -56,6 +56,35 @@ public class File implements Serializable {
     @Size(max = 500)
     private String fingerprint;
 
+    /**
+     * 虚拟合并的最终上传，数据仍保存在各分片文件中
+     */
+    @NotNull
+    @Column(value = "is_virtual")
+    private boolean virtualStatus;
+
+    /**
+     * 虚拟合并清单，格式为 {@code id:length,id:length}
+     */
+    private String concatManifest;
+
+    /**
+     * 服务端计算的内容 SHA-256（十六进制），秒传校验时计算
+     */
+    @Size(max = 64)
+    private String contentSha256;
+
+    /**
+     * 带宽整形按 Upload-Metadata 区分客户端时，创建时该键值的 SHA-256（十六进制）
+     */
+    @Size(max = 64)
+    private String shapingKey;
+
+    /**
+     * 所在存储盘的序号，为空时在文件目录
+     */
+    private Integer disk;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
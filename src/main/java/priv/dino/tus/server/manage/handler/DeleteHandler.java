@@ -6,9 +6,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
-import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.service.UploadService;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static priv.dino.tus.server.core.constant.TusConstant.TUS_RESUMABLE_HEADER;
 import static priv.dino.tus.server.core.constant.TusConstant.TUS_RESUMABLE_VALUE;
 
@@ -23,14 +26,26 @@ import static priv.dino.tus.server.core.constant.TusConstant.TUS_RESUMABLE_VALUE
 @RequiredArgsConstructor
 public class DeleteHandler {
 
-    private final FileRepository fileRepository;
+    private final UploadService uploadService;
 
     public Mono<ServerResponse> handleRequest(ServerRequest serverRequest) {
         String uploadId = serverRequest.pathVariable("uploadId");
 
         return ServerResponse.status(HttpStatus.NO_CONTENT)
                 .header(TUS_RESUMABLE_HEADER, TUS_RESUMABLE_VALUE)
-                .build(fileRepository.deleteById(Long.valueOf(uploadId)).then());
+                .build(uploadService.deleteUpload(Long.valueOf(uploadId)));
+
+    }
 
+    /**
+     * 批量终止上传：请求体为上传id的 JSON 数组，一条语句删除全部记录
+     */
+    public Mono<ServerResponse> handleBulkRequest(ServerRequest serverRequest) {
+        return serverRequest.bodyToMono(Long[].class)
+                .map(Arrays::asList)
+                .defaultIfEmpty(Collections.emptyList())
+                .flatMap(ids -> ServerResponse.status(HttpStatus.NO_CONTENT)
+                        .header(TUS_RESUMABLE_HEADER, TUS_RESUMABLE_VALUE)
+                        .build(uploadService.terminateUploads(ids)));
     }
 }
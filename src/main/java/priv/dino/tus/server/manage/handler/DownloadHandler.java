@@ -2,22 +2,46 @@ package priv.dino.tus.server.manage.handler;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.HandlerFunction;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.manage.domain.File;
 import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
+import priv.dino.tus.server.manage.service.UploadService;
+import priv.dino.tus.server.storage.FileSegment;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.channels.AsynchronousFileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static priv.dino.tus.server.core.constant.TusConstant.DIGEST_HEADER;
 
 /**
  * download file
+ * <p>
+ * Physical files are written through {@link BodyInserters#fromResource}, which handles single and multi-range
+ * requests and uses the zero-copy file region path of Reactor Netty. Virtual concatenated files support a
+ * single range and fall back to the full content for multi-range requests.
+ * <p>
+ * Files stored compressed are passed through as is to clients that accept the stored encoding and request the whole
+ * file, and are decompressed on the fly otherwise, in which case they are served like virtual files.
+ * <p>
+ * When download bandwidth is shaped, the zero-copy paths are bypassed: physical files are served like virtual files
+ * and every body is written as a buffer stream the shaper can hold back.
  *
  * @author dino
  * @date 2021/11/23 14:33
@@ -26,24 +50,143 @@ import java.nio.file.Paths;
 @Slf4j
 @RequiredArgsConstructor
 public class DownloadHandler implements HandlerFunction<ServerResponse> {
+    private static final String BYTES_UNIT = "bytes";
+    private static final int ENCODED_BUFFER_SIZE = 65536;
+
     private final FileRepository fileRepository;
-    private final Path fileDirectory;
+    private final UploadService uploadService;
+    private final FileStorage fileStorage;
+    private final BandwidthShaper bandwidthShaper;
 
     @Override
     public Mono<ServerResponse> handle(ServerRequest request) {
         String uploadId = request.pathVariable("uploadId");
 
         return fileRepository.findById(Long.parseLong(uploadId))
-                .flatMap(e ->
-                        ServerResponse.ok()
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + new String(e.getOriginalName().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1))
-                                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                                .body((p, a) -> p.writeWith(DataBufferUtils.read(Paths.get(fileDirectory.toString(), uploadId), new DefaultDataBufferFactory(), 4096)))
-                                .doOnNext(a -> log.info("Download file ID: {}", uploadId))
-                )
+                .flatMap(e -> e.isVirtualStatus()
+                        ? this.writeVirtual(request, e)
+                        : fileStorage.contentEncoding(e.getId())
+                                .flatMap(encoding -> this.writeEncoded(request, e, encoding))
+                                .switchIfEmpty(Mono.defer(() -> bandwidthShaper.isDownloadShaped() ? this.writeVirtual(request, e) : ServerResponse.ok()
+                                        .header(HttpHeaders.CONTENT_DISPOSITION, this.contentDisposition(e))
+                                        .headers(h -> this.digest(h, e))
+                                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                                        .body(BodyInserters.fromResource(new FileSystemResource(fileStorage.getPath(e.getId())))))))
+                .doOnNext(a -> log.info("Download file ID: {}", uploadId))
                 .switchIfEmpty(ServerResponse.notFound().build());
 
 
     }
 
+    /**
+     * Pass the stored encoding through for whole-file requests that accept it, otherwise decompress.
+     * The digest is only sent for decoded content since it is computed over the original bytes.
+     */
+    private Mono<ServerResponse> writeEncoded(ServerRequest request, File file, String encoding) {
+        if (file.getContentOffset() == 0 || !request.headers().header(HttpHeaders.RANGE).isEmpty() || !this.accepts(request, encoding)) {
+            return this.writeVirtual(request, file);
+        }
+        return fileStorage.encodedRegion(file.getId())
+                .flatMap(region -> ServerResponse.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, this.contentDisposition(file))
+                        .header(HttpHeaders.CONTENT_ENCODING, encoding)
+                        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .contentLength(region.getCount())
+                        .body((p, a) -> {
+                            final Path path = fileStorage.getPath(region.getId());
+                            if (p instanceof ZeroCopyHttpOutputMessage && !bandwidthShaper.isDownloadShaped()) {
+                                return ((ZeroCopyHttpOutputMessage) p).writeWith(path, region.getPosition(), region.getCount());
+                            }
+                            return p.writeWith(bandwidthShaper.shapeDownload(request.exchange().getRequest(), file,
+                                    DataBufferUtils.takeUntilByteCount(DataBufferUtils.readAsynchronousFileChannel(
+                                            () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ), region.getPosition(),
+                                            p.bufferFactory(), ENCODED_BUFFER_SIZE), region.getCount())));
+                        }));
+    }
+
+    private boolean accepts(ServerRequest request, String encoding) {
+        return request.headers().header(HttpHeaders.ACCEPT_ENCODING).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(coding -> coding.replace(" ", ""))
+                .anyMatch(coding -> coding.equalsIgnoreCase(encoding)
+                        || (coding.regionMatches(true, 0, encoding + ";", 0, encoding.length() + 1) && !coding.matches(".*;q=0(\\.0*)?")));
+    }
+
+    private Mono<ServerResponse> writeVirtual(ServerRequest request, File file) {
+        final long length = file.getContentOffset();
+        final List<HttpRange> ranges;
+        try {
+            ranges = request.headers().range();
+        } catch (IllegalArgumentException ex) {
+            return this.rangeNotSatisfiable(length);
+        }
+
+        if (ranges.size() != 1) {
+            return this.writeRegion(request, ServerResponse.ok(), file, 0, length);
+        }
+
+        final long start;
+        final long end;
+        try {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+        } catch (IllegalArgumentException ex) {
+            return this.rangeNotSatisfiable(length);
+        }
+        if (start >= length || end < start) {
+            return this.rangeNotSatisfiable(length);
+        }
+        return this.writeRegion(request, ServerResponse.status(HttpStatus.PARTIAL_CONTENT)
+                        .header(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " " + start + "-" + end + "/" + length),
+                file, start, end - start + 1);
+    }
+
+    private Mono<ServerResponse> writeRegion(ServerRequest request, ServerResponse.BodyBuilder builder, File file, long position, long count) {
+        final List<FileSegment> segments = uploadService.getSegments(file, position, count);
+        return builder
+                .header(HttpHeaders.CONTENT_DISPOSITION, this.contentDisposition(file))
+                .headers(h -> {
+                    if (count == file.getContentOffset()) {
+                        this.digest(h, file);
+                    }
+                })
+                .header(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(count)
+                .body((p, a) -> {
+                    final Flux<DataBuffer> body = bandwidthShaper.shapeDownload(request.exchange().getRequest(), file, uploadService.read(file, position, count));
+                    if (segments.size() == 1 && p instanceof ZeroCopyHttpOutputMessage && !bandwidthShaper.isDownloadShaped()) {
+                        FileSegment segment = segments.get(0);
+                        return fileStorage.contentEncoding(segment.getId())
+                                .map(encoding -> false)
+                                .defaultIfEmpty(true)
+                                .flatMap(plain -> plain
+                                        ? ((ZeroCopyHttpOutputMessage) p).writeWith(fileStorage.getPath(segment.getId()), segment.getPosition(), segment.getCount())
+                                        : p.writeWith(body));
+                    }
+                    return p.writeWith(body);
+                });
+    }
+
+    private Mono<ServerResponse> rangeNotSatisfiable(long length) {
+        return ServerResponse.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + length)
+                .build();
+    }
+
+    /**
+     * 返回完整内容时附带整个文件的 SHA-256
+     */
+    private void digest(HttpHeaders headers, File file) {
+        final String digest = DigestUtils.sha256DigestHeader(file.getContentSha256());
+        if (digest != null) {
+            headers.set(DIGEST_HEADER, digest);
+        }
+    }
+
+    private String contentDisposition(File file) {
+        return "attachment; filename=" + new String(file.getOriginalName().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+
 }
@@ -6,9 +6,11 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
-import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.manage.service.UploadService;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
 
 import static org.springframework.http.HttpStatus.OK;
 import static priv.dino.tus.server.core.constant.TusConstant.*;
@@ -23,13 +25,13 @@ import static priv.dino.tus.server.core.constant.TusConstant.*;
 @Slf4j
 @RequiredArgsConstructor
 public class HeadHandler {
-    private final FileRepository fileRepository;
+    private final UploadService uploadService;
 
     public Mono<ServerResponse> handleRequest(ServerRequest serverRequest) {
         String uploadId = serverRequest.pathVariable("uploadId");
 
 
-        return fileRepository.findById(Long.valueOf(uploadId)).flatMap(e ->
+        return uploadService.findUpload(Long.valueOf(uploadId)).flatMap(e ->
                         ServerResponse
                                 .status(OK)
                                 .headers(HttpHeaders::new)
@@ -38,6 +40,8 @@ public class HeadHandler {
                                 .header(UPLOAD_LENGTH_HEADER, e.getContentLength().toString())
                                 .header(UPLOAD_OFFSET_HEADER, e.getContentOffset().toString())
                                 .header(TUS_RESUMABLE_HEADER, TUS_RESUMABLE_VALUE)
+                                .headers(h -> Optional.ofNullable(DigestUtils.sha256DigestHeader(e.getContentSha256()))
+                                        .ifPresent(digest -> h.set(DIGEST_HEADER, digest)))
                                 .build())
                 .switchIfEmpty(ServerResponse.notFound().build());
 
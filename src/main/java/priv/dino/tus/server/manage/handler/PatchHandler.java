@@ -3,15 +3,13 @@ package priv.dino.tus.server.manage.handler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
-import priv.dino.tus.server.core.error.GlobalException;
-import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
 import priv.dino.tus.server.core.util.UploadExpiredUtils;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
 import priv.dino.tus.server.manage.service.UploadService;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Hooks;
@@ -37,6 +35,8 @@ public class PatchHandler {
     private final UploadService uploadService;
     private final UploadExpiredUtils uploadExpiredUtils;
     private final TusServerProperties tusServerProperties;
+    private final UploadMetrics uploadMetrics;
+    private final BandwidthShaper bandwidthShaper;
 
     public Mono<ServerResponse> handleRequest(ServerRequest serverRequest) {
         Hooks.onOperatorDebug();
@@ -45,22 +45,13 @@ public class PatchHandler {
         Optional<String> contentType = getHeaderAsString("Content-Type", serverRequest);
         Optional<Long> offset = getHeaderAsLong("Upload-Offset", serverRequest);
         Optional<Long> contentLength = getHeaderAsLong("Content-Length", serverRequest);
-        Optional<Tuple2<String, String>> checksumInfo = getHeaderAsChecksumInfo("Upload-Checksum", serverRequest);
-        Flux<DataBuffer> parts = serverRequest.exchange().getRequest().getBody();
+        Optional<Tuple2<String, String>> checksumInfo = getHeaderAsChecksumInfo(UPLOAD_CHECKSUM_HEADER, serverRequest);
 
         if (checksumInfo.isPresent()) {
             String algorithms = checksumInfo.get().getT1().toLowerCase();
-            boolean error = !tusServerProperties.getTusChecksumAlgorithms().contains(algorithms);
-            String bodyStr = serverRequest.exchange().getAttribute("POST_BODY");
-            if (!StringUtils.hasLength(bodyStr)) {
-                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "The Body No Content.");
-            }
-            String encodeStr = DigestUtils.digestAsHex(algorithms,bodyStr);
-            if (!checksumInfo.get().getT2().equals(encodeStr)) {
-                error = true;
-            }
-            if (error) {
-                return ServerResponse.status(460).build();
+            if (!tusServerProperties.getTusChecksumAlgorithms().contains(algorithms)) {
+                uploadMetrics.checksumFailure();
+                return ServerResponse.status(CHECKSUM_MISMATCH_STATUS).build();
             }
         }
 
@@ -78,7 +69,8 @@ public class PatchHandler {
             return ServerResponse.badRequest().build();
         }
 
-        return uploadService.uploadChunkAndGetUpdatedOffset(Long.valueOf(uploadId),parts,offset.get(),contentLength.get())
+        Flux<DataBuffer> parts = bandwidthShaper.shapeUpload(serverRequest.exchange().getRequest(), Long.valueOf(uploadId), serverRequest.exchange().getRequest().getBody());
+        return uploadService.uploadChunkAndGetUpdatedOffset(Long.valueOf(uploadId),parts,offset.get(),contentLength.get(),checksumInfo)
                 .log()
                 .flatMap(r -> ServerResponse
                     .noContent()
@@ -8,6 +8,7 @@ import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
 import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
 import priv.dino.tus.server.manage.service.UploadService;
 import reactor.core.publisher.Mono;
 
@@ -31,6 +32,7 @@ public class PostHandler {
 
     private final TusServerProperties tusServerProperties;
     private final UploadService uploadService;
+    private final BandwidthShaper bandwidthShaper;
     private static final String UPLOAD_CONCAT_PARTIAL = "partial";
     private static final String UPLOAD_CONCAT_FINAL = "final;";
 
@@ -70,12 +72,14 @@ public class PostHandler {
                         .lastUploadedChunkNumber(0L)
                         .fingerprint(parsedMetadata.getOrDefault("fingerprint", "FINGERPRINT NAME NOT EXISTS"))
                         .partialStatus(isPartial)
+                        .shapingKey(bandwidthShaper.creationKey(serverRequest.exchange().getRequest()))
                         .build();
                 return uploadService
-                        .createUpload(file)
+                        .createUpload(file, parsedMetadata)
                         .flatMap(stringStream -> ServerResponse
                                 .created(serverRequest.uriBuilder().pathSegment(stringStream.getId().toString()).build())
                                 .header(ACCESS_CONTROL_EXPOSE_HEADER, ACCESS_CONTROL_EXPOSE_POST_VALUE)
+                                .header(UPLOAD_OFFSET_HEADER, stringStream.getContentOffset().toString())
                                 .header(TUS_RESUMABLE_HEADER, TUS_RESUMABLE_VALUE)
                                 .build()
                         )
@@ -1,7 +1,13 @@
 package priv.dino.tus.server.manage.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
 
 /**
  * 文件 持久层接口
@@ -9,6 +15,78 @@ import priv.dino.tus.server.manage.domain.File;
  * @author dino
  * @date 2021/10/29 10:25
  */
-public interface FileRepository extends R2dbcRepository<File,Long> {
+public interface FileRepository extends R2dbcRepository<File,Long>, FileRepositoryCustom {
+
+    /**
+     * 查找一个尚未压实的虚拟合并文件
+     *
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.manage.domain.File>
+     */
+    Mono<File> findFirstByVirtualStatusIsTrue();
+
+    /**
+     * 查找全部尚未压实的虚拟合并文件
+     *
+     * @return reactor.core.publisher.Flux<priv.dino.tus.server.manage.domain.File>
+     */
+    Flux<File> findAllByVirtualStatusIsTrue();
+
+    /**
+     * 按 (created_at, id) 游标分页查询创建时间早于 cutoff 且未完成的上传，走 idx_file_completed_created 索引
+     *
+     * @param cutoff 创建时间早于该时间的上传已过期
+     * @param createdAt 上一页最后一条的创建时间
+     * @param id 上一页最后一条的id
+     * @param limit 每页条数
+     * @return reactor.core.publisher.Flux<priv.dino.tus.server.manage.domain.File> 只包含id、长度、偏移量、所在盘与创建时间
+     */
+    @Query("SELECT id, content_length, content_offset, last_uploaded_chunk_number, is_partial, is_virtual, disk, created_at FROM file"
+            + " WHERE is_completed = 0 AND created_at < :cutoff"
+            + " AND (created_at > :createdAt OR (created_at = :createdAt AND id > :id))"
+            + " ORDER BY created_at, id LIMIT :limit")
+    Flux<File> findExpiredAfter(LocalDateTime cutoff, LocalDateTime createdAt, Long id, int limit);
+
+    /**
+     * 只查询 PATCH 校验需要的字段，其余字段为空，不能用于保存
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.manage.domain.File>
+     */
+    @Query("SELECT id, content_length, content_offset, last_uploaded_chunk_number, is_partial, is_virtual, disk, created_at FROM file WHERE id = :id")
+    Mono<File> findUploadStateById(Long id);
+
+    /**
+     * 在偏移量仍为 expected 时将其前进 delta，并记录一次分块上传
+     *
+     * @param id 文件id
+     * @param expected 写入前的偏移量
+     * @param delta 写入的字节数
+     * @return reactor.core.publisher.Mono<java.lang.Integer> 为 0 时表示偏移量已被并发的上传修改
+     */
+    @Modifying
+    @Query("UPDATE file SET content_offset = content_offset + :delta, last_uploaded_chunk_number = last_uploaded_chunk_number + 1, updated_at = CURRENT_TIMESTAMP WHERE id = :id AND content_offset = :expected")
+    Mono<Integer> advanceOffset(Long id, long expected, long delta);
+
+    /**
+     * 查找指纹与长度都相同、已上传完成且数据保存在自身文件中的上传，走 idx_file_fingerprint 索引
+     *
+     * @param fingerprint 客户端指纹
+     * @param contentLength 上传长度
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.manage.domain.File> 只包含id、长度、所在盘与服务端摘要
+     */
+    @Query("SELECT id, content_length, content_offset, last_uploaded_chunk_number, is_partial, is_virtual, disk, content_sha256 FROM file"
+            + " WHERE fingerprint = :fingerprint AND content_length = :contentLength AND is_completed = 1 AND is_virtual = 0"
+            + " ORDER BY id LIMIT 1")
+    Mono<File> findDedupSource(String fingerprint, long contentLength);
 
+    /**
+     * 记录服务端计算的内容摘要
+     *
+     * @param id 文件id
+     * @param sha256 SHA-256（十六进制）
+     * @return reactor.core.publisher.Mono<java.lang.Integer>
+     */
+    @Modifying
+    @Query("UPDATE file SET content_sha256 = :sha256 WHERE id = :id")
+    Mono<Integer> updateContentSha256(Long id, String sha256);
 }
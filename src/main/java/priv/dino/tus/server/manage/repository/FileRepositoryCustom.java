@@ -0,0 +1,23 @@
+package priv.dino.tus.server.manage.repository;
+
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * 文件 持久层自定义操作
+ *
+ * @author dino
+ * @date 2026/10/18 16:02
+ */
+public interface FileRepositoryCustom {
+
+    /**
+     * 在一次批量 UPDATE 中写入多个上传的偏移量，偏移量只会前进不会回退
+     *
+     * @param files 上传状态
+     * @return reactor.core.publisher.Mono<java.lang.Integer> 更新的行数
+     */
+    Mono<Integer> updateOffsets(Collection<File> files);
+}
@@ -0,0 +1,59 @@
+package priv.dino.tus.server.manage.repository;
+
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.binding.BindMarkers;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * 文件 持久层自定义操作实现
+ *
+ * @author dino
+ * @date 2026/10/18 16:02
+ */
+@RequiredArgsConstructor
+public class FileRepositoryCustomImpl implements FileRepositoryCustom {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Integer> updateOffsets(Collection<File> files) {
+        if (files.isEmpty()) {
+            return Mono.just(0);
+        }
+        // 占位符随方言变化（MySQL 为 ?，H2/PostgreSQL 为 $n），参数统一按下标绑定
+        final BindMarkers bindMarkers = DialectResolver.getDialect(databaseClient.getConnectionFactory()).getBindMarkersFactory().create();
+        final String sql = "UPDATE file SET content_offset = " + bindMarkers.next().getPlaceholder()
+                + ", last_uploaded_chunk_number = " + bindMarkers.next().getPlaceholder()
+                + ", updated_at = " + bindMarkers.next().getPlaceholder()
+                + " WHERE id = " + bindMarkers.next().getPlaceholder()
+                + " AND content_offset < " + bindMarkers.next().getPlaceholder();
+
+        return databaseClient.inConnectionMany(connection -> {
+            final Statement statement = connection.createStatement(sql);
+            final LocalDateTime now = LocalDateTime.now();
+            final Iterator<File> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                final File file = iterator.next();
+                statement.bind(0, file.getContentOffset());
+                statement.bind(1, file.getLastUploadedChunkNumber());
+                statement.bind(2, now);
+                statement.bind(3, file.getId());
+                statement.bind(4, file.getContentOffset());
+                if (iterator.hasNext()) {
+                    statement.add();
+                }
+            }
+            return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+        }).reduce(0, Integer::sum);
+    }
+}
@@ -0,0 +1,934 @@
+package priv.dino.tus.server.manage.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.callback.ReactiveEntityCallbacks;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterConvertCallback;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.r2dbc.mapping.event.BeforeConvertCallback;
+import org.springframework.data.r2dbc.mapping.event.BeforeSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.beans.PropertyDescriptor;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * 基于追加日志的文件持久层，不需要数据库
+ * <p>
+ * 全部上传记录保存在内存的哈希表中。每次修改先把修改后的完整记录（删除时为删除记录）追加到日志文件，再更新内存，
+ * 读操作只查内存。日志记录带长度与 CRC32；启动时加载快照并按顺序重放之后的日志，崩溃时写了一半的末尾记录被截掉。
+ * <p>
+ * 按间隔或日志超过上限时生成快照：先切换到下一代日志文件，把切换时刻的全部记录写入临时文件，落盘后原子重命名为快照，
+ * 最后删除旧日志。快照写入期间的修改进入新日志，重放时接在快照之后。
+ * <p>
+ * 未压实的虚拟合并文件、未完成上传的 (创建时间, id) 顺序与秒传来源（指纹与长度）各有一个内存索引，
+ * 对应的查询不扫描全表。修改在专用的单线程上追加日志，不占用调用方（Netty 事件循环）线程；
+ * 日志写入进入页缓存即返回，由专用线程按 flushInterval 定期落盘；flushInterval 为 0 时每次写入在释放锁之后落盘，
+ * 落盘不阻塞读取。快照同样由专用线程按 snapshotInterval 生成，为 0 时只在日志超过上限时生成。
+ * 实体回调与 R2DBC 相同：保存前分配id，读出与保存后登记所在盘；创建与修改时间由本类维护。
+ *
+ * @author dino
+ * @date 2026/10/19 01:30
+ */
+@Slf4j
+public class LogFileRepository implements FileRepository, InitializingBean, DisposableBean, MeterBinder {
+
+    public static final String SNAPSHOT = "snapshot";
+    public static final String LOG_PREFIX = "log.";
+
+    private static final SqlIdentifier TABLE = SqlIdentifier.unquoted("file");
+    private static final int SNAPSHOT_MAGIC = 0x54555353;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private final Path directory;
+    private final TusServerProperties.MetadataStore properties;
+    private final ReactiveEntityCallbacks entityCallbacks;
+    /**
+     * 追加日志的单线程；取消订阅时不中断线程，中断会关闭共用的日志文件
+     */
+    private final ExecutorService writerExecutor;
+    private final Scheduler writer;
+
+    private final Map<Long, File> files = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> virtualIds = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Cursor> incomplete = new ConcurrentSkipListSet<>();
+    private final Map<String, NavigableSet<Long>> dedupSources = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    private final Object snapshotLock = new Object();
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private FileChannel journal;
+    private ScheduledExecutorService scheduler;
+    private long generation;
+    private volatile long logSize;
+    private boolean dirty;
+    private boolean closed;
+
+    public LogFileRepository(Path directory, TusServerProperties.MetadataStore properties, ReactiveEntityCallbacks entityCallbacks) {
+        this.directory = directory;
+        this.properties = properties;
+        this.entityCallbacks = entityCallbacks;
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tus-metadata-log-");
+        threadFactory.setDaemon(true);
+        this.writerExecutor = Executors.newSingleThreadExecutor(threadFactory);
+        // 以 Executor 传入，Reactor 不会按 ExecutorService 在取消时中断任务
+        this.writer = Schedulers.fromExecutor(writerExecutor::execute);
+    }
+
+    /**
+     * 加载快照，重放之后的日志，截掉末尾不完整的记录
+     */
+    @Override
+    public synchronized void afterPropertiesSet() throws IOException {
+        final long started = System.nanoTime();
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(SNAPSHOT + ".tmp"));
+        final long snapshotGeneration = this.loadSnapshot();
+        final List<Long> generations = this.logGenerations();
+        int replayed = 0;
+        generation = snapshotGeneration;
+        for (Long logGeneration : generations) {
+            if (logGeneration < snapshotGeneration) {
+                Files.delete(this.logPath(logGeneration));
+            } else {
+                replayed += this.replay(this.logPath(logGeneration));
+                generation = logGeneration;
+            }
+        }
+        journal = FileChannel.open(this.logPath(generation), CREATE, WRITE);
+        logSize = journal.size();
+        journal.position(logSize);
+        this.schedule();
+        log.info("Metadata store {} recovered {} uploads from snapshot {} and {} log records in {} ms",
+                directory, files.size(), snapshotGeneration, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * 定期落盘与快照在专用线程上执行，不占用 @Scheduled 的共用线程；间隔为 0 时不安排
+     */
+    private void schedule() {
+        if (properties.getFlushInterval() <= 0 && properties.getSnapshotInterval() <= 0) {
+            return;
+        }
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tus-metadata-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newScheduledThreadPool(2, threadFactory);
+        if (properties.getFlushInterval() > 0) {
+            scheduler.scheduleWithFixedDelay(this::flush, properties.getFlushInterval(), properties.getFlushInterval(), TimeUnit.MILLISECONDS);
+        }
+        if (properties.getSnapshotInterval() > 0) {
+            scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, properties.getSnapshotInterval(), properties.getSnapshotInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private long loadSnapshot() throws IOException {
+        final Path snapshot = directory.resolve(SNAPSHOT);
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot, READ), 65536))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a metadata snapshot: " + snapshot);
+            }
+            final long snapshotGeneration = in.readLong();
+            final long count = in.readLong();
+            for (long i = 0; i < count; i++) {
+                final byte[] record = readRecord(in);
+                if (record == null) {
+                    throw new IOException("Metadata snapshot is corrupt: " + snapshot);
+                }
+                this.apply(record);
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    private int replay(Path path) throws IOException {
+        int replayed = 0;
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path, READ), 65536))) {
+            for (byte[] record; (record = readRecord(in)) != null; replayed++) {
+                this.apply(record);
+                valid += 8 + record.length;
+            }
+        }
+        if (valid < Files.size(path)) {
+            log.warn("Metadata log {} has a torn tail, truncated from {} to {} bytes", path, Files.size(path), valid);
+            try (FileChannel channel = FileChannel.open(path, WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * 读一条记录：长度、CRC32、类型与内容；到达末尾或记录不完整、校验失败时返回空
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            final int length = in.readInt();
+            final int crc = in.readInt();
+            if (length <= 0 || length > 64 * 1024 * 1024) {
+                return null;
+            }
+            final byte[] record = new byte[length];
+            in.readFully(record);
+            final CRC32 crc32 = new CRC32();
+            crc32.update(record, 0, length);
+            return (int) crc32.getValue() == crc ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void apply(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            final byte type = in.readByte();
+            if (type == PUT) {
+                final File file = decode(in);
+                this.index(files.put(file.getId(), file), file);
+            } else if (type == DELETE) {
+                final long id = in.readLong();
+                this.index(files.remove(id), null);
+            }
+        }
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(LOG_PREFIX) && name.substring(LOG_PREFIX.length()).matches("\\d+"))
+                    .map(name -> Long.valueOf(name.substring(LOG_PREFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration);
+    }
+
+    /**
+     * 先追加日志再更新内存，日志写入失败时内存不变
+     *
+     * @return 记录追加到的日志，每次写入都落盘时调用方释放锁之后交给 {@link #sync(FileChannel)}
+     */
+    private synchronized FileChannel write(Long id, File file) {
+        final byte[] record;
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            if (file == null) {
+                out.writeByte(DELETE);
+                out.writeLong(id);
+            } else {
+                out.writeByte(PUT);
+                encode(file, out);
+            }
+            record = bytes.toByteArray();
+            this.append(record);
+        } catch (IOException e) {
+            throw new TransientDataAccessResourceException("Metadata log write failed: " + id, e);
+        }
+        this.index(file == null ? files.remove(id) : files.put(id, file), file);
+        if (logSize >= properties.getMaxLogSize() && !snapshotting.get()) {
+            Mono.fromRunnable(this::snapshot).subscribeOn(Schedulers.boundedElastic())
+                    .subscribe(null, e -> log.error("Metadata snapshot failed", e));
+        }
+        return journal;
+    }
+
+    /**
+     * flushInterval 为 0 时在锁外使记录落盘；日志已被快照切换或关闭时，关闭之前已经落盘
+     */
+    private void sync(FileChannel channel) {
+        if (channel == null || properties.getFlushInterval() > 0) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            log.trace("Metadata log already forced and closed by a snapshot");
+        } catch (IOException e) {
+            throw new TransientDataAccessResourceException("Metadata log force failed", e);
+        }
+    }
+
+    private void append(byte[] record) throws IOException {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(record, 0, record.length);
+        final ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+        buffer.putInt(record.length).putInt((int) crc32.getValue()).put(record).flip();
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        logSize += 8 + record.length;
+        appends.increment();
+        dirty = true;
+    }
+
+    private void index(File previous, File current) {
+        if (previous != null) {
+            virtualIds.remove(previous.getId());
+            if (previous.getCreatedAt() != null) {
+                incomplete.remove(new Cursor(previous.getCreatedAt(), previous.getId()));
+            }
+            final NavigableSet<Long> sources = dedupSources.get(dedupKey(previous.getFingerprint(), previous.getContentLength()));
+            if (sources != null) {
+                sources.remove(previous.getId());
+            }
+        }
+        if (current != null) {
+            if (current.isVirtualStatus()) {
+                virtualIds.add(current.getId());
+            }
+            final boolean completed = Objects.equals(current.getContentOffset(), current.getContentLength());
+            if (!completed && current.getCreatedAt() != null) {
+                incomplete.add(new Cursor(current.getCreatedAt(), current.getId()));
+            }
+            if (completed && !current.isVirtualStatus() && current.getFingerprint() != null) {
+                dedupSources.computeIfAbsent(dedupKey(current.getFingerprint(), current.getContentLength()), key -> new ConcurrentSkipListSet<>())
+                        .add(current.getId());
+            }
+        }
+    }
+
+    private static String dedupKey(String fingerprint, Long contentLength) {
+        return fingerprint + '\u0000' + contentLength;
+    }
+
+    /**
+     * 使当前日志落盘，只在取出日志时持有锁，落盘期间写入照常进行
+     */
+    public void flush() {
+        final FileChannel channel;
+        synchronized (this) {
+            if (!dirty || journal == null || closed) {
+                return;
+            }
+            channel = journal;
+            dirty = false;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            log.trace("Metadata log already forced and closed by a snapshot");
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            log.error("Metadata log flush failed", e);
+        }
+    }
+
+    private void scheduledSnapshot() {
+        if (logSize > 0) {
+            try {
+                this.snapshot();
+            } catch (RuntimeException e) {
+                log.error("Metadata snapshot failed", e);
+            }
+        }
+    }
+
+    /**
+     * 切换到下一代日志，写入切换时刻的快照，删除快照之前的日志
+     */
+    public void snapshot() {
+        if (!snapshotting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (snapshotLock) {
+                this.writeSnapshot();
+            }
+        } catch (IOException e) {
+            throw new TransientDataAccessResourceException("Metadata snapshot failed", e);
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        final long next;
+        final List<File> state;
+        final FileChannel previous;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            next = generation + 1;
+            previous = journal;
+            journal = FileChannel.open(this.logPath(next), CREATE, WRITE);
+            generation = next;
+            logSize = 0;
+            dirty = false;
+            state = new ArrayList<>(files.values());
+        }
+        // 旧日志不再追加，在锁外落盘后关闭
+        previous.force(false);
+        previous.close();
+        final Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE)) {
+            channel.truncate(0);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(65536);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(next);
+            out.writeLong(state.size());
+            for (File file : state) {
+                final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+                final DataOutputStream recordOut = new DataOutputStream(record);
+                recordOut.writeByte(PUT);
+                encode(file, recordOut);
+                final CRC32 crc32 = new CRC32();
+                crc32.update(record.toByteArray(), 0, record.size());
+                out.writeInt(record.size());
+                out.writeInt((int) crc32.getValue());
+                record.writeTo(out);
+                if (bytes.size() >= 65536) {
+                    channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+                    bytes.reset();
+                }
+            }
+            channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (Long logGeneration : this.logGenerations()) {
+            if (logGeneration < next) {
+                Files.deleteIfExists(this.logPath(logGeneration));
+            }
+        }
+        snapshots.increment();
+        log.debug("Metadata snapshot {} written with {} uploads", next, state.size());
+    }
+
+    // ---------------------------------------------------------------- 编码
+
+    private static void encode(File file, DataOutputStream out) throws IOException {
+        out.writeLong(file.getId());
+        writeString(out, file.getMimeType());
+        writeLong(out, file.getContentLength());
+        writeLong(out, file.getContentOffset());
+        writeLong(out, file.getLastUploadedChunkNumber());
+        writeString(out, file.getOriginalName());
+        out.writeBoolean(file.isPartialStatus());
+        writeString(out, file.getFingerprint());
+        out.writeBoolean(file.isVirtualStatus());
+        writeString(out, file.getConcatManifest());
+        writeString(out, file.getContentSha256());
+        out.writeInt(file.getDisk() == null ? -1 : file.getDisk());
+        writeTime(out, file.getCreatedAt());
+        writeTime(out, file.getUpdatedAt());
+        writeString(out, file.getShapingKey());
+    }
+
+    private static File decode(DataInputStream in) throws IOException {
+        return File.builder()
+                .id(in.readLong())
+                .mimeType(readString(in))
+                .contentLength(readLong(in))
+                .contentOffset(readLong(in))
+                .lastUploadedChunkNumber(readLong(in))
+                .originalName(readString(in))
+                .partialStatus(in.readBoolean())
+                .fingerprint(readString(in))
+                .virtualStatus(in.readBoolean())
+                .concatManifest(readString(in))
+                .contentSha256(readString(in))
+                .disk(readDisk(in))
+                .createdAt(readTime(in))
+                .updatedAt(readTime(in))
+                .shapingKey(readString(in))
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeLong(value == null ? 0 : value);
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        final boolean present = in.readBoolean();
+        final long value = in.readLong();
+        return present ? value : null;
+    }
+
+    private static Integer readDisk(DataInputStream in) throws IOException {
+        final int disk = in.readInt();
+        return disk < 0 ? null : disk;
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeLong(value == null ? 0 : value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value == null ? 0 : value.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        final boolean present = in.readBoolean();
+        final long seconds = in.readLong();
+        final int nanos = in.readInt();
+        return present ? LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC) : null;
+    }
+
+    /**
+     * 内存中的记录不对外暴露，调用方拿到的都是副本
+     */
+    private static File copy(File file) {
+        return file == null ? null : File.builder()
+                .id(file.getId())
+                .mimeType(file.getMimeType())
+                .contentLength(file.getContentLength())
+                .contentOffset(file.getContentOffset())
+                .lastUploadedChunkNumber(file.getLastUploadedChunkNumber())
+                .originalName(file.getOriginalName())
+                .partialStatus(file.isPartialStatus())
+                .fingerprint(file.getFingerprint())
+                .virtualStatus(file.isVirtualStatus())
+                .concatManifest(file.getConcatManifest())
+                .contentSha256(file.getContentSha256())
+                .disk(file.getDisk())
+                .createdAt(file.getCreatedAt())
+                .updatedAt(file.getUpdatedAt())
+                .shapingKey(file.getShapingKey())
+                .build();
+    }
+
+    // ---------------------------------------------------------------- 实体回调
+
+    private Mono<File> afterConvert(File file) {
+        return entityCallbacks == null ? Mono.just(file) : entityCallbacks.callback(AfterConvertCallback.class, file, TABLE);
+    }
+
+    private Mono<File> read(Long id) {
+        return Mono.fromSupplier(() -> copy(files.get(id))).flatMap(this::afterConvert);
+    }
+
+    // ---------------------------------------------------------------- ReactiveCrudRepository
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends File> Mono<S> save(@NonNull S entity) {
+        return Mono.defer(() -> {
+            final boolean isNew = entity.getId() == null;
+            final Mono<File> converted = entityCallbacks == null ? Mono.just(entity)
+                    : entityCallbacks.callback(BeforeConvertCallback.class, (File) entity, TABLE)
+                    .flatMap(e -> entityCallbacks.callback(BeforeSaveCallback.class, e, new OutboundRow(), TABLE));
+            return converted.flatMap(e -> Mono.fromCallable(() -> this.store(e, isNew)).subscribeOn(writer))
+                    .flatMap(e -> entityCallbacks == null ? Mono.just(e) : entityCallbacks.callback(AfterSaveCallback.class, e, new OutboundRow(), TABLE))
+                    .map(e -> (S) e);
+        });
+    }
+
+    private File store(File entity, boolean isNew) {
+        if (entity.getId() == null) {
+            throw new IllegalStateException("Upload id not assigned: " + entity);
+        }
+        final LocalDateTime now = LocalDateTime.now();
+        final FileChannel appended;
+        synchronized (this) {
+            final File current = files.get(entity.getId());
+            if (!isNew && current == null) {
+                throw new TransientDataAccessResourceException(
+                        String.format("Failed to update table [file]. Row with Id [%s] does not exist.", entity.getId()));
+            }
+            if (entity.getCreatedAt() == null) {
+                entity.setCreatedAt(current == null ? now : current.getCreatedAt());
+            }
+            entity.setUpdatedAt(now);
+            appended = this.write(entity.getId(), copy(entity));
+        }
+        this.sync(appended);
+        return entity;
+    }
+
+    @Override
+    public <S extends File> Flux<S> saveAll(@NonNull Iterable<S> entities) {
+        return Flux.fromIterable(entities).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends File> Flux<S> saveAll(@NonNull Publisher<S> entityStream) {
+        return Flux.from(entityStream).concatMap(this::save);
+    }
+
+    @Override
+    public Mono<File> findById(@NonNull Long id) {
+        return this.read(id);
+    }
+
+    @Override
+    public Mono<File> findById(@NonNull Publisher<Long> id) {
+        return Mono.from(id).flatMap(this::read);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(@NonNull Long id) {
+        return Mono.fromSupplier(() -> files.containsKey(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(@NonNull Publisher<Long> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<File> findAll() {
+        return Flux.defer(() -> Flux.fromIterable(new ArrayList<>(files.values()))).map(LogFileRepository::copy).concatMap(this::afterConvert);
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Flux<File> findAll(@NonNull Sort sort) {
+        Comparator<File> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            final Comparator<File> property = Comparator.comparing(
+                    file -> (Comparable) new BeanWrapperImpl(file).getPropertyValue(order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? property : property.reversed());
+        }
+        return this.findAll().sort(comparator);
+    }
+
+    @Override
+    public Flux<File> findAllById(@NonNull Iterable<Long> ids) {
+        return Flux.fromIterable(ids).concatMap(this::read);
+    }
+
+    @Override
+    public Flux<File> findAllById(@NonNull Publisher<Long> idStream) {
+        return Flux.from(idStream).concatMap(this::read);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) files.size());
+    }
+
+    @Override
+    public Mono<Void> deleteById(@NonNull Long id) {
+        return Mono.<Void>fromRunnable(() -> this.remove(id)).subscribeOn(writer);
+    }
+
+    @Override
+    public Mono<Void> deleteById(@NonNull Publisher<Long> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(@NonNull File entity) {
+        return this.deleteById(entity.getId());
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(@NonNull Iterable<? extends Long> ids) {
+        return Flux.fromIterable(ids).concatMap(this::deleteById).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(@NonNull Iterable<? extends File> entities) {
+        return Flux.fromIterable(entities).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(@NonNull Publisher<? extends File> entityStream) {
+        return Flux.from(entityStream).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Flux.defer(() -> Flux.fromIterable(new ArrayList<>(files.keySet()))).concatMap(this::deleteById).then();
+    }
+
+    // ---------------------------------------------------------------- ReactiveQueryByExampleExecutor
+
+    /**
+     * 按示例的非空属性精确匹配，忽略示例匹配器中忽略的属性
+     */
+    private boolean matches(Example<? extends File> example, File file) {
+        final BeanWrapperImpl probe = new BeanWrapperImpl(example.getProbe());
+        final BeanWrapperImpl candidate = new BeanWrapperImpl(file);
+        for (PropertyDescriptor descriptor : probe.getPropertyDescriptors()) {
+            final String name = descriptor.getName();
+            if ("class".equals(name) || example.getMatcher().isIgnoredPath(name)) {
+                continue;
+            }
+            final Object value = probe.getPropertyValue(name);
+            if (value != null && !value.equals(candidate.getPropertyValue(name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends File> Flux<S> findAll(@NonNull Example<S> example) {
+        return this.findAll().filter(file -> this.matches(example, file)).map(file -> (S) file);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends File> Flux<S> findAll(@NonNull Example<S> example, @NonNull Sort sort) {
+        return this.findAll(sort).filter(file -> this.matches(example, file)).map(file -> (S) file);
+    }
+
+    @Override
+    public <S extends File> Mono<S> findOne(@NonNull Example<S> example) {
+        return this.findAll(example).take(2).collectList().flatMap(found -> found.size() > 1
+                ? Mono.error(new IncorrectResultSizeDataAccessException(1, found.size()))
+                : Mono.justOrEmpty(found.stream().findFirst()));
+    }
+
+    @Override
+    public <S extends File> Mono<Long> count(@NonNull Example<S> example) {
+        return this.findAll(example).count();
+    }
+
+    @Override
+    public <S extends File> Mono<Boolean> exists(@NonNull Example<S> example) {
+        return this.findAll(example).hasElements();
+    }
+
+    private void remove(Long id) {
+        final FileChannel appended;
+        synchronized (this) {
+            appended = files.containsKey(id) ? this.write(id, null) : null;
+        }
+        this.sync(appended);
+    }
+
+    // ---------------------------------------------------------------- FileRepository
+
+    @Override
+    public Mono<File> findFirstByVirtualStatusIsTrue() {
+        return Mono.fromSupplier(() -> virtualIds.ceiling(Long.MIN_VALUE)).flatMap(this::read);
+    }
+
+    @Override
+    public Flux<File> findAllByVirtualStatusIsTrue() {
+        return Flux.defer(() -> Flux.fromIterable(new ArrayList<>(virtualIds))).concatMap(this::read);
+    }
+
+    @Override
+    public Flux<File> findExpiredAfter(LocalDateTime cutoff, LocalDateTime createdAt, Long id, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(incomplete.tailSet(new Cursor(createdAt, id), false)))
+                .takeWhile(cursor -> cursor.createdAt.isBefore(cutoff))
+                .take(limit)
+                .concatMap(cursor -> this.read(cursor.id));
+    }
+
+    @Override
+    public Mono<File> findUploadStateById(Long id) {
+        return this.read(id);
+    }
+
+    @Override
+    public Mono<Integer> advanceOffset(Long id, long expected, long delta) {
+        return Mono.fromSupplier(() -> {
+            final FileChannel appended;
+            synchronized (this) {
+                final File current = files.get(id);
+                if (current == null || current.getContentOffset() != expected) {
+                    return 0;
+                }
+                appended = this.write(id, current.withContentOffset(expected + delta)
+                        .withLastUploadedChunkNumber(current.getLastUploadedChunkNumber() == null ? null : current.getLastUploadedChunkNumber() + 1)
+                        .withUpdatedAt(LocalDateTime.now()));
+            }
+            this.sync(appended);
+            return 1;
+        }).subscribeOn(writer);
+    }
+
+    @Override
+    public Mono<File> findDedupSource(String fingerprint, long contentLength) {
+        return Mono.fromSupplier(() -> {
+            final NavigableSet<Long> sources = dedupSources.get(dedupKey(fingerprint, contentLength));
+            return sources == null || sources.isEmpty() ? null : sources.first();
+        }).flatMap(this::read);
+    }
+
+    @Override
+    public Mono<Integer> updateContentSha256(Long id, String sha256) {
+        return Mono.fromSupplier(() -> {
+            final FileChannel appended;
+            synchronized (this) {
+                final File current = files.get(id);
+                if (current == null) {
+                    return 0;
+                }
+                appended = this.write(id, current.withContentSha256(sha256));
+            }
+            this.sync(appended);
+            return 1;
+        }).subscribeOn(writer);
+    }
+
+    @Override
+    public Mono<Integer> updateOffsets(Collection<File> updates) {
+        return Mono.fromSupplier(() -> {
+            int updated = 0;
+            FileChannel appended = null;
+            synchronized (this) {
+                final LocalDateTime now = LocalDateTime.now();
+                for (File update : updates) {
+                    final File current = files.get(update.getId());
+                    if (current != null && current.getContentOffset() < update.getContentOffset()) {
+                        appended = this.write(update.getId(), current.withContentOffset(update.getContentOffset())
+                                .withLastUploadedChunkNumber(update.getLastUploadedChunkNumber())
+                                .withUpdatedAt(now));
+                        updated++;
+                    }
+                }
+            }
+            this.sync(appended);
+            return updated;
+        }).subscribeOn(writer);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("tus.metadata.records", files, Map::size)
+                .description("Upload records held by the embedded metadata store")
+                .register(registry);
+        Gauge.builder("tus.metadata.log.size", this, repository -> repository.logSize)
+                .description("Bytes in the current metadata log since the last snapshot")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("tus.metadata.appends", appends, LongAdder::sum)
+                .description("Records appended to the metadata log")
+                .register(registry);
+        FunctionCounter.builder("tus.metadata.snapshots", snapshots, LongAdder::sum)
+                .description("Snapshots written by the embedded metadata store")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        // 等待进行中的快照写完，之后不再切换日志
+        synchronized (snapshotLock) {
+            synchronized (this) {
+                closed = true;
+                if (journal != null) {
+                    journal.force(false);
+                    journal.close();
+                }
+            }
+        }
+        writerExecutor.shutdown();
+    }
+
+    /**
+     * 未完成上传的 (创建时间, id) 游标
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final LocalDateTime createdAt;
+        private final long id;
+
+        private Cursor(LocalDateTime createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            final int byTime = createdAt.compareTo(other.createdAt);
+            return byTime != 0 ? byTime : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Cursor && compareTo((Cursor) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(createdAt, id);
+        }
+    }
+}
@@ -40,10 +40,13 @@ public class DownloadRouter {
                     operation = @Operation(operationId = "handle", summary = "The download file.", method = "GET",
                             responses = {
                                     @ApiResponse(responseCode = "404", description = "Download unit of work not found."),
+                                    @ApiResponse(responseCode = "416", description = "Range not satisfiable."),
+                                    @ApiResponse(responseCode = "206", description = "Requested range of the download unit of work."),
                                     @ApiResponse(responseCode = "200", description = "Download unit of work found.")},
                             parameters = {@Parameter(in = ParameterIn.PATH, name = "uploadId",
                                     required = true, description = "The ID of the upload unit of work",
-                                    schema = @Schema(type = "string", format = "SnowflakeID"))})
+                                    schema = @Schema(type = "string", format = "SnowflakeID")),
+                                    @Parameter(name = "Range", in = ParameterIn.HEADER, example = "bytes=0-1023", schema = @Schema(type = "string"))})
             )
     })
     @Bean
@@ -4,7 +4,10 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import org.springdoc.core.annotations.RouterOperation;
@@ -47,6 +50,17 @@ public class UploadRouter {
                                     required = true, description = "The ID of the upload unit of work",
                                     schema = @Schema(type = "string", format= "SnowflakeID"))})
             ),
+            @RouterOperation(
+                    path = "/tus/upload/",
+                    beanClass = DeleteHandler.class,
+                    beanMethod = "handleBulkRequest",
+                    method = RequestMethod.DELETE,
+                    operation = @Operation(operationId = "handleBulkRequest", summary = "Deletes every listed upload.", method = "DELETE",
+                            requestBody = @RequestBody(description = "The IDs of the uploads to terminate.", required = true,
+                                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                            array = @ArraySchema(schema = @Schema(type = "string", format = "SnowflakeID")))),
+                            responses = {@ApiResponse(responseCode = "204", description = "Request processed")})
+            ),
             @RouterOperation(
                     path = "/tus/upload/{uploadId}",
                     beanClass = HeadHandler.class,
@@ -87,7 +101,8 @@ public class UploadRouter {
                                     @ApiResponse(responseCode = "413", description = "Upload size too large."),
                                     @ApiResponse(responseCode = "400", description = "Bad Request."),
                                     @ApiResponse(responseCode = "201", description = "Upload unit of work Created.",
-                                            headers = {@Header(name = "Location", description = "The uri of the created upload unit of work.", required = true)})})
+                                            headers = {@Header(name = "Location", description = "The uri of the created upload unit of work.", required = true),
+                                                    @Header(name = "Upload-Offset", description = "Bytes already stored; equals Upload-Length when the upload was deduplicated.")})})
             ),
             @RouterOperation(
                     path = "/tus/upload/{uploadId}",
@@ -139,6 +154,7 @@ public class UploadRouter {
                 path(tusServerProperties.getContextPath()),
                 RouterFunctions
                         .route(DELETE("{uploadId}").and(accept(MediaType.APPLICATION_JSON)),deleteHandler::handleRequest)
+                        .andRoute(DELETE("").and(accept(MediaType.APPLICATION_JSON)),deleteHandler::handleBulkRequest)
                         .andRoute(HEAD("{uploadId}").and(accept(MediaType.APPLICATION_JSON)),handleRequest::handleRequest)
                         .andRoute(OPTIONS("").and(accept(MediaType.APPLICATION_JSON)),optionsHandler::handleRequest)
                         .andRoute(POST("").and(accept(MediaType.APPLICATION_JSON)),postHandler::handleRequest)
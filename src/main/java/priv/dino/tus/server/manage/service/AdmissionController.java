@@ -0,0 +1,177 @@
+package priv.dino.tus.server.manage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.error.OverloadException;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PATCH 准入控制
+ * <p>
+ * 同时写入的 PATCH 数超过上限时直接返回 503 与 Retry-After，不在磁盘队列里排队拖慢所有上传。
+ * 上限按梯度算法自适应：每个采样窗口取单次写文件的平均延迟作为短期延迟，与缓慢跟随的长期基线比较，
+ * 短期延迟不超过基线的 tolerance 倍时上限按 sqrt(limit) 增长，超过时按比例缩小（每次最多减半）。
+ * 写文件延迟只计通道写入本身，不含等待客户端数据的时间，慢速客户端不会拉低上限。
+ * 并发数不到上限一半时不增长，避免空闲时上限无限变大。
+ * Retry-After 按已准入 PATCH 的平均耗时与超出上限的请求数估算。
+ *
+ * @author dino
+ * @date 2026/10/18 22:20
+ */
+@Slf4j
+@Service
+public class AdmissionController implements MeterBinder {
+
+    /**
+     * 长期基线的平滑窗口（以采样窗口计）
+     */
+    private static final int LONG_WINDOW = 60;
+
+    private final TusServerProperties.Admission properties;
+    private final UploadMetrics uploadMetrics;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double shortLatency;
+    private double longLatency;
+    private double patchNanos;
+    private long sampledAt;
+    private long sampledCount;
+    private long sampledNanos;
+    private Counter rejections;
+
+    public AdmissionController(TusServerProperties tusServerProperties, UploadMetrics uploadMetrics) {
+        this.properties = tusServerProperties.getAdmission();
+        this.uploadMetrics = uploadMetrics;
+        this.limit = properties.getInitialLimit();
+        this.sampledAt = System.nanoTime();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 在上限内执行 PATCH，超出上限时立即以 {@link OverloadException} 结束，不订阅 patch
+     */
+    public <T> Mono<T> admit(Mono<T> patch) {
+        if (!this.isEnabled()) {
+            return patch;
+        }
+        return Mono.defer(() -> {
+            this.update();
+            if (!this.tryAcquire()) {
+                final long retryAfter = this.retryAfter();
+                if (rejections != null) {
+                    rejections.increment();
+                }
+                log.debug("PATCH rejected: {} in flight, limit {}, retry after {}s", inFlight.get(), (int) limit, retryAfter);
+                return Mono.error(new OverloadException(retryAfter));
+            }
+            final long started = System.nanoTime();
+            return patch.doFinally(signalType -> this.release(System.nanoTime() - started));
+        });
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(long nanos) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            patchNanos = patchNanos == 0 ? nanos : patchNanos * 0.9 + nanos * 0.1;
+        }
+    }
+
+    /**
+     * 每个采样窗口按区间内的平均写文件延迟调整一次上限，区间内没有写入时不调整
+     */
+    synchronized void update() {
+        final long now = System.nanoTime();
+        if (now - sampledAt < TimeUnit.MILLISECONDS.toNanos(properties.getWindow())) {
+            return;
+        }
+        final long count = uploadMetrics.writeCount();
+        final long nanos = uploadMetrics.writeNanos();
+        final long writes = count - sampledCount;
+        final long elapsed = nanos - sampledNanos;
+        sampledAt = now;
+        sampledCount = count;
+        sampledNanos = nanos;
+        if (writes <= 0) {
+            return;
+        }
+        shortLatency = (double) elapsed / writes;
+        if (longLatency == 0) {
+            longLatency = shortLatency;
+        } else {
+            longLatency += (shortLatency - longLatency) / LONG_WINDOW;
+            // 负载下降后基线远高于当前延迟时加快回落，否则恢复后很久都不会缩小上限
+            if (longLatency > shortLatency * 2) {
+                longLatency = longLatency * 0.95 + shortLatency * 0.05;
+            }
+        }
+        if (inFlight.get() < limit / 2) {
+            return;
+        }
+        final double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longLatency / shortLatency));
+        final double target = limit * gradient + Math.sqrt(limit);
+        final double smoothed = limit * (1 - properties.getSmoothing()) + target * properties.getSmoothing();
+        limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), smoothed));
+    }
+
+    /**
+     * 超出上限的请求数乘以平均 PATCH 耗时，按上限均摊
+     */
+    private synchronized long retryAfter() {
+        final double excess = inFlight.get() - limit + 1;
+        final double seconds = patchNanos * Math.max(1, excess) / limit / TimeUnit.SECONDS.toNanos(1);
+        return Math.max(1, Math.min(properties.getMaxRetryAfter(), (long) Math.ceil(seconds)));
+    }
+
+    /**
+     * 按 Vegas 的方式估算排队的写入：在途请求中因延迟高于基线而多出来的部分
+     */
+    private synchronized double queue() {
+        return shortLatency == 0 ? 0 : inFlight.get() * Math.max(0, 1 - longLatency / shortLatency);
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("tus.admission.limit", this, AdmissionController::getLimit)
+                .description("Current adaptive concurrency limit of PATCH requests")
+                .register(registry);
+        Gauge.builder("tus.admission.inflight", inFlight, AtomicInteger::get)
+                .description("Admitted PATCH requests in flight")
+                .register(registry);
+        Gauge.builder("tus.admission.queue", this, AdmissionController::queue)
+                .description("Estimated PATCH requests queued on storage, from write latency above the baseline")
+                .register(registry);
+        rejections = Counter.builder("tus.admission.rejections")
+                .description("PATCH requests rejected with 503 because the concurrency limit was reached")
+                .register(registry);
+    }
+}
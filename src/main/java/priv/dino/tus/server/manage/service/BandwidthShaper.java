@@ -0,0 +1,239 @@
+package priv.dino.tus.server.manage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传与下载带宽整形
+ * <p>
+ * 每个客户端（IP、请求头或 Upload-Metadata 中的键）各有一个上传令牌桶和一个下载令牌桶，另有一个所有流共用的全局令牌桶。
+ * 每个数据块先从令牌桶中扣除字节数，令牌不足时欠账，按欠账推迟把该块交给下游；
+ * 下游一次只向上游请求一块，推迟期间不会再请求下一块，限速靠背压传到 socket，内存里每个流最多压着一块数据。
+ * 客户端令牌桶存放在有容量上限、空闲过期的缓存中，被淘汰的客户端下次出现时从满桶开始。
+ * <p>
+ * 请求头与 Upload-Metadata 的值只以 SHA-256 摘要作为缓存键，认证头等凭据不留在内存中。
+ * 客户端只在创建上传时发送 Upload-Metadata，按其中的键区分时创建时把摘要保存在上传记录的 shaping_key 中，
+ * PATCH 与下载按上传记录取得所属客户端。
+ *
+ * @author dino
+ * @date 2026/10/18 23:40
+ */
+@Service
+public class BandwidthShaper implements MeterBinder {
+
+    private final TusServerProperties.Shaping properties;
+    private final UploadStateCache uploadStateCache;
+    private final Cache<String, TokenBucket> uploadBuckets;
+    private final Cache<String, TokenBucket> downloadBuckets;
+    private final TokenBucket globalBucket;
+
+    private Counter uploadDelay;
+    private Counter downloadDelay;
+
+    public BandwidthShaper(TusServerProperties tusServerProperties, UploadStateCache uploadStateCache) {
+        this.properties = tusServerProperties.getShaping();
+        this.uploadStateCache = uploadStateCache;
+        this.uploadBuckets = this.buckets();
+        this.downloadBuckets = this.buckets();
+        this.globalBucket = properties.getGlobalRate() > 0
+                ? new TokenBucket(properties.getGlobalRate(), properties.getGlobalBurst()) : null;
+    }
+
+    private Cache<String, TokenBucket> buckets() {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(properties.getIdleTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public boolean isUploadShaped() {
+        return properties.isEnabled() && (properties.getUploadRate() > 0 || globalBucket != null);
+    }
+
+    /**
+     * 下载被整形时，零拷贝的发送路径不经过数据流，需要改走读文件的数据流
+     */
+    public boolean isDownloadShaped() {
+        return properties.isEnabled() && (properties.getDownloadRate() > 0 || globalBucket != null);
+    }
+
+    /**
+     * 创建上传时取得要保存在上传记录中的客户端摘要，只在按 Upload-Metadata 区分时有值
+     */
+    public String creationKey(ServerHttpRequest request) {
+        if (!properties.isEnabled() || properties.getKey() != TusServerProperties.Shaping.Key.METADATA) {
+            return null;
+        }
+        final String metadata = this.metadata(request.getHeaders().getFirst("Upload-Metadata"), properties.getKeyName());
+        return StringUtils.isNotEmpty(metadata) ? sha256(metadata) : null;
+    }
+
+    public Flux<DataBuffer> shapeUpload(ServerHttpRequest request, Long id, Flux<DataBuffer> body) {
+        if (!this.isUploadShaped()) {
+            return body;
+        }
+        if (properties.getUploadRate() <= 0) {
+            return this.shape(body, null, uploadDelay);
+        }
+        final Mono<String> key = properties.getKey() == TusServerProperties.Shaping.Key.METADATA
+                ? uploadStateCache.get(id)
+                        .map(file -> this.key(request, file.getShapingKey()))
+                        .onErrorResume(e -> Mono.empty())
+                        .defaultIfEmpty(this.key(request))
+                : Mono.fromSupplier(() -> this.key(request));
+        return key.flatMapMany(client -> this.shape(body,
+                uploadBuckets.get(client, k -> new TokenBucket(properties.getUploadRate(), properties.getUploadBurst())), uploadDelay));
+    }
+
+    public Flux<DataBuffer> shapeDownload(ServerHttpRequest request, File file, Flux<DataBuffer> body) {
+        if (!this.isDownloadShaped()) {
+            return body;
+        }
+        final TokenBucket bucket = properties.getDownloadRate() > 0
+                ? downloadBuckets.get(this.key(request, file.getShapingKey()),
+                        key -> new TokenBucket(properties.getDownloadRate(), properties.getDownloadBurst()))
+                : null;
+        return this.shape(body, bucket, downloadDelay);
+    }
+
+    private Flux<DataBuffer> shape(Flux<DataBuffer> source, TokenBucket bucket, Counter delay) {
+        return source.concatMap(buffer -> {
+                    final long bytes = buffer.readableByteCount();
+                    final long wait = Math.max(bucket == null ? 0 : bucket.take(bytes), globalBucket == null ? 0 : globalBucket.take(bytes));
+                    if (wait <= 0) {
+                        return Mono.just(buffer);
+                    }
+                    if (delay != null) {
+                        delay.increment((double) wait / TimeUnit.SECONDS.toNanos(1));
+                    }
+                    return Mono.just(buffer).delayElement(Duration.ofNanos(wait));
+                }, 1)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * 按 Upload-Metadata 区分时使用上传记录中保存的摘要，没有时按请求区分
+     */
+    private String key(ServerHttpRequest request, String shapingKey) {
+        return properties.getKey() == TusServerProperties.Shaping.Key.METADATA && shapingKey != null
+                ? "m:" + shapingKey
+                : this.key(request);
+    }
+
+    /**
+     * 取不到配置的请求头或 Upload-Metadata 键时按 IP 区分
+     */
+    String key(ServerHttpRequest request) {
+        final String name = properties.getKeyName();
+        switch (properties.getKey()) {
+            case HEADER:
+                final String header = request.getHeaders().getFirst(name);
+                if (StringUtils.isNotEmpty(header)) {
+                    return "h:" + sha256(header);
+                }
+                break;
+            case METADATA:
+                final String metadata = this.metadata(request.getHeaders().getFirst("Upload-Metadata"), name);
+                if (StringUtils.isNotEmpty(metadata)) {
+                    return "m:" + sha256(metadata);
+                }
+                break;
+            default:
+                break;
+        }
+        return "ip:" + Optional.ofNullable(request.getRemoteAddress())
+                .map(InetSocketAddress::getAddress)
+                .map(address -> address.getHostAddress())
+                .orElse("unknown");
+    }
+
+    private String metadata(String metadata, String name) {
+        if (StringUtils.isEmpty(metadata)) {
+            return null;
+        }
+        for (String pair : metadata.split(",")) {
+            final String[] kv = pair.trim().split(" ");
+            if (kv[0].equals(name)) {
+                try {
+                    return kv.length > 1 ? new String(Base64.getDecoder().decode(kv[1]), StandardCharsets.UTF_8) : null;
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String sha256(String value) {
+        return DigestUtils.toHex(DigestUtils.getDigest("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    long clients() {
+        return uploadBuckets.estimatedSize() + downloadBuckets.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("tus.shaping.clients", this, BandwidthShaper::clients)
+                .description("Per-client token buckets kept in memory")
+                .register(registry);
+        uploadDelay = Counter.builder("tus.shaping.delay")
+                .description("Seconds streams were held back by bandwidth shaping")
+                .baseUnit("seconds")
+                .tag("direction", "upload")
+                .register(registry);
+        downloadDelay = Counter.builder("tus.shaping.delay")
+                .description("Seconds streams were held back by bandwidth shaping")
+                .baseUnit("seconds")
+                .tag("direction", "download")
+                .register(registry);
+    }
+
+    /**
+     * 令牌桶，允许欠账：返回还清欠账需要等待的纳秒数
+     */
+    static final class TokenBucket {
+
+        private final double rate;
+        private final double burst;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(long rate, long burst) {
+            this.rate = rate;
+            this.burst = Math.max(1, burst);
+            this.tokens = this.burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        synchronized long take(long bytes) {
+            final long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+            tokens -= bytes;
+            return tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+    }
+}
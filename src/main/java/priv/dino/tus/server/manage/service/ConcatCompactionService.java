@@ -0,0 +1,82 @@
+package priv.dino.tus.server.manage.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.util.ConcatManifestUtils;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.FileAlreadyExistsException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 虚拟合并文件的后台压实
+ * <p>
+ * 存储空闲时每次取出一个虚拟合并的最终上传，将各分片拷贝为一个物理文件后清除清单，
+ * 压实前后下载都能读到完整内容。
+ *
+ * @author dino
+ * @date 2026/10/18 11:20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "tus-server.concat", name = "compaction", havingValue = "true", matchIfMissing = true)
+public class ConcatCompactionService {
+
+    private final FileRepository fileRepository;
+    private final FileStorage fileStorage;
+    private final UploadStateCache uploadStateCache;
+    private final UploadService uploadService;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    /**
+     * 只触发压实，不等待完成：合并在存储盘的调度器上进行，不占用各定时任务共用的线程；上一次压实未完成时跳过
+     */
+    @Scheduled(fixedDelayString = "${tus-server.concat.compaction-interval:60000}")
+    public void compact() {
+        if (fileStorage.activeWrites() > 0) {
+            log.debug("Storage busy with {} writes, skip compaction.", fileStorage.activeWrites());
+            return;
+        }
+        if (!compacting.compareAndSet(false, true)) {
+            log.debug("Previous compaction still running, skip compaction.");
+            return;
+        }
+        fileRepository.findFirstByVirtualStatusIsTrue()
+                .flatMap(this::compact)
+                .doFinally(signalType -> compacting.set(false))
+                .subscribe(null, throwable -> log.error("Error on virtual final compaction", throwable));
+    }
+
+    public Mono<File> compact(File file) {
+        final File placed = fileStorage.place(file);
+        return fileStorage.createFile(placed)
+                .onErrorResume(e -> e.getCause() instanceof FileAlreadyExistsException,
+                        e -> fileStorage.truncate(placed.getId(), 0).thenReturn(placed))
+                .flatMap(f -> fileStorage.mergeChunk(f.getId(), ConcatManifestUtils.parse(f.getConcatManifest())))
+                .flatMap(merged -> fileRepository.save(placed.withVirtualStatus(false).withConcatManifest(null)))
+                .doOnNext(uploadStateCache::put)
+                .doOnNext(f -> log.info("Compacted virtual final upload {} ({} bytes).", f.getId(), f.getContentLength()))
+                .flatMap(f -> this.discardTerminatedPartials(file).thenReturn(f));
+    }
+
+    /**
+     * 压实前被终止的分片只删除了记录，压实后不再被引用时删除文件
+     */
+    private Mono<Void> discardTerminatedPartials(File file) {
+        final List<Long> partials = ConcatManifestUtils.parse(file.getConcatManifest()).stream()
+                .map(File::getId)
+                .collect(Collectors.toList());
+        return uploadService.findReferencedByVirtualFinals()
+                .flatMap(referenced -> uploadService.discardTerminatedPartials(partials, referenced));
+    }
+}
@@ -0,0 +1,123 @@
+package priv.dino.tus.server.manage.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.error.GlobalException;
+import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.core.util.Sha256;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 上传内容的增量 SHA-256
+ * <p>
+ * PATCH 写入的数据按顺序经过摘要计算，每个 PATCH 结束后把中间状态写入上传文件旁的附属状态文件，
+ * 并在内存中保留一份；节点重启或上传在其他节点续传时从附属状态恢复。上传完成时得到整个文件的摘要，不需要再读一遍数据。
+ * <p>
+ * 中间状态记录了已计算的字节数：小于 PATCH 的偏移量时（状态写入前进程退出）补读缺少的区间，
+ * 大于偏移量时（数据未落盘或被截断）从头读取已写入的数据重新计算。两种情况都只在异常恢复时发生。
+ *
+ * @author dino
+ * @date 2026/10/18 21:10
+ */
+@Slf4j
+@Component
+public class ContentHasher {
+
+    private final FileStorage fileStorage;
+    private final TusServerProperties tusServerProperties;
+
+    /**
+     * 已提交的中间状态，PATCH 进行中时取出，成功后放回；淘汰后从附属状态文件恢复
+     */
+    private final Map<Long, Sha256> states;
+
+    public ContentHasher(FileStorage fileStorage, TusServerProperties tusServerProperties) {
+        this.fileStorage = fileStorage;
+        this.tusServerProperties = tusServerProperties;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(tusServerProperties.getStateCache().getMaximumSize())
+                .expireAfterAccess(Duration.ofMillis(tusServerProperties.getStateCache().getTtl()))
+                .<Long, Sha256>build()
+                .asMap();
+    }
+
+    public boolean isEnabled() {
+        return tusServerProperties.getHash().isEnabled();
+    }
+
+    /**
+     * 取出已计算到 offset 的中间状态，PATCH 的数据随后按顺序写入该状态
+     *
+     * @param id 上传id
+     * @param offset PATCH 的偏移量
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.core.util.Sha256>
+     */
+    public Mono<Sha256> prepare(@NonNull Long id, long offset) {
+        return Mono.justOrEmpty(states.remove(id))
+                .switchIfEmpty(Mono.defer(() -> fileStorage.readState(id).map(this::restore)))
+                .defaultIfEmpty(new Sha256())
+                .flatMap(state -> {
+                    if (state.length() == offset) {
+                        return Mono.just(state);
+                    }
+                    log.info("Digest state of upload {} is at {} but PATCH starts at {}, catching up", id, state.length(), offset);
+                    return this.catchUp(id, state.length() < offset ? state : new Sha256(), offset);
+                });
+    }
+
+    /**
+     * PATCH 写入成功后保存中间状态
+     */
+    public Mono<Void> commit(@NonNull Long id, @NonNull Sha256 state) {
+        states.put(id, state);
+        return fileStorage.writeState(id, state.exportState());
+    }
+
+    /**
+     * 上传完成：返回整个文件的 SHA-256（十六进制）并删除中间状态
+     */
+    public Mono<String> complete(@NonNull Long id) {
+        return Mono.justOrEmpty(states.remove(id))
+                .map(state -> DigestUtils.toHex(state.digest()))
+                .flatMap(digest -> fileStorage.deleteState(id).thenReturn(digest));
+    }
+
+    /**
+     * 上传被终止或回收时丢弃内存中的状态，附属状态文件随上传文件删除
+     */
+    public void discard(@NonNull Long id) {
+        states.remove(id);
+    }
+
+    private Sha256 restore(byte[] exported) {
+        try {
+            return Sha256.importState(exported);
+        } catch (IllegalArgumentException e) {
+            log.warn("Discarding unreadable digest state: {}", e.getMessage());
+            return new Sha256();
+        }
+    }
+
+    private Mono<Sha256> catchUp(Long id, Sha256 state, long offset) {
+        return fileStorage.readChunk(id, state.length(), offset - state.length())
+                .doOnNext(buffer -> {
+                    state.update(buffer.asByteBuffer());
+                    DataBufferUtils.release(buffer);
+                })
+                .then(Mono.fromCallable(() -> {
+                    if (state.length() != offset) {
+                        throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Upload " + id + " is shorter than its offset " + offset);
+                    }
+                    return state;
+                }));
+    }
+}
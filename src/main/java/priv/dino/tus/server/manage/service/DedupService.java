@@ -0,0 +1,167 @@
+package priv.dino.tus.server.manage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 秒传（按指纹去重）
+ * <p>
+ * 创建上传时，如果已有指纹与长度都相同且已完成的上传，新上传直接标记为完成，并通过硬链接共用已存储的数据。
+ * 最近命中的指纹缓存在内存中，未命中时走 idx_file_fingerprint 索引查询一次。
+ * 客户端指纹通常只由文件名、大小与修改时间组成，开启校验后还要求 Upload-Metadata 携带 sha256，
+ * 与服务端保存在 content_sha256 中的摘要一致才复用。来源上传还没有服务端摘要（未开启增量摘要时完成的上传）时本次正常上传，
+ * 同时在后台读取来源数据计算摘要并保存，创建请求不等待整个文件的读取。
+ *
+ * @author dino
+ * @date 2026/10/18 20:40
+ */
+@Slf4j
+@Service
+public class DedupService implements MeterBinder {
+
+    public static final String FINGERPRINT = "fingerprint";
+    public static final String SHA256 = "sha256";
+
+    private final FileRepository fileRepository;
+    private final FileStorage fileStorage;
+    private final TusServerProperties tusServerProperties;
+    private final Cache<String, File> recent;
+    private final Set<Long> digesting = ConcurrentHashMap.newKeySet();
+    private Counter hits;
+    private Counter misses;
+    private Counter rejections;
+
+    public DedupService(FileRepository fileRepository, FileStorage fileStorage, TusServerProperties tusServerProperties) {
+        this.fileRepository = fileRepository;
+        this.fileStorage = fileStorage;
+        this.tusServerProperties = tusServerProperties;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(tusServerProperties.getDedup().getCacheSize())
+                .expireAfterWrite(Duration.ofMillis(tusServerProperties.getDedup().getCacheTtl()))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return tusServerProperties.getDedup().isEnabled();
+    }
+
+    /**
+     * 查找可以复用数据的已完成上传
+     *
+     * @param fingerprint   客户端指纹
+     * @param contentLength 上传长度
+     * @param sha256        客户端声明的 SHA-256（十六进制），开启校验时必填
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.manage.domain.File> 只包含id、长度与服务端摘要，没有可复用的上传时为空
+     */
+    public Mono<File> findSource(@NonNull String fingerprint, long contentLength, String sha256) {
+        final boolean verify = tusServerProperties.getDedup().isVerify();
+        if (verify && sha256 == null) {
+            return Mono.empty();
+        }
+        final String key = key(fingerprint, contentLength);
+        return Mono.justOrEmpty(recent.getIfPresent(key))
+                .switchIfEmpty(Mono.defer(() -> fileRepository.findDedupSource(fingerprint, contentLength)
+                        .doOnNext(source -> recent.put(key, source))))
+                .flatMap(source -> verify ? this.verify(key, source, sha256) : Mono.just(source))
+                .doOnNext(source -> this.increment(hits))
+                .switchIfEmpty(Mono.fromRunnable(() -> this.increment(misses)));
+    }
+
+    /**
+     * 复用失败（如来源文件已被删除）时移出缓存
+     */
+    public void evict(@NonNull String fingerprint, long contentLength) {
+        recent.invalidate(key(fingerprint, contentLength));
+    }
+
+    private Mono<File> verify(String key, File source, String sha256) {
+        if (source.getContentSha256() == null) {
+            this.backfill(key, source);
+            return Mono.empty();
+        }
+        return Mono.just(source)
+                .filter(matched -> sha256.equalsIgnoreCase(matched.getContentSha256()))
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.warn("Fingerprint matched upload {} but sha256 differs, upload normally", source.getId());
+                    this.increment(rejections);
+                }));
+    }
+
+    /**
+     * 在后台计算并保存来源上传的摘要，同一来源同时只计算一次
+     */
+    private void backfill(String key, File source) {
+        if (!digesting.add(source.getId())) {
+            return;
+        }
+        this.digest(source)
+                .flatMap(digest -> fileRepository.updateContentSha256(source.getId(), digest)
+                        .doOnNext(updated -> recent.put(key, source.withContentSha256(digest))))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signalType -> digesting.remove(source.getId()))
+                .subscribe(null, e -> log.warn("Error on digesting dedup source {}", source.getId(), e));
+    }
+
+    /**
+     * 读取已存储的数据计算 SHA-256
+     */
+    private Mono<String> digest(File source) {
+        final int stagingSize = tusServerProperties.getBuffer().getChecksumSize();
+        return Mono.defer(() -> {
+            final MessageDigest digest = DigestUtils.getDigest("SHA-256");
+            return fileStorage.readChunk(source.getId(), 0, source.getContentLength())
+                    .doOnNext(buffer -> {
+                        DigestUtils.update(digest, buffer, stagingSize);
+                        DataBufferUtils.release(buffer);
+                    })
+                    .then(Mono.fromSupplier(() -> DigestUtils.toHex(digest.digest())));
+        });
+    }
+
+    private static String key(String fingerprint, long contentLength) {
+        return contentLength + ":" + fingerprint;
+    }
+
+    private void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        new CaffeineCacheMetrics(recent, "tus.dedup.cache", Tags.empty()).bindTo(registry);
+        this.hits = this.lookups(registry, "hit");
+        this.misses = this.lookups(registry, "miss");
+        this.rejections = this.lookups(registry, "rejected");
+    }
+
+    private Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("tus.upload.dedup")
+                .description("Upload creations by fingerprint deduplication result")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,128 @@
+package priv.dino.tus.server.manage.service;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动时按偏移量记录修复数据库
+ * <p>
+ * FILESYSTEM 模式下数据库中的偏移量异步更新，进程异常退出后可能落后于偏移量记录。
+ * 启动完成后在后台按 (created_at, id) 游标分页取出未完成的上传，以 reconcile-parallelism 的并发读取偏移量记录，
+ * 比数据库新的偏移量登记到 {@link OffsetWriteBehindBuffer}，由后台批量写库；服务照常处理请求，
+ * 修复完成之前加载的上传由 {@link OffsetWriteBehindBuffer#reconcile} 单独恢复。
+ * 没有偏移量记录的上传（启用该模式之前创建）按文件大小恢复偏移量并补写记录。
+ *
+ * @author dino
+ * @date 2026/10/19 02:40
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OffsetReconciler implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final LocalDateTime CURSOR_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final FileRepository fileRepository;
+    private final FileStorage fileStorage;
+    private final UploadStateCache uploadStateCache;
+    private final OffsetWriteBehindBuffer offsetWriteBehindBuffer;
+    private final TusServerProperties tusServerProperties;
+
+    @Override
+    public void onApplicationEvent(@NonNull ApplicationReadyEvent event) {
+        final TusServerProperties.OffsetPersistence properties = tusServerProperties.getOffsetPersistence();
+        if (properties.isFilesystem() && properties.isReconcile()) {
+            Mono.fromRunnable(this::reconcile)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe(null, e -> log.error("Offset reconciliation failed", e));
+        }
+    }
+
+    /**
+     * 修复全部未完成上传的偏移量
+     *
+     * @return 偏移量被修复的上传数
+     */
+    public long reconcile() {
+        final TusServerProperties.OffsetPersistence properties = tusServerProperties.getOffsetPersistence();
+        // 复用过期上传的游标查询，截止时间取远晚于当前的时间即包含全部未完成的上传
+        final LocalDateTime cutoff = LocalDateTime.now().plusYears(100);
+        final long started = System.nanoTime();
+        final AtomicLong repaired = new AtomicLong();
+        LocalDateTime createdAt = CURSOR_START;
+        Long id = 0L;
+        long total = 0;
+        for (;;) {
+            final List<File> page = fileRepository.findExpiredAfter(cutoff, createdAt, id, properties.getBatchSize())
+                    .collectList()
+                    .block();
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+            Flux.fromIterable(page)
+                    .filter(file -> !file.isVirtualStatus())
+                    .flatMap(file -> this.reconcile(file)
+                            .doOnNext(recovered -> repaired.incrementAndGet())
+                            .doOnError(e -> log.warn("Error on reconciling offset of upload {}", file.getId(), e))
+                            .onErrorResume(e -> Mono.empty()), properties.getReconcileParallelism())
+                    .blockLast();
+            total += page.size();
+            final File last = page.get(page.size() - 1);
+            createdAt = last.getCreatedAt();
+            id = last.getId();
+            if (page.size() < properties.getBatchSize()) {
+                break;
+            }
+        }
+        log.info("Offset reconciliation finished: {} uploads checked, {} repaired in {} ms",
+                total, repaired.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return repaired.get();
+    }
+
+    /**
+     * 修复单个上传，已在缓存中的上传正在进行，由 PATCH 自行更新记录
+     *
+     * @return 修复后的上传，无需修复时为空
+     */
+    private Mono<File> reconcile(File file) {
+        return uploadStateCache.getIfPresent(file.getId())
+                .hasElement()
+                .filter(cached -> !cached)
+                .flatMap(absent -> fileStorage.readOffset(file.getId())
+                        .map(record -> file.withContentOffset(record.getContentOffset())
+                                .withLastUploadedChunkNumber(record.getLastUploadedChunkNumber()))
+                        .switchIfEmpty(Mono.defer(() -> this.bootstrap(file))))
+                .filter(recovered -> recovered.getContentOffset() > file.getContentOffset())
+                .doOnNext(recovered -> {
+                    log.debug("Reconciled offset of upload {}: {} -> {}", file.getId(), file.getContentOffset(), recovered.getContentOffset());
+                    offsetWriteBehindBuffer.restore(recovered);
+                });
+    }
+
+    /**
+     * 没有偏移量记录时以文件大小为准并补写记录，文件不存在时为空
+     */
+    private Mono<File> bootstrap(File file) {
+        return fileStorage.size(file.getId())
+                .map(size -> file.withContentOffset(Math.max(file.getContentOffset(), Math.min(size, file.getContentLength()))))
+                .flatMap(recovered -> recovered.getContentOffset().equals(recovered.getContentLength())
+                        ? Mono.just(recovered)
+                        : fileStorage.writeOffset(recovered).thenReturn(recovered));
+    }
+}
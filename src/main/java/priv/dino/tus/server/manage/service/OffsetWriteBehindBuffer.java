@@ -0,0 +1,197 @@
+package priv.dino.tus.server.manage.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 偏移量异步持久化缓冲
+ * <p>
+ * WRITE_BEHIND 模式下 PATCH 只更新 {@link UploadStateCache} 并登记到这里，同一上传的多次写入合并为一项，
+ * 后台按 flush-interval 检查，把停留超过 max-staleness 的偏移量以批量 UPDATE 写库；待写入数达到 batch-size 时立即写库。
+ * 写库成功且期间没有更新的项才会移除，失败的项留到下一次重试。
+ * UPDATE 只允许偏移量前进，因此并发的写库不会用旧值覆盖新值。
+ * 上传完成与应用关闭时同步写库；进程异常退出丢失的偏移量在重新加载时由磁盘上的文件大小恢复。
+ *
+ * @author dino
+ * @date 2026/10/18 16:20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OffsetWriteBehindBuffer implements DisposableBean {
+
+    private final FileRepository fileRepository;
+    private final FileStorage fileStorage;
+    private final TusServerProperties tusServerProperties;
+
+    private final ConcurrentMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    public boolean isEnabled() {
+        return tusServerProperties.getOffsetPersistence().isWriteBehind();
+    }
+
+    /**
+     * 登记上传的最新偏移量，保留最早一次未写库的登记时间
+     */
+    public void enqueue(@NonNull File file) {
+        pending.merge(file.getId(), new Pending(file, System.nanoTime()),
+                (previous, latest) -> new Pending(latest.getFile(), previous.getSince()));
+        if (pending.size() >= tusServerProperties.getOffsetPersistence().getBatchSize()) {
+            this.flush(false)
+                    .doOnError(throwable -> log.error("Error on write-behind offset flush", throwable))
+                    .onErrorResume(throwable -> Mono.empty())
+                    .subscribe();
+        }
+    }
+
+    /**
+     * 登记从磁盘恢复的偏移量，已有更大的登记时不覆盖（恢复与并发的 PATCH 同时进行时）
+     */
+    public void restore(@NonNull File file) {
+        pending.merge(file.getId(), new Pending(file, System.nanoTime()),
+                (previous, recovered) -> previous.getFile().getContentOffset() >= recovered.getFile().getContentOffset() ? previous : recovered);
+    }
+
+    /**
+     * 丢弃未写库的偏移量，上传完成（随后同步写库）或删除时调用
+     */
+    public void discard(@NonNull Long id) {
+        pending.remove(id);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * 从数据库加载的上传状态可能落后于内存或磁盘：
+     * 优先使用尚未写库的偏移量；没有时以磁盘上的文件大小为准（异常退出后恢复），并重新登记以便写库。
+     * FILESYSTEM 模式以偏移量记录为准，记录比数据库小（数据没有落盘）时同样采用，由启动修复更新数据库
+     */
+    public Mono<File> reconcile(@NonNull File file) {
+        final Pending latest = pending.get(file.getId());
+        if (latest != null) {
+            return Mono.just(latest.getFile().getContentOffset() > file.getContentOffset()
+                    ? file.withContentOffset(latest.getFile().getContentOffset())
+                    .withLastUploadedChunkNumber(latest.getFile().getLastUploadedChunkNumber())
+                    : file);
+        }
+        if (!this.isEnabled() || file.isVirtualStatus() || file.getContentOffset().equals(file.getContentLength())) {
+            return Mono.just(file);
+        }
+        if (tusServerProperties.getOffsetPersistence().isFilesystem()) {
+            return fileStorage.readOffset(file.getId())
+                    .filter(record -> !record.getContentOffset().equals(file.getContentOffset()))
+                    .map(record -> {
+                        log.info("Recovered offset of upload {} from offset record: {} -> {}", file.getId(), file.getContentOffset(), record.getContentOffset());
+                        final File recovered = file.withContentOffset(record.getContentOffset())
+                                .withLastUploadedChunkNumber(record.getLastUploadedChunkNumber());
+                        if (record.getContentOffset() > file.getContentOffset()) {
+                            this.restore(recovered);
+                        }
+                        return recovered;
+                    })
+                    .defaultIfEmpty(file);
+        }
+        return fileStorage.size(file.getId())
+                .map(size -> Math.min(size, file.getContentLength()))
+                .filter(size -> size > file.getContentOffset())
+                .map(size -> {
+                    log.info("Recovered offset of upload {} from file size: {} -> {}", file.getId(), file.getContentOffset(), size);
+                    final File recovered = file.withContentOffset(size);
+                    this.enqueue(recovered);
+                    return recovered;
+                })
+                .defaultIfEmpty(file);
+    }
+
+    /**
+     * 定时写入停留过久的偏移量，写库不占用调度线程；上一次写入未结束时跳过本次
+     */
+    @Scheduled(fixedDelayString = "${tus-server.offset-persistence.flush-interval:1000}")
+    public void flushStale() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (flushing.get()) {
+            log.debug("Previous write-behind flush still running, skip.");
+            return;
+        }
+        this.flush(false)
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, throwable -> log.error("Error on write-behind offset flush", throwable));
+    }
+
+    /**
+     * 写库
+     *
+     * @param all 为 true 时写入全部待写项（关闭时），否则只写停留超过 max-staleness 的项；待写数达到 batch-size 时写入全部
+     * @return reactor.core.publisher.Mono<java.lang.Integer> 更新的行数
+     */
+    public Mono<Integer> flush(boolean all) {
+        return Mono.defer(() -> {
+            if (!all && !flushing.compareAndSet(false, true)) {
+                return Mono.just(0);
+            }
+            final TusServerProperties.OffsetPersistence properties = tusServerProperties.getOffsetPersistence();
+            final boolean full = pending.size() >= properties.getBatchSize();
+            final long staleBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(properties.getMaxStaleness());
+            final List<Map.Entry<Long, Pending>> due = pending.entrySet().stream()
+                    .filter(entry -> all || full || entry.getValue().getSince() - staleBefore <= 0)
+                    .map(AbstractMap.SimpleImmutableEntry::new)
+                    .collect(Collectors.toList());
+            return Flux.fromIterable(due)
+                    .buffer(properties.getBatchSize())
+                    .concatMap(batch -> fileRepository
+                            .updateOffsets(batch.stream().map(entry -> entry.getValue().getFile()).collect(Collectors.toList()))
+                            .doOnNext(updated -> batch.forEach(entry -> pending.remove(entry.getKey(), entry.getValue()))))
+                    .reduce(0, Integer::sum)
+                    .doOnNext(updated -> log.debug("Flushed {} write-behind offsets, {} rows updated.", due.size(), updated))
+                    .doFinally(signal -> {
+                        if (!all) {
+                            flushing.set(false);
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("Flushing {} write-behind offsets on shutdown.", pending.size());
+        this.flush(true).block(Duration.ofSeconds(30));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Pending {
+        private final File file;
+        private final long since;
+    }
+}
@@ -0,0 +1,198 @@
+package priv.dino.tus.server.manage.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 过期上传回收
+ * <p>
+ * 按 (created_at, id) 游标分页取出过期且未完成的上传，每批先在受限的调度器上并行删除文件，再批量删除记录；
+ * 中途重启时记录仍在，下一次回收会重新删除（文件不存在视为已删除）。
+ * 查询走 (is_completed, created_at, id) 索引，已回收的记录不再存在，重启后不需要全表扫描。
+ * 每秒删除的上传数不超过 rate，避免与正在进行的上传争抢磁盘。
+ * 按时间分桶存放文件时，回收后过期日期下已为空的目录一并删除。
+ *
+ * @author dino
+ * @date 2026/10/18 18:05
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "tus-server.reaper", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class UploadReaperService implements MeterBinder, DisposableBean {
+
+    private static final LocalDateTime CURSOR_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final FileRepository fileRepository;
+    private final FileStorage fileStorage;
+    private final UploadStateCache uploadStateCache;
+    private final OffsetWriteBehindBuffer offsetWriteBehindBuffer;
+    private final TusServerProperties tusServerProperties;
+    private final Scheduler scheduler;
+
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private final LongAdder reapedUploads = new LongAdder();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final AtomicBoolean reaping = new AtomicBoolean();
+
+    public UploadReaperService(FileRepository fileRepository,
+                               FileStorage fileStorage,
+                               UploadStateCache uploadStateCache,
+                               OffsetWriteBehindBuffer offsetWriteBehindBuffer,
+                               TusServerProperties tusServerProperties) {
+        this.fileRepository = fileRepository;
+        this.fileStorage = fileStorage;
+        this.uploadStateCache = uploadStateCache;
+        this.offsetWriteBehindBuffer = offsetWriteBehindBuffer;
+        this.tusServerProperties = tusServerProperties;
+        final int parallelism = tusServerProperties.getReaper().getParallelism();
+        this.scheduler = Schedulers.newBoundedElastic(parallelism, tusServerProperties.getReaper().getBatchSize(), "tus-reaper");
+    }
+
+    /**
+     * 只触发回收，不等待完成：按速率等待、阻塞查询的回收循环在 boundedElastic 上运行，不占用各定时任务共用的线程；
+     * 上一次回收未完成时跳过
+     */
+    @Scheduled(fixedDelayString = "${tus-server.reaper.interval:60000}")
+    public void scheduledReap() {
+        if (!reaping.compareAndSet(false, true)) {
+            log.debug("Previous reaping still running, skip.");
+            return;
+        }
+        Mono.fromRunnable(this::reap)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signalType -> reaping.set(false))
+                .subscribe(null, e -> log.error("Error on expired upload reaping", e));
+    }
+
+    /**
+     * 回收全部过期未完成的上传，阻塞直到完成
+     */
+    public void reap() {
+        final TusServerProperties.Reaper properties = tusServerProperties.getReaper();
+        final LocalDateTime cutoff = LocalDateTime.now().minusDays(tusServerProperties.getDuration());
+        LocalDateTime createdAt = CURSOR_START;
+        Long id = 0L;
+        long total = 0;
+        try {
+            for (;;) {
+                final long started = System.nanoTime();
+                final List<File> page = fileRepository.findExpiredAfter(cutoff, createdAt, id, properties.getBatchSize())
+                        .collectList()
+                        .block();
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                total += this.reap(page).block();
+                final File last = page.get(page.size() - 1);
+                createdAt = last.getCreatedAt();
+                id = last.getId();
+                this.pace(started, page.size(), properties.getRate());
+                if (page.size() < properties.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Error on expired upload reaping", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (total > 0) {
+            log.info("Reaped {} expired uploads.", total);
+            fileStorage.prune(cutoff)
+                    .doOnError(e -> log.warn("Error on pruning empty directories", e))
+                    .onErrorResume(e -> Mono.empty())
+                    .block();
+        }
+        this.updateLag(cutoff);
+    }
+
+    /**
+     * 先删除文件，再批量删除记录
+     */
+    public Mono<Integer> reap(List<File> expired) {
+        final List<Long> ids = expired.stream().map(File::getId).collect(Collectors.toList());
+        return Flux.fromIterable(ids)
+                .flatMap(id -> fileStorage.delete(id).subscribeOn(scheduler), tusServerProperties.getReaper().getParallelism())
+                .reduce(0L, Long::sum)
+                .flatMap(bytes -> fileRepository.deleteAllById(ids).thenReturn(bytes))
+                .map(bytes -> {
+                    ids.forEach(id -> {
+                        offsetWriteBehindBuffer.discard(id);
+                        uploadStateCache.invalidate(id);
+                    });
+                    reclaimedBytes.add(bytes);
+                    reapedUploads.add(ids.size());
+                    return ids.size();
+                });
+    }
+
+    /**
+     * 按 rate 计算本批最少耗时，不足时等待
+     */
+    private void pace(long started, int reaped, int rate) throws InterruptedException {
+        if (rate <= 0) {
+            return;
+        }
+        final long minimum = TimeUnit.SECONDS.toNanos(reaped) / rate;
+        final long remaining = minimum - (System.nanoTime() - started);
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    /**
+     * 滞后时间：仍未回收的最早一个过期上传已经过期了多久
+     */
+    private void updateLag(LocalDateTime cutoff) {
+        final File oldest = fileRepository.findExpiredAfter(cutoff, CURSOR_START, 0L, 1)
+                .next()
+                .onErrorResume(e -> Mono.empty())
+                .block();
+        lagSeconds.set(oldest == null ? 0 : Duration.between(oldest.getCreatedAt(), cutoff).getSeconds());
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("tus.reaper.reclaimed", reclaimedBytes, LongAdder::sum)
+                .description("Bytes reclaimed from expired uploads")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("tus.reaper.uploads", reapedUploads, LongAdder::sum)
+                .description("Expired uploads deleted by the reaper")
+                .register(registry);
+        Gauge.builder("tus.reaper.lag", lagSeconds, AtomicLong::get)
+                .description("How long the oldest unreaped expired upload has been expired")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -6,19 +6,29 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import priv.dino.tus.server.core.util.ConcatManifestUtils;
+import priv.dino.tus.server.core.util.DigestUtils;
 import priv.dino.tus.server.core.util.UploadExpiredUtils;
 import priv.dino.tus.server.manage.domain.File;
 import priv.dino.tus.server.core.error.GlobalException;
 import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileSegment;
 import priv.dino.tus.server.storage.FileStorage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.util.function.Tuple2;
 
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static priv.dino.tus.server.core.constant.TusConstant.CHECKSUM_MISMATCH_STATUS;
 
 /**
  * 上传 业务层
@@ -34,6 +44,15 @@ public class UploadService {
     private final FileRepository fileRepository;
     private final FileStorage fileStorage;
     private final UploadExpiredUtils uploadExpiredUtils;
+    private final TusServerProperties tusServerProperties;
+    private final UploadStateCache uploadStateCache;
+    private final OffsetWriteBehindBuffer offsetWriteBehindBuffer;
+    private final UploadMetrics uploadMetrics;
+    private final DedupService dedupService;
+    private final ContentHasher contentHasher;
+    private final AdmissionController admissionController;
+
+    private final ConcurrentMap<Long, Sinks.Empty<Void>> inFlightPatches = new ConcurrentHashMap<>();
 
     public Map<String, String> parseMetadata(final String metadata) {
 
@@ -56,63 +75,365 @@ public class UploadService {
     }
 
     public Mono<File> createUpload(final File file) {
-       return fileRepository.save(file)
-               .flatMap(fileStorage::createFile);
+       return fileRepository.save(fileStorage.place(file))
+               .flatMap(fileStorage::createFile)
+               .flatMap(created -> this.recordOffset(created).thenReturn(created))
+               .doOnNext(uploadStateCache::put);
+    }
+
+    /**
+     * 创建上传，开启秒传且 Upload-Metadata 带有指纹时先查找可复用的已完成上传，
+     * 找到则新上传直接完成并共用其数据，否则正常创建
+     *
+     * @param file 文件信息
+     * @param metadata 解析后的 Upload-Metadata
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.manage.domain.File>
+     */
+    public Mono<File> createUpload(final File file, final Map<String, String> metadata) {
+        final String fingerprint = metadata.get(DedupService.FINGERPRINT);
+        if (!dedupService.isEnabled() || fingerprint == null || file.isPartialStatus()) {
+            return this.createUpload(file);
+        }
+        return dedupService.findSource(fingerprint, file.getContentLength(), metadata.get(DedupService.SHA256))
+                .flatMap(source -> this.createDuplicate(file, source))
+                .switchIfEmpty(Mono.defer(() -> this.createUpload(file)));
+    }
+
+    /**
+     * 保存一个已完成的上传并硬链接到来源文件，来源文件已不存在时删除记录，由调用方正常创建
+     */
+    private Mono<File> createDuplicate(final File file, final File source) {
+        return fileRepository.save(file.withContentOffset(file.getContentLength()).withContentSha256(source.getContentSha256()).withDisk(source.getDisk()))
+                .flatMap(duplicate -> fileStorage.link(source.getId(), duplicate.getId())
+                        .thenReturn(duplicate)
+                        .onErrorResume(e -> {
+                            log.warn("Deduplication against upload {} failed, upload normally", source.getId(), e);
+                            dedupService.evict(file.getFingerprint(), file.getContentLength());
+                            return fileRepository.deleteById(duplicate.getId()).then(Mono.empty());
+                        }))
+                .doOnNext(duplicate -> log.info("Upload {} deduplicated against {}", duplicate.getId(), source.getId()))
+                .doOnNext(uploadStateCache::put);
+    }
+
+    /**
+     * HEAD 只需要长度、偏移量与摘要：偏移量以文件系统为准时，缓存未命中先读偏移量记录，
+     * 没有记录（已完成或开启前创建的上传）才查询数据库
+     */
+    public Mono<File> findUpload(final Long id) {
+        if (!tusServerProperties.getOffsetPersistence().isFilesystem()) {
+            return uploadStateCache.get(id);
+        }
+        return uploadStateCache.getIfPresent(id)
+                .switchIfEmpty(Mono.defer(() -> fileStorage.readOffset(id)))
+                .switchIfEmpty(Mono.defer(() -> uploadStateCache.get(id)));
     }
 
     public Mono<File> mergePartialUploads(Long[] extractPartialUploadIds, Optional<String> metadataHeader, String mimeType) {
         final Map<String, String> parsedMetadata = this.parseMetadata(metadataHeader.orElse(""));
         return fileRepository.findAllById(Arrays.asList(extractPartialUploadIds))
-                .switchIfEmpty(Mono.error(new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File record not found.")))
-                .map(File::getContentLength)
-                .reduce(0L, Long::sum)
-                .flatMap(e-> {
+                .collectMap(File::getId)
+                .map(found -> this.orderPartialUploads(extractPartialUploadIds, found))
+                .flatMap(partialUploads -> {
+                    final long contentLength = partialUploads.stream().mapToLong(File::getContentLength).sum();
                     final File file = File.builder()
                             .mimeType(mimeType)
-                            .contentLength(e)
+                            .contentLength(contentLength)
                             .originalName(parsedMetadata.getOrDefault("filename", "FILE NAME NOT EXISTS"))
-                            .contentOffset(e)
+                            .contentOffset(contentLength)
                             .lastUploadedChunkNumber(0L)
                             .fingerprint(parsedMetadata.getOrDefault("fingerprint", "FINGERPRINT NAME NOT EXISTS"))
                             .partialStatus(false)
                             .build();
-                    return this.createUpload(file);
-                }).flatMap(file-> fileStorage.mergeChunk(file.getId(),extractPartialUploadIds,0L).map(number -> {
-                    file.setContentOffset(number.longValue());
-                    return file;
-                }));
+                    if (tusServerProperties.getConcat().isVirtualFinal()) {
+                        file.setVirtualStatus(true);
+                        file.setConcatManifest(ConcatManifestUtils.format(partialUploads));
+                        return fileRepository.save(file).doOnNext(uploadStateCache::put);
+                    }
+                    return this.createUpload(file)
+                            .flatMap(f -> fileStorage.mergeChunk(f.getId(), partialUploads)
+                                    .map(f::withContentOffset)
+                                    .doOnNext(uploadStateCache::put));
+                });
 
     }
 
+    /**
+     * 按 Upload-Concat 中的顺序排列分片，分片必须存在且已上传完成
+     */
+    private List<File> orderPartialUploads(Long[] extractPartialUploadIds, Map<Long, File> found) {
+        final List<File> partialUploads = new ArrayList<>(extractPartialUploadIds.length);
+        for (Long partialUploadId : extractPartialUploadIds) {
+            final File partialUpload = found.get(partialUploadId);
+            if (partialUpload == null) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File record not found.");
+            }
+            if (!partialUpload.getContentOffset().equals(partialUpload.getContentLength())) {
+                throw new GlobalException(HttpStatus.BAD_REQUEST, "Partial upload not completed: " + partialUploadId);
+            }
+            partialUploads.add(partialUpload);
+        }
+        return partialUploads;
+    }
+
+    /**
+     * 上传内容中 [position, position + count) 区间所在的存储区间，虚拟合并的文件会映射到各分片文件
+     */
+    public List<FileSegment> getSegments(File file, long position, long count) {
+        if (file.isVirtualStatus()) {
+            return ConcatManifestUtils.slice(ConcatManifestUtils.parse(file.getConcatManifest()), position, count);
+        }
+        return Collections.singletonList(new FileSegment(file.getId(), position, count));
+    }
+
+    public Flux<DataBuffer> read(File file, long position, long count) {
+        return Flux.fromIterable(this.getSegments(file, position, count))
+                .concatMap(segment -> fileStorage.readChunk(segment.getId(), segment.getPosition(), segment.getCount()));
+    }
+
     public Mono<File> uploadChunkAndGetUpdatedOffset(
             final Long id,
             final Flux<DataBuffer> parts,
             final long offset,
             final long length
     ) {
+        return this.uploadChunkAndGetUpdatedOffset(id, parts, offset, length, Optional.empty());
+    }
+
+    public Mono<File> uploadChunkAndGetUpdatedOffset(
+            final Long id,
+            final Flux<DataBuffer> parts,
+            final long offset,
+            final long length,
+            final Optional<Tuple2<String, String>> checksumInfo
+    ) {
+
+        return admissionController.admit(uploadMetrics.trackPatch(Mono.usingWhen(
+                Mono.fromCallable(() -> this.claim(id)),
+                terminated -> Mono.firstWithSignal(
+                        this.findUploadState(id)
+                                .switchIfEmpty(Mono.error(new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File record not found.")))
+                                .map(e -> this.isValid(e, offset, length))
+                                .flatMap(file -> uploadMetrics.timeStorageWrite(this.writeChunk(id, parts, offset, checksumInfo))
+                                        .flatMap(written -> this.save(file, written))),
+                        terminated.asMono().then(Mono.error(new GlobalException(HttpStatus.NOT_FOUND, "Upload terminated.")))),
+                terminated -> Mono.fromRunnable(() -> inFlightPatches.remove(id, terminated)))));
+    }
+
+    /**
+     * 同一上传同一时间只允许一个 PATCH 写入，否则两次写入会覆盖同一区间。
+     * 返回的信号在上传被终止时触发，用于取消正在写入的 PATCH。
+     * <p>
+     * 占用只在本进程内有效，只支持单节点部署（或按上传id粘性路由）：
+     * 多个节点同时写入同一上传时，条件 UPDATE 只能让后提交的一方返回 409，数据写入文件之前无法发现冲突
+     */
+    private Sinks.Empty<Void> claim(Long id) {
+        final Sinks.Empty<Void> terminated = Sinks.empty();
+        if (inFlightPatches.putIfAbsent(id, terminated) != null) {
+            uploadMetrics.offsetMismatch();
+            throw new GlobalException(HttpStatus.CONFLICT, "Upload is locked by a concurrent PATCH.");
+        }
+        return terminated;
+    }
+
+    /**
+     * PATCH 校验只需要偏移量相关字段：优先读缓存，其次读偏移量记录，都未命中时查询窄投影，均不放入缓存
+     */
+    private Mono<File> findUploadState(Long id) {
+        final Mono<File> state = tusServerProperties.getOffsetPersistence().isFilesystem()
+                ? Mono.defer(() -> fileStorage.readOffset(id))
+                : Mono.empty();
+        return uploadStateCache.getIfPresent(id)
+                .switchIfEmpty(state)
+                .switchIfEmpty(Mono.defer(() -> fileRepository.findUploadStateById(id)
+                        .flatMap(offsetWriteBehindBuffer::reconcile)));
+    }
+
+    /**
+     * 写入数据块，开启整个文件的摘要时数据同时写入增量 SHA-256，写入成功后保存其中间状态
+     */
+    private Mono<Integer> writeChunk(Long id, Flux<DataBuffer> parts, long offset, Optional<Tuple2<String, String>> checksumInfo) {
+        if (!contentHasher.isEnabled()) {
+            return this.writeVerifiedChunk(id, parts, offset, checksumInfo);
+        }
+        return contentHasher.prepare(id, offset)
+                .flatMap(state -> this.writeVerifiedChunk(id, parts.doOnNext(buffer -> state.update(buffer.asByteBuffer())), offset, checksumInfo)
+                        .flatMap(written -> contentHasher.commit(id, state).thenReturn(written)));
+    }
 
-        Mono<File> fileOne = fileRepository.findById(id)
-                .switchIfEmpty(Mono.error(new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File record not found.")))
-                .map(e -> this.isValid(e, offset, length));
-        return Mono
-                .zip(fileOne,fileStorage.writeChunk(id, parts, offset))
-                .flatMap((Tuple2<File, Integer> data) -> this.save(data.getT1(),data.getT2()));
+    /**
+     * 写入数据块，携带 Upload-Checksum 时在写入的同时逐个缓冲区计算摘要，
+     * 校验不通过则截断本次写入的数据并返回 460
+     */
+    private Mono<Integer> writeVerifiedChunk(Long id, Flux<DataBuffer> parts, long offset, Optional<Tuple2<String, String>> checksumInfo) {
+        if (!checksumInfo.isPresent()) {
+            return fileStorage.writeChunk(id, parts, offset);
+        }
+        final String algorithm = checksumInfo.get().getT1().toLowerCase();
+        final String expected = checksumInfo.get().getT2();
+        final int stagingSize = tusServerProperties.getBuffer().getChecksumSize();
+        return Mono.defer(() -> {
+            final MessageDigest digest = DigestUtils.getChecksumDigest(algorithm);
+            return fileStorage.writeChunk(id, parts.doOnNext(buffer -> DigestUtils.update(digest, buffer, stagingSize)), offset)
+                    .flatMap(written -> {
+                        final String actual = DigestUtils.encodeChecksum(algorithm, digest.digest());
+                        if (expected.equals(actual)) {
+                            return Mono.just(written);
+                        }
+                        log.warn("Checksum mismatch for upload {}: expected {}, actual {}", id, expected, actual);
+                        uploadMetrics.checksumFailure();
+                        return fileStorage.truncate(id, offset)
+                                .then(Mono.error(new GlobalException(CHECKSUM_MISMATCH_STATUS, "Checksum mismatch.")));
+                    });
+        });
     }
 
+    /**
+     * 记录写入后的偏移量，file 可能是窄投影，只能更新偏移量相关字段。
+     * 同步模式下通过条件 UPDATE 一条语句完成校验与更新，偏移量已被修改时返回 409；
+     * 此时数据已经写入文件，多节点并发写入同一上传不受支持，见 {@link #claim(Long)}
+     */
     public Mono<File> save(File file,Integer offset) {
         log.info("[OLD OFFSET] {}", file.getContentOffset());
         log.info("[OFFSET] {}", file.getContentOffset() + offset);
-        file.setContentOffset(file.getContentOffset() + offset);
-        file.setLastUploadedChunkNumber(file.getLastUploadedChunkNumber() + 1);
-        log.debug("File patching: {}", file);
-        return fileRepository.save(file);
+        final File patched = file
+                .withContentOffset(file.getContentOffset() + offset)
+                .withLastUploadedChunkNumber(file.getLastUploadedChunkNumber() + 1);
+        log.debug("File patching: {}", patched);
+        final boolean completed = patched.getContentOffset().equals(patched.getContentLength());
+        final Mono<File> persisted;
+        if (offsetWriteBehindBuffer.isEnabled()) {
+            uploadStateCache.advance(patched);
+            if (!completed) {
+                offsetWriteBehindBuffer.enqueue(patched);
+                return this.recordOffset(patched).thenReturn(patched);
+            }
+            // 上传完成时同步写库，之前登记的偏移量不再需要；先删偏移量记录，中途崩溃时以数据库中较小的偏移量为准
+            offsetWriteBehindBuffer.discard(patched.getId());
+            persisted = this.clearOffset(patched.getId())
+                    .then(uploadMetrics.timeDatabaseUpdate(fileRepository.updateOffsets(Collections.singletonList(patched))))
+                    .thenReturn(patched);
+        } else {
+            persisted = uploadMetrics.timeDatabaseUpdate(fileRepository.advanceOffset(file.getId(), file.getContentOffset(), offset))
+                    .flatMap(updated -> {
+                        if (updated == 1) {
+                            return Mono.just(patched);
+                        }
+                        uploadMetrics.offsetMismatch();
+                        return Mono.error(new GlobalException(HttpStatus.CONFLICT, "Offset mismatch."));
+                    })
+                    .doOnNext(uploadStateCache::advance)
+                    .doOnError(GlobalException.class, e -> uploadStateCache.invalidate(file.getId()));
+        }
+        return persisted.flatMap(f -> completed
+                ? fileStorage.release(f.getId()).then(this.completeDigest(f))
+                : Mono.just(f));
+    }
+
+    /**
+     * 偏移量以文件系统为准时写入未完成上传的偏移量记录
+     */
+    private Mono<Void> recordOffset(File file) {
+        return tusServerProperties.getOffsetPersistence().isFilesystem() && !file.getContentOffset().equals(file.getContentLength())
+                ? fileStorage.writeOffset(file)
+                : Mono.empty();
+    }
+
+    private Mono<Void> clearOffset(Long id) {
+        return tusServerProperties.getOffsetPersistence().isFilesystem() ? fileStorage.deleteOffset(id) : Mono.empty();
+    }
+
+    /**
+     * 上传完成时保存整个文件的 SHA-256
+     */
+    private Mono<File> completeDigest(File file) {
+        return contentHasher.complete(file.getId())
+                .flatMap(digest -> fileRepository.updateContentSha256(file.getId(), digest)
+                        .thenReturn(file.withContentSha256(digest)))
+                .doOnNext(uploadStateCache::advance)
+                .defaultIfEmpty(file);
+    }
+
+    public Mono<Void> deleteUpload(final Long id) {
+        return this.terminateUploads(Collections.singletonList(id));
+    }
+
+    /**
+     * 终止上传：取消正在进行的 PATCH，文件先移入回收站异步删除，再一条 DELETE 删除全部记录，
+     * 中途崩溃只会留下没有文件的记录，不会留下没有记录的文件。
+     * 仍被未压实的虚拟合并文件引用的分片只删除记录，文件在压实后删除；
+     * 终止的虚拟合并文件不会再压实，其清单中已被终止的分片随之删除文件
+     */
+    public Mono<Void> terminateUploads(final List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        final Set<Long> terminated = new HashSet<>(ids);
+        return Mono.fromRunnable(() -> ids.forEach(id -> Optional.ofNullable(inFlightPatches.get(id)).ifPresent(Sinks.Empty::tryEmitEmpty)))
+                .then(fileRepository.findAllById(ids)
+                        .filter(File::isVirtualStatus)
+                        .flatMapIterable(file -> ConcatManifestUtils.parse(file.getConcatManifest()))
+                        .map(File::getId)
+                        .filter(id -> !terminated.contains(id))
+                        .collect(Collectors.toSet()))
+                .flatMap(partials -> this.findReferencedByVirtualFinals(terminated)
+                        .flatMap(referenced -> Flux.fromIterable(ids)
+                                .filter(id -> !referenced.contains(id))
+                                .concatMap(fileStorage::discard)
+                                .then(Mono.defer(() -> fileRepository.deleteAllById(ids)))
+                                .then(Mono.fromRunnable(() -> ids.forEach(id -> {
+                                    offsetWriteBehindBuffer.discard(id);
+                                    uploadStateCache.invalidate(id);
+                                    contentHasher.discard(id);
+                                })))
+                                .then(this.discardTerminatedPartials(partials, referenced))));
+    }
+
+    /**
+     * 删除已被终止（没有记录）且不再被虚拟合并文件引用的分片的文件
+     *
+     * @param partials 分片id
+     * @param referenced 仍被未压实的虚拟合并文件引用的分片id
+     */
+    public Mono<Void> discardTerminatedPartials(final Collection<Long> partials, final Set<Long> referenced) {
+        final List<Long> candidates = partials.stream().filter(id -> !referenced.contains(id)).collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return Mono.empty();
+        }
+        return fileRepository.findAllById(candidates)
+                .map(File::getId)
+                .collect(Collectors.toSet())
+                .flatMapMany(existing -> Flux.fromIterable(candidates).filter(id -> !existing.contains(id)))
+                .concatMap(fileStorage::discard)
+                .then();
+    }
+
+    /**
+     * 未压实的虚拟合并文件引用的分片id
+     */
+    public Mono<Set<Long>> findReferencedByVirtualFinals() {
+        return this.findReferencedByVirtualFinals(Collections.emptySet());
+    }
+
+    /**
+     * 未压实且不在终止之列的虚拟合并文件引用的分片id
+     *
+     * @param terminated 正在终止的上传id
+     */
+    private Mono<Set<Long>> findReferencedByVirtualFinals(final Set<Long> terminated) {
+        return fileRepository.findAllByVirtualStatusIsTrue()
+                .filter(file -> !terminated.contains(file.getId()))
+                .flatMapIterable(file -> ConcatManifestUtils.parse(file.getConcatManifest()))
+                .map(File::getId)
+                .collect(Collectors.toSet());
     }
 
     private File isValid(File file, long offset, long length) {
         if (offset != file.getContentOffset() && checkContentLengthWithCurrentOffset(length, offset, file.getContentLength())) {
-            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Offset mismatch.");
+            uploadMetrics.offsetMismatch();
+            throw new GlobalException(HttpStatus.CONFLICT, "Offset mismatch.");
         }
         if (uploadExpiredUtils.checkUploadExpired(file)) {
+            uploadMetrics.expired();
             throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Upload Expires.");
         }
         return file;
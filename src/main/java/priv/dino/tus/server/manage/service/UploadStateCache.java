@@ -0,0 +1,145 @@
+package priv.dino.tus.server.manage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 上传状态缓存
+ * <p>
+ * 位于 {@link FileRepository} 之前的读穿透缓存，HEAD 与 PATCH 命中时不访问数据库。
+ * PATCH 写入成功后由 {@link UploadService} 更新缓存，删除时失效；缓存项的存活时间不超过上传的过期时间。
+ * 偏移量异步持久化时，从数据库加载的状态先经 {@link OffsetWriteBehindBuffer#reconcile(File)} 补齐尚未写库的偏移量。
+ * 缓存中的实例不可修改，需要修改时使用 {@code withXxx} 复制。
+ *
+ * @author dino
+ * @date 2026/10/18 15:10
+ */
+@Component
+public class UploadStateCache implements MeterBinder {
+
+    private final FileRepository fileRepository;
+    private final OffsetWriteBehindBuffer offsetWriteBehindBuffer;
+    private final TusServerProperties tusServerProperties;
+    private final Cache<Long, File> cache;
+    /**
+     * 未缓存时推进的偏移量，与之并发的读穿透加载在放入缓存时采用
+     */
+    private final Cache<Long, File> advanced;
+
+    public UploadStateCache(FileRepository fileRepository, OffsetWriteBehindBuffer offsetWriteBehindBuffer, TusServerProperties tusServerProperties) {
+        this.fileRepository = fileRepository;
+        this.offsetWriteBehindBuffer = offsetWriteBehindBuffer;
+        this.tusServerProperties = tusServerProperties;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tusServerProperties.getStateCache().getMaximumSize())
+                .expireAfter(new UploadExpiry())
+                .recordStats()
+                .build();
+        this.advanced = Caffeine.newBuilder()
+                .maximumSize(tusServerProperties.getStateCache().getMaximumSize())
+                .expireAfterWrite(Duration.ofMillis(tusServerProperties.getStateCache().getTtl()))
+                .build();
+    }
+
+    public Mono<File> get(@NonNull Long id) {
+        return this.getIfPresent(id)
+                .switchIfEmpty(Mono.defer(() -> fileRepository.findById(id)
+                        .flatMap(offsetWriteBehindBuffer::reconcile)
+                        .map(this::load)));
+    }
+
+    /**
+     * 放入读穿透加载的状态：加载期间其他请求放入的、或加载期间推进的偏移量更大时不被覆盖
+     */
+    private File load(File loaded) {
+        return cache.asMap().compute(loaded.getId(), (id, cached) -> {
+            final File latest = this.later(loaded, advanced.getIfPresent(id));
+            advanced.invalidate(id);
+            return cached == null ? latest : this.later(cached, latest);
+        });
+    }
+
+    private File later(File file, File other) {
+        return other == null || file.getContentOffset() >= other.getContentOffset() ? file : file
+                .withContentOffset(other.getContentOffset())
+                .withLastUploadedChunkNumber(other.getLastUploadedChunkNumber())
+                .withContentSha256(other.getContentSha256() != null ? other.getContentSha256() : file.getContentSha256());
+    }
+
+    /**
+     * 只读取缓存，不访问数据库；订阅时才读取，重复订阅或重试时得到的是当时的状态
+     */
+    public Mono<File> getIfPresent(@NonNull Long id) {
+        return Mono.fromSupplier(() -> cache.getIfPresent(id));
+    }
+
+    /**
+     * 已缓存时更新偏移量、分块数与完成时计算的摘要；未缓存时暂存，供同时进行的读穿透加载采用
+     */
+    public void advance(@NonNull File patched) {
+        cache.asMap().compute(patched.getId(), (id, cached) -> {
+            if (cached == null) {
+                advanced.put(id, patched);
+                return null;
+            }
+            return cached
+                    .withContentOffset(patched.getContentOffset())
+                    .withLastUploadedChunkNumber(patched.getLastUploadedChunkNumber())
+                    .withContentSha256(patched.getContentSha256() != null ? patched.getContentSha256() : cached.getContentSha256());
+        });
+    }
+
+    public void put(@NonNull File file) {
+        cache.put(file.getId(), file);
+    }
+
+    public void invalidate(@NonNull Long id) {
+        cache.invalidate(id);
+        advanced.invalidate(id);
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        new CaffeineCacheMetrics(cache, "tus.upload.state", Tags.empty()).bindTo(registry);
+    }
+
+    /**
+     * 缓存项在配置的存活时间与上传过期时间中较早的一个到达时失效
+     */
+    private class UploadExpiry implements Expiry<Long, File> {
+
+        @Override
+        public long expireAfterCreate(@NonNull Long key, @NonNull File value, long currentTime) {
+            long ttl = Duration.ofMillis(tusServerProperties.getStateCache().getTtl()).toNanos();
+            if (value.getCreatedAt() == null) {
+                return ttl;
+            }
+            LocalDateTime expires = value.getCreatedAt().plusDays(tusServerProperties.getDuration());
+            return Math.max(0L, Math.min(ttl, Duration.between(LocalDateTime.now(), expires).toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(@NonNull Long key, @NonNull File value, long currentTime, long currentDuration) {
+            return this.expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(@NonNull Long key, @NonNull File value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,615 @@
+package priv.dino.tus.server.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.error.GlobalException;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * 压缩存储
+ * <p>
+ * 包装 {@link LocalStorageImpl}：MIME 类型匹配配置的上传以 {@link GzipFrames} 分帧写入磁盘，文件开头的空帧作为标记，重启后据此识别。
+ * 每次写入都从新帧开始，每帧最多 frameSize 个未压缩字节，tus 偏移量（未压缩字节数）因此总是落在帧边界上：
+ * 续传时追加到最后一个完整帧之后，崩溃留下的不完整帧在下一次写入前截掉，校验失败时截断到对应的帧边界。
+ * 各帧的位置从帧头建立索引缓存在内存中，读取任意区间只需从所在的帧开始解压。
+ * 首个数据块是常见的已压缩格式时，去掉标记按原样存储，不再浪费 CPU。
+ * 压缩在 parallel 调度器上进行，不占用 Netty 的事件循环线程。
+ *
+ * @author dino
+ * @date 2026/10/18 21:40
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "tus-server.compression", name = "enabled", havingValue = "true")
+public class CompressingFileStorage implements FileStorage {
+
+    public static final String ENCODING = "gzip";
+
+    private static final byte[] MARKER = GzipFrames.marker();
+
+    private final LocalStorageImpl delegate;
+    private final TusServerProperties.Compression properties;
+    private final List<MimeType> mimeTypes;
+    private final Cache<Long, FrameIndex> indexes;
+
+    public CompressingFileStorage(LocalStorageImpl delegate, TusServerProperties tusServerProperties) {
+        this.delegate = delegate;
+        this.properties = tusServerProperties.getCompression();
+        this.mimeTypes = properties.getMimeTypes().stream().map(MimeTypeUtils::parseMimeType).collect(Collectors.toList());
+        this.indexes = Caffeine.newBuilder()
+                .maximumSize(properties.getIndexCacheSize())
+                .build();
+    }
+
+    @Override
+    public File place(@NonNull File file) {
+        return delegate.place(file);
+    }
+
+    /**
+     * 创建文件，需要压缩时写入标记帧
+     */
+    @Override
+    public Mono<File> createFile(@NonNull File file) {
+        return delegate.createFile(file).flatMap(created -> {
+            if (!this.isCompressible(created.getMimeType())) {
+                indexes.put(created.getId(), FrameIndex.NONE);
+                return Mono.just(created);
+            }
+            final Path path = delegate.getPath(created.getId());
+            return Mono.fromCallable(() -> {
+                try {
+                    Files.write(path, MARKER);
+                } catch (IOException e) {
+                    throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File creation failed: " + created, e);
+                }
+                indexes.put(created.getId(), new FrameIndex(MARKER.length));
+                return created;
+            }).subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    private boolean isCompressible(String mimeType) {
+        if (!StringUtils.hasText(mimeType)) {
+            return false;
+        }
+        try {
+            final MimeType parsed = MimeTypeUtils.parseMimeType(mimeType);
+            return mimeTypes.stream().anyMatch(type -> type.includes(parsed));
+        } catch (InvalidMimeTypeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Mono<Void> link(@NonNull Long sourceId, @NonNull Long id) {
+        return delegate.link(sourceId, id).doFinally(signalType -> indexes.invalidate(id));
+    }
+
+    /**
+     * 写文件，返回写入的未压缩字节数
+     */
+    @Override
+    public Mono<Integer> writeChunk(@NonNull Long id, @NonNull Flux<DataBuffer> parts, long offset) {
+        return this.index(id).flatMap(index -> {
+            if (index == FrameIndex.NONE) {
+                return delegate.writeChunk(id, parts, offset);
+            }
+            if (offset == 0 && index.length() == 0) {
+                return parts.switchOnFirst((signal, flux) -> signal.hasValue() && isCompressed(signal.get())
+                                ? this.writeUnframed(id, flux)
+                                : this.writeFrames(id, index, flux, offset))
+                        .single();
+            }
+            return this.writeFrames(id, index, parts, offset);
+        });
+    }
+
+    private static boolean isCompressed(DataBuffer buffer) {
+        final byte[] head = new byte[Math.min(8, buffer.readableByteCount())];
+        for (int i = 0; i < head.length; i++) {
+            head[i] = buffer.getByte(buffer.readPosition() + i);
+        }
+        return GzipFrames.isCompressed(head, head.length);
+    }
+
+    /**
+     * 内容本身已经压缩：去掉标记帧，按原样存储
+     */
+    private Mono<Integer> writeUnframed(Long id, Flux<DataBuffer> parts) {
+        log.debug("Upload {} is already compressed, store it as is", id);
+        return delegate.truncate(id, 0)
+                .then(Mono.fromRunnable(() -> indexes.put(id, FrameIndex.NONE)))
+                .then(delegate.writeChunk(id, parts, 0));
+    }
+
+    private Mono<Integer> writeFrames(Long id, FrameIndex index, Flux<DataBuffer> parts, long offset) {
+        return this.truncateTail(id, index, offset).then(Mono.defer(() -> {
+            final FrameEncoder encoder = new FrameEncoder(properties.getFrameSize(), properties.getLevel());
+            final Flux<DataBuffer> frames = parts
+                    .publishOn(Schedulers.parallel())
+                    .concatMapIterable(encoder::update)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(encoder.finish())))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doFinally(signalType -> encoder.close());
+            return delegate.writeChunk(id, frames, index.end())
+                    .map(written -> {
+                        encoder.getFrames().forEach(frame -> index.append(frame[0], frame[1]));
+                        return (int) encoder.getConsumed();
+                    })
+                    .doOnError(e -> indexes.invalidate(id));
+        }));
+    }
+
+    /**
+     * 截掉 offset 之后的帧（包括崩溃留下的不完整帧），offset 必须落在帧边界上
+     */
+    private Mono<Void> truncateTail(Long id, FrameIndex index, long offset) {
+        final int frame = index.boundary(offset);
+        if (frame < 0) {
+            return Mono.error(new GlobalException(HttpStatus.CONFLICT, "Offset is not a frame boundary: " + id + "@" + offset));
+        }
+        final long position = index.positionOf(frame);
+        return delegate.size(id).defaultIfEmpty(0L).flatMap(size -> {
+            if (size < position) {
+                indexes.invalidate(id);
+                return Mono.error(new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Stored frames are shorter than the index: " + id));
+            }
+            index.truncate(frame);
+            return size == position ? Mono.empty() : delegate.truncate(id, position);
+        });
+    }
+
+    @Override
+    public Mono<Void> release(@NonNull Long id) {
+        return delegate.release(id);
+    }
+
+    /**
+     * 截断到帧边界
+     */
+    @Override
+    public Mono<Void> truncate(@NonNull Long id, long offset) {
+        return this.index(id).flatMap(index -> {
+            if (index == FrameIndex.NONE) {
+                return delegate.truncate(id, offset);
+            }
+            final int frame = index.boundary(offset);
+            if (frame < 0) {
+                return Mono.error(new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Offset is not a frame boundary: " + id + "@" + offset));
+            }
+            final long position = index.positionOf(frame);
+            index.truncate(frame);
+            return delegate.truncate(id, position);
+        });
+    }
+
+    @Override
+    public Mono<Void> discard(@NonNull Long id) {
+        return delegate.discard(id).doFinally(signalType -> indexes.invalidate(id));
+    }
+
+    @Override
+    public Mono<Long> delete(@NonNull Long id) {
+        return delegate.delete(id).doFinally(signalType -> indexes.invalidate(id));
+    }
+
+    @Override
+    public Mono<byte[]> readState(@NonNull Long id) {
+        return delegate.readState(id);
+    }
+
+    @Override
+    public Mono<Void> writeState(@NonNull Long id, @NonNull byte[] state) {
+        return delegate.writeState(id, state);
+    }
+
+    @Override
+    public Mono<Void> deleteState(@NonNull Long id) {
+        return delegate.deleteState(id);
+    }
+
+    /**
+     * 记录的偏移量与未压缩的字节数比较，帧写到一半时索引只包含完整的帧
+     */
+    @Override
+    public Mono<File> readOffset(@NonNull Long id) {
+        return delegate.readOffsetRecord(id)
+                .flatMap(record -> this.size(id).map(size -> record.withContentOffset(Math.min(record.getContentOffset(), size))));
+    }
+
+    @Override
+    public Mono<Void> writeOffset(@NonNull File file) {
+        return delegate.writeOffset(file);
+    }
+
+    @Override
+    public Mono<Void> deleteOffset(@NonNull Long id) {
+        return delegate.deleteOffset(id);
+    }
+
+    /**
+     * 未压缩的字节数
+     */
+    @Override
+    public Mono<Long> size(@NonNull Long id) {
+        return this.index(id).flatMap(index -> index == FrameIndex.NONE ? delegate.size(id) : Mono.just(index.length()));
+    }
+
+    /**
+     * 分片与目标文件都按原样存储时零拷贝合并，否则依次解压分片写入目标文件
+     */
+    @Override
+    public Mono<Long> mergeChunk(@NonNull Long id, @NonNull List<File> partialUploads) {
+        return Flux.fromIterable(partialUploads)
+                .concatMap(partialUpload -> this.index(partialUpload.getId()))
+                .concatWith(Mono.defer(() -> this.index(id)))
+                .all(index -> index == FrameIndex.NONE)
+                .flatMap(unframed -> unframed
+                        ? delegate.mergeChunk(id, partialUploads)
+                        : Flux.fromIterable(partialUploads)
+                                .reduce(Mono.just(0L), (merged, partialUpload) -> merged.flatMap(offset -> this.writeChunk(id,
+                                                this.readChunk(partialUpload.getId(), 0, partialUpload.getContentLength()), offset)
+                                        .map(written -> offset + written)))
+                                .flatMap(merged -> merged));
+    }
+
+    /**
+     * 读未压缩内容的一段区间：从区间起点所在的帧开始读取并解压
+     */
+    @Override
+    public Flux<DataBuffer> readChunk(@NonNull Long id, long position, long count) {
+        if (count <= 0) {
+            return Flux.empty();
+        }
+        return this.index(id).flatMapMany(index -> {
+            if (index == FrameIndex.NONE) {
+                return delegate.readChunk(id, position, count);
+            }
+            final int first = index.find(position);
+            if (first < 0) {
+                return Flux.empty();
+            }
+            final long start = index.positionOf(first);
+            final long end = index.positionOf(index.find(position + count - 1) + 1);
+            final long skip = position - index.offsetOf(first);
+            return Flux.using(() -> new FrameDecoder(skip),
+                    decoder -> DataBufferUtils.takeUntilByteCount(delegate.readChunk(id, start, end - start)
+                            .concatMapIterable(decoder::decode), count),
+                    FrameDecoder::close);
+        });
+    }
+
+    @Override
+    public Mono<String> contentEncoding(@NonNull Long id) {
+        return this.index(id).filter(index -> index != FrameIndex.NONE).map(index -> ENCODING);
+    }
+
+    /**
+     * 标记帧之后的所有帧，即完整的 gzip 流
+     */
+    @Override
+    public Mono<FileSegment> encodedRegion(@NonNull Long id) {
+        return this.index(id)
+                .filter(index -> index != FrameIndex.NONE)
+                .map(index -> new FileSegment(id, MARKER.length, index.end() - MARKER.length));
+    }
+
+    @Override
+    public int activeWrites() {
+        return delegate.activeWrites();
+    }
+
+    @Override
+    public Path getPath(@NonNull Long id) {
+        return delegate.getPath(id);
+    }
+
+    @Override
+    public Mono<Void> prune(@NonNull LocalDateTime before) {
+        return delegate.prune(before);
+    }
+
+    private Mono<FrameIndex> index(Long id) {
+        final FrameIndex cached = indexes.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> indexes.get(id, this::scan)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 依次读取帧头建立索引，遇到不完整的帧为止；开头不是标记帧的文件按原样存储
+     */
+    private FrameIndex scan(Long id) {
+        try (FileChannel channel = FileChannel.open(delegate.getPath(id), READ)) {
+            final long size = channel.size();
+            final byte[] header = new byte[GzipFrames.HEADER_LENGTH];
+            final ByteBuffer buffer = ByteBuffer.wrap(header);
+            if (!readFully(channel, buffer, 0) || GzipFrames.frameLength(header, 0) != MARKER.length || GzipFrames.contentLength(header, 0) != 0) {
+                return FrameIndex.NONE;
+            }
+            final FrameIndex index = new FrameIndex(MARKER.length);
+            while (index.end() + GzipFrames.HEADER_LENGTH <= size) {
+                buffer.clear();
+                if (!readFully(channel, buffer, index.end())) {
+                    break;
+                }
+                final int length = GzipFrames.frameLength(header, 0);
+                if (length < 0 || index.end() + length > size) {
+                    break;
+                }
+                index.append(length, GzipFrames.contentLength(header, 0));
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return FrameIndex.NONE;
+        } catch (IOException e) {
+            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Frame index failed: " + id, e);
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 帧索引：各帧在文件中的起始位置与对应的未压缩偏移量（不含空帧）
+     */
+    static final class FrameIndex {
+
+        /**
+         * 按原样存储的文件
+         */
+        static final FrameIndex NONE = new FrameIndex(0);
+
+        private long[] positions = new long[16];
+        private long[] offsets = new long[16];
+        private int count;
+        private long end;
+        private long length;
+
+        FrameIndex(long end) {
+            this.end = end;
+        }
+
+        synchronized void append(long frameLength, long contentLength) {
+            if (contentLength > 0) {
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                positions[count] = end;
+                offsets[count] = length;
+                count++;
+            }
+            end += frameLength;
+            length += contentLength;
+        }
+
+        /**
+         * 文件中最后一个完整帧之后的位置
+         */
+        synchronized long end() {
+            return end;
+        }
+
+        /**
+         * 未压缩的字节数
+         */
+        synchronized long length() {
+            return length;
+        }
+
+        /**
+         * 包含未压缩偏移量 offset 的帧，不存在时返回 -1
+         */
+        synchronized int find(long offset) {
+            if (offset >= length) {
+                return -1;
+            }
+            final int i = Arrays.binarySearch(offsets, 0, count, offset);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        /**
+         * 从未压缩偏移量 offset 开始的帧，offset 等于总长度时返回帧数，不在帧边界上时返回 -1
+         */
+        synchronized int boundary(long offset) {
+            if (offset == length) {
+                return count;
+            }
+            final int i = Arrays.binarySearch(offsets, 0, count, offset);
+            return i >= 0 ? i : -1;
+        }
+
+        synchronized long positionOf(int frame) {
+            return frame < count ? positions[frame] : end;
+        }
+
+        synchronized long offsetOf(int frame) {
+            return frame < count ? offsets[frame] : length;
+        }
+
+        /**
+         * 丢弃 frame 及之后的帧
+         */
+        synchronized void truncate(int frame) {
+            if (frame < count) {
+                end = positions[frame];
+                length = offsets[frame];
+                count = frame;
+            }
+        }
+    }
+
+    /**
+     * 将数据流切分为帧并压缩，输入缓冲区复制后立即释放
+     */
+    private static final class FrameEncoder {
+
+        private final int frameSize;
+        private final int level;
+        private final Deflater deflater;
+        private final List<int[]> frames = new ArrayList<>();
+        private byte[] pending;
+        private int pendingLength;
+        private long consumed;
+
+        FrameEncoder(int frameSize, int level) {
+            this.frameSize = frameSize;
+            this.level = level;
+            this.deflater = new Deflater(level, true);
+            this.pending = new byte[Math.min(frameSize, 65536)];
+        }
+
+        List<DataBuffer> update(DataBuffer buffer) {
+            try {
+                List<DataBuffer> encoded = Collections.emptyList();
+                while (buffer.readableByteCount() > 0) {
+                    if (pendingLength == pending.length) {
+                        pending = Arrays.copyOf(pending, Math.min(frameSize, pending.length * 2));
+                    }
+                    final int n = Math.min(buffer.readableByteCount(), pending.length - pendingLength);
+                    buffer.read(pending, pendingLength, n);
+                    pendingLength += n;
+                    consumed += n;
+                    if (pendingLength == frameSize) {
+                        if (encoded.isEmpty()) {
+                            encoded = new ArrayList<>(2);
+                        }
+                        encoded.add(this.flush());
+                    }
+                }
+                return encoded;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        List<DataBuffer> finish() {
+            return pendingLength == 0 ? Collections.emptyList() : Collections.singletonList(this.flush());
+        }
+
+        private DataBuffer flush() {
+            final byte[] frame = GzipFrames.encode(pending, pendingLength, deflater, level);
+            frames.add(new int[]{frame.length, pendingLength});
+            pendingLength = 0;
+            return DefaultDataBufferFactory.sharedInstance.wrap(frame);
+        }
+
+        /**
+         * 已编码的帧：{整帧字节数, 未压缩字节数}
+         */
+        List<int[]> getFrames() {
+            return frames;
+        }
+
+        long getConsumed() {
+            return consumed;
+        }
+
+        void close() {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 从帧边界开始的字节流中拼出完整的帧并解压，跳过区间起点之前的字节
+     */
+    private static final class FrameDecoder {
+
+        private final Inflater inflater = new Inflater(true);
+        private byte[] pending = new byte[65536];
+        private int pendingLength;
+        private long skip;
+
+        FrameDecoder(long skip) {
+            this.skip = skip;
+        }
+
+        List<DataBuffer> decode(DataBuffer buffer) {
+            try {
+                final int readable = buffer.readableByteCount();
+                if (pendingLength + readable > pending.length) {
+                    pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + readable));
+                }
+                buffer.read(pending, pendingLength, readable);
+                pendingLength += readable;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+            final List<DataBuffer> decoded = new ArrayList<>(1);
+            int start = 0;
+            while (pendingLength - start >= GzipFrames.HEADER_LENGTH) {
+                final int frameLength = GzipFrames.frameLength(pending, start);
+                if (frameLength < 0) {
+                    throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Corrupt frame header");
+                }
+                if (pendingLength - start < frameLength) {
+                    break;
+                }
+                final byte[] content;
+                try {
+                    content = GzipFrames.decode(pending, start, inflater);
+                } catch (ZipException e) {
+                    throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Corrupt frame", e);
+                }
+                start += frameLength;
+                final int from = (int) Math.min(skip, content.length);
+                skip -= from;
+                if (from < content.length) {
+                    decoded.add(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(content, from, content.length - from)));
+                }
+            }
+            System.arraycopy(pending, start, pending, 0, pendingLength - start);
+            pendingLength -= start;
+            return decoded;
+        }
+
+        void close() {
+            inflater.end();
+        }
+    }
+}
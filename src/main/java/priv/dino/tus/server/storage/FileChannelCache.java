@@ -0,0 +1,222 @@
+package priv.dino.tus.server.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.error.GlobalException;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * 按上传id缓存的文件通道
+ * <p>
+ * 同一上传的多个 PATCH 共用一个 {@link AsynchronousFileChannel}，通过引用计数判断通道是否在使用中。
+ * 空闲超时的通道由定时任务关闭；打开的通道总数超过上限时优先关闭最久未使用的空闲通道，
+ * 仍然超过上限时本次写入使用不缓存的通道，写完即关闭。
+ *
+ * @author dino
+ * @date 2026/10/18 14:30
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class FileChannelCache implements MeterBinder, DisposableBean {
+
+    private final TusServerProperties.ChannelCache properties;
+
+    private final Map<Long, Entry> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger openChannels = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    /**
+     * 获取上传的文件通道，使用完毕后必须调用 {@link Lease#close()}
+     *
+     * @param id   上传id
+     * @param path 文件路径
+     * @return priv.dino.tus.server.storage.FileChannelCache.Lease
+     */
+    public Lease acquire(@NonNull Long id, @NonNull Path path) {
+        return this.acquire(id, path, null);
+    }
+
+    /**
+     * 获取上传的文件通道，新打开的通道在指定的线程池上执行读写
+     *
+     * @param id       上传id
+     * @param path     文件路径
+     * @param executor 通道的线程池，为空时使用默认线程池
+     * @return priv.dino.tus.server.storage.FileChannelCache.Lease
+     */
+    public Lease acquire(@NonNull Long id, @NonNull Path path, ExecutorService executor) {
+        Entry cached = channels.computeIfPresent(id, (k, entry) -> entry.retain());
+        if (cached != null) {
+            hits.increment();
+            return new Lease(id, cached.channel, true);
+        }
+        misses.increment();
+        if (openChannels.get() >= properties.getMaxOpen()) {
+            this.evictLeastRecentlyUsed();
+        }
+        if (openChannels.get() >= properties.getMaxOpen()) {
+            overflows.increment();
+            return new Lease(id, this.open(path, executor), false);
+        }
+        Entry entry = channels.compute(id, (k, existing) -> {
+            if (existing != null) {
+                return existing.retain();
+            }
+            // 打开失败时不计数，否则失败次数达到 max-open 后所有写入都走不缓存的通道
+            final Entry opened = new Entry(this.open(path, executor)).retain();
+            openChannels.incrementAndGet();
+            return opened;
+        });
+        return new Lease(id, entry.channel, true);
+    }
+
+    /**
+     * 上传完成或删除后立即关闭通道，仍在使用中的通道在最后一次释放时关闭
+     *
+     * @param id 上传id
+     */
+    public void invalidate(@NonNull Long id) {
+        channels.computeIfPresent(id, (k, entry) -> {
+            entry.invalidated = true;
+            return this.closeIfUnused(entry);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${tus-server.channel-cache.sweep-interval:5000}")
+    public void evictIdle() {
+        final long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(properties.getIdleTimeout());
+        channels.keySet().forEach(id -> channels.computeIfPresent(id, (k, entry) ->
+                entry.refCount == 0 && entry.lastAccess < idleSince ? this.evict(entry) : entry));
+    }
+
+    private void evictLeastRecentlyUsed() {
+        channels.entrySet().stream()
+                .filter(e -> e.getValue().refCount == 0)
+                .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .ifPresent(e -> channels.computeIfPresent(e.getKey(), (k, entry) -> entry.refCount == 0 ? this.evict(entry) : entry));
+    }
+
+    private void release(Long id) {
+        channels.computeIfPresent(id, (k, entry) -> {
+            entry.refCount--;
+            entry.lastAccess = System.nanoTime();
+            return entry.invalidated ? this.closeIfUnused(entry) : entry;
+        });
+    }
+
+    private Entry evict(Entry entry) {
+        evictions.increment();
+        entry.invalidated = true;
+        return this.closeIfUnused(entry);
+    }
+
+    private Entry closeIfUnused(Entry entry) {
+        if (entry.refCount > 0) {
+            return entry;
+        }
+        openChannels.decrementAndGet();
+        this.close(entry.channel);
+        return null;
+    }
+
+    private AsynchronousFileChannel open(Path path, ExecutorService executor) {
+        try {
+            return executor == null
+                    ? AsynchronousFileChannel.open(path, WRITE)
+                    : AsynchronousFileChannel.open(path, EnumSet.of(WRITE), executor);
+        } catch (IOException e) {
+            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File open operation fault", e);
+        }
+    }
+
+    private void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Channel close error", e);
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("tus.channel.cache.open", openChannels, AtomicInteger::get)
+                .description("File channels currently held open by the channel cache")
+                .register(registry);
+        FunctionCounter.builder("tus.channel.cache.requests", hits, LongAdder::sum).tag("result", "hit").register(registry);
+        FunctionCounter.builder("tus.channel.cache.requests", misses, LongAdder::sum).tag("result", "miss").register(registry);
+        FunctionCounter.builder("tus.channel.cache.evictions", evictions, LongAdder::sum).register(registry);
+        FunctionCounter.builder("tus.channel.cache.overflows", overflows, LongAdder::sum)
+                .description("Writes that used an uncached channel because the open channel limit was reached")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        channels.keySet().forEach(this::invalidate);
+    }
+
+    private static final class Entry {
+        private final AsynchronousFileChannel channel;
+        private int refCount;
+        private long lastAccess = System.nanoTime();
+        private boolean invalidated;
+
+        private Entry(AsynchronousFileChannel channel) {
+            this.channel = channel;
+        }
+
+        private Entry retain() {
+            refCount++;
+            lastAccess = System.nanoTime();
+            return this;
+        }
+    }
+
+    /**
+     * 一次文件通道的使用
+     */
+    @RequiredArgsConstructor
+    public final class Lease implements AutoCloseable {
+        private final Long id;
+        private final AsynchronousFileChannel channel;
+        private final boolean cached;
+
+        public AsynchronousFileChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public void close() {
+            if (cached) {
+                release(id);
+            } else {
+                FileChannelCache.this.close(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package priv.dino.tus.server.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 存储中某个文件的一段连续区间
+ *
+ * @author dino
+ * @date 2026/10/18 11:05
+ */
+@Data
+@AllArgsConstructor
+public class FileSegment {
+
+    /**
+     * 文件id
+     */
+    private Long id;
+
+    /**
+     * 区间在文件中的起始位置
+     */
+    private long position;
+
+    /**
+     * 区间长度
+     */
+    private long count;
+}
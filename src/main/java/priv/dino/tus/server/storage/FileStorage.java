@@ -5,6 +5,10 @@ import priv.dino.tus.server.manage.domain.File;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * 文件存储
  *
@@ -13,6 +17,16 @@ import reactor.core.publisher.Mono;
  */
 public interface FileStorage {
 
+    /**
+     * 为新上传选择所在的存储盘，保存上传记录之前调用；硬链接的文件与来源文件在同一块盘上
+     *
+     * @param file 文件信息
+     * @return priv.dino.tus.server.manage.domain.File 带有所在盘序号的文件信息
+     * @author dino
+     * @date 2026/10/19 00:30
+     */
+    File place(final File file);
+
     /**
      * 创建文件
      *
@@ -23,6 +37,17 @@ public interface FileStorage {
      */
     Mono<File> createFile(final File file);
 
+    /**
+     * 创建与已有文件共用数据的新文件（硬链接），不支持硬链接时失败
+     *
+     * @param sourceId 已有文件id
+     * @param id 新文件id
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 20:40
+     */
+    Mono<Void> link(final Long sourceId, final Long id);
+
     /**
      * 写文件
      *
@@ -36,14 +61,187 @@ public interface FileStorage {
     Mono<Integer> writeChunk(final Long id, final Flux<DataBuffer> parts, final long offset);
 
     /**
-     * 合并文件
+     * 释放上传占用的资源（如缓存的文件通道），上传完成或删除时调用
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 14:30
+     */
+    Mono<Void> release(final Long id);
+
+    /**
+     * 截断文件，丢弃偏移量之后写入的数据（校验失败时回滚本次写入）
      *
      * @param id 文件id
-     * @param extractPartialUploadIds 合并请求的ID
      * @param offset 偏移量
-     * @return reactor.core.publisher.Mono<java.lang.Integer>
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 10:12
+     */
+    Mono<Void> truncate(final Long id, final long offset);
+
+    /**
+     * 终止上传：释放文件通道并将文件移入回收站，由后台异步删除，耗时与文件大小无关
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 18:40
+     */
+    Mono<Void> discard(final Long id);
+
+    /**
+     * 删除文件，文件不存在时视为已删除
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Long> 回收的字节数
+     * @author dino
+     * @date 2026/10/18 18:05
+     */
+    Mono<Long> delete(final Long id);
+
+    /**
+     * 读取上传的附属状态（如增量摘要的中间状态），与上传文件一起删除
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<byte[]> 不存在时为空
+     * @author dino
+     * @date 2026/10/18 21:10
+     */
+    Mono<byte[]> readState(final Long id);
+
+    /**
+     * 覆盖写入上传的附属状态
+     *
+     * @param id 文件id
+     * @param state 状态
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 21:10
+     */
+    Mono<Void> writeState(final Long id, final byte[] state);
+
+    /**
+     * 删除上传的附属状态，不存在时不做处理
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 21:10
+     */
+    Mono<Void> deleteState(final Long id);
+
+    /**
+     * 读取上传的偏移量记录，偏移量不超过文件当前的大小
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.manage.domain.File> 只包含id、长度、偏移量、分块数、是否分片、所在盘与创建时间；
+     * 记录或文件不存在、记录损坏时为空
+     * @author dino
+     * @date 2026/10/19 02:10
+     */
+    Mono<File> readOffset(final Long id);
+
+    /**
+     * 覆盖写入上传的偏移量记录，数据写入成功之后调用
+     *
+     * @param file 上传
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/19 02:10
+     */
+    Mono<Void> writeOffset(final File file);
+
+    /**
+     * 删除上传的偏移量记录，上传完成（偏移量已同步写库）时调用，不存在时不做处理
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/19 02:10
+     */
+    Mono<Void> deleteOffset(final Long id);
+
+    /**
+     * 文件当前在磁盘上的大小，偏移量异步持久化时用于重启后恢复真实偏移量
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Long> 文件不存在时为空
+     * @author dino
+     * @date 2026/10/18 16:10
+     */
+    Mono<Long> size(final Long id);
+
+    /**
+     * 合并文件，各分片按顺序写入目标文件中预先计算好的位置
+     *
+     * @param id 文件id
+     * @param partialUploads 按 Upload-Concat 顺序排列的分片上传
+     * @return reactor.core.publisher.Mono<java.lang.Long> 合并的总字节数
      * @author dino
      * @date 2021/11/24 10:52
      */
-    Mono<Integer> mergeChunk(final Long id, final Long[] extractPartialUploadIds, final long offset);
+    Mono<Long> mergeChunk(final Long id, final List<File> partialUploads);
+
+    /**
+     * 读文件的一段区间
+     *
+     * @param id 文件id
+     * @param position 起始位置
+     * @param count 读取的字节数
+     * @return reactor.core.publisher.Flux<org.springframework.core.io.buffer.DataBuffer>
+     * @author dino
+     * @date 2026/10/18 11:05
+     */
+    Flux<DataBuffer> readChunk(final Long id, final long position, final long count);
+
+    /**
+     * 文件在磁盘上的内容编码（如压缩存储的 gzip），按原样存储时为空
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.String>
+     * @author dino
+     * @date 2026/10/18 21:40
+     */
+    Mono<String> contentEncoding(final Long id);
+
+    /**
+     * 编码后的完整内容在本地文件中的区间，可以零拷贝地原样返回给接受该编码的客户端，按原样存储时为空
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.storage.FileSegment>
+     * @author dino
+     * @date 2026/10/18 21:40
+     */
+    Mono<FileSegment> encodedRegion(final Long id);
+
+    /**
+     * 当前正在进行的写入（含合并）数量，为 0 时表示存储空闲
+     *
+     * @return int
+     * @author dino
+     * @date 2026/10/18 11:05
+     */
+    int activeWrites();
+
+    /**
+     * 文件在本地文件系统中的路径，用于零拷贝传输
+     *
+     * @param id 文件id
+     * @return java.nio.file.Path
+     * @author dino
+     * @date 2026/10/18 13:40
+     */
+    Path getPath(final Long id);
+
+    /**
+     * 删除指定时间之前已经为空的目录（按时间分桶的布局），其他布局不做任何事
+     *
+     * @param before 时间
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 19:20
+     */
+    Mono<Void> prune(final LocalDateTime before);
 }
@@ -0,0 +1,183 @@
+package priv.dino.tus.server.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.error.GlobalException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入数据落盘
+ * <p>
+ * 按 {@link TusServerProperties.Durability.Mode} 决定 PATCH 写完后何时返回：
+ * <ul>
+ *     <li>NONE：不调用 fsync，掉电后已持久化的偏移量可能超过磁盘上的数据</li>
+ *     <li>CHUNK：每个 PATCH 写完后对文件调用一次 {@link AsynchronousFileChannel#force(boolean)}</li>
+ *     <li>GROUP_COMMIT：PATCH 写完后登记等待，由专用线程每隔 interval 毫秒对期间写过的所有文件各 fsync 一次，
+ *     完成后再放行这些 PATCH；同一文件在一个周期内的多次写入只需要一次 fsync</li>
+ * </ul>
+ * 调用方必须在返回的 Mono 结束之前持有文件通道，避免通道在 fsync 之前被关闭；取消的等待从队列中移除，不再 fsync。
+ * 放行在 parallel 调度器上进行，PATCH 后续的保存与响应不占用 fsync 线程。
+ *
+ * @author dino
+ * @date 2026/10/18 19:50
+ */
+@Slf4j
+public class FileSyncer implements MeterBinder, DisposableBean {
+
+    private final TusServerProperties.Durability properties;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private volatile Timer fsyncDuration;
+    private volatile DistributionSummary groupSize;
+
+    public FileSyncer(TusServerProperties.Durability properties) {
+        this.properties = properties;
+        if (properties.getMode() == TusServerProperties.Durability.Mode.GROUP_COMMIT) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "tus-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flush, properties.getInterval(), properties.getInterval(), TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * 使已写入通道的数据落盘
+     *
+     * @param id      文件id
+     * @param channel 文件通道
+     * @return reactor.core.publisher.Mono<java.lang.Void> 数据落盘后结束
+     */
+    public Mono<Void> sync(@NonNull Long id, @NonNull AsynchronousFileChannel channel) {
+        switch (properties.getMode()) {
+            case CHUNK:
+                return Mono.<Void>fromRunnable(() -> this.force(id, channel))
+                        .subscribeOn(Schedulers.boundedElastic());
+            case GROUP_COMMIT:
+                return Mono.<Void>create(sink -> {
+                    final Pending waiter = new Pending(id, channel, sink);
+                    sink.onDispose(() -> {
+                        waiter.disposed = true;
+                        pending.remove(waiter);
+                    });
+                    pending.add(waiter);
+                }).publishOn(Schedulers.parallel());
+            default:
+                return Mono.empty();
+        }
+    }
+
+    /**
+     * 是否需要落盘，合并文件等直接使用 FileChannel 的写入据此决定关闭前是否 force
+     */
+    public boolean isEnabled() {
+        return properties.getMode() != TusServerProperties.Durability.Mode.NONE;
+    }
+
+    synchronized void flush() {
+        final List<Pending> batch = new ArrayList<>();
+        Pending next;
+        while ((next = pending.poll()) != null) {
+            if (!next.disposed) {
+                batch.add(next);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Map<AsynchronousFileChannel, List<Pending>> byChannel = new IdentityHashMap<>();
+        batch.forEach(p -> byChannel.computeIfAbsent(p.channel, c -> new ArrayList<>()).add(p));
+        if (groupSize != null) {
+            groupSize.record(batch.size());
+        }
+        byChannel.forEach((channel, waiters) -> {
+            try {
+                this.force(waiters.get(0).id, channel);
+                waiters.forEach(p -> p.sink.success());
+            } catch (RuntimeException e) {
+                waiters.forEach(p -> p.sink.error(e));
+            }
+        });
+    }
+
+    private void force(Long id, AsynchronousFileChannel channel) {
+        final long start = System.nanoTime();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File sync failed: " + id, e);
+        } finally {
+            if (fsyncDuration != null) {
+                fsyncDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        this.fsyncDuration = Timer.builder("tus.storage.fsync.duration")
+                .description("Latency of one fsync on an upload file")
+                .tag("mode", properties.getMode().name().toLowerCase())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+        this.groupSize = DistributionSummary.builder("tus.storage.fsync.group")
+                .description("PATCH requests released by one group commit")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                // 等待正在进行的一次 fsync 结束，再放行剩余的等待
+                if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Group commit flusher did not stop within 10 seconds");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.flush();
+        }
+    }
+
+    private static final class Pending {
+        private final Long id;
+        private final AsynchronousFileChannel channel;
+        private final MonoSink<Void> sink;
+        private volatile boolean disposed;
+
+        private Pending(Long id, AsynchronousFileChannel channel, MonoSink<Void> sink) {
+            this.id = id;
+            this.channel = channel;
+            this.sink = sink;
+        }
+    }
+}
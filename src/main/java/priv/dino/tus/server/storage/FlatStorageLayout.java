@@ -0,0 +1,22 @@
+package priv.dino.tus.server.storage;
+
+import java.nio.file.Path;
+
+/**
+ * 平铺布局：所有文件都在存储目录下，{@code <root>/<id>}
+ *
+ * @author dino
+ * @date 2026/10/18 19:20
+ */
+public class FlatStorageLayout implements StorageLayout {
+
+    @Override
+    public String name() {
+        return "flat";
+    }
+
+    @Override
+    public Path resolve(Path root, long id) {
+        return root.resolve(Long.toString(id));
+    }
+}
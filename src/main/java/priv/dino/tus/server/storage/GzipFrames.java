@@ -0,0 +1,174 @@
+package priv.dino.tus.server.storage;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * gzip 分帧格式
+ * <p>
+ * 每帧是一个完整的 gzip member，多帧首尾相连仍是合法的 gzip 流，可以原样作为 {@code Content-Encoding: gzip} 返回。
+ * 帧头的扩展字段（子字段 {@code TZ}）记录整帧字节数与未压缩字节数，只读帧头即可建立索引：
+ * <pre>
+ * 1f 8b 08 04 | MTIME(魔数) | 00 ff | XLEN=12 | 'T' 'Z' LEN=8 | 整帧字节数(4) | 未压缩字节数(4) | deflate 数据 | CRC32 | ISIZE
+ * </pre>
+ * 压缩后没有变小的帧改用不压缩的 deflate 块保存。
+ *
+ * @author dino
+ * @date 2026/10/18 21:40
+ */
+final class GzipFrames {
+
+    static final int HEADER_LENGTH = 24;
+    static final int TRAILER_LENGTH = 8;
+
+    /**
+     * 写在 MTIME 字段中的魔数 "TUSZ"，与子字段一起标识本格式的帧
+     */
+    private static final int MAGIC = 0x5a535554;
+
+    private GzipFrames() {
+    }
+
+    /**
+     * 不含数据的帧，写在压缩存储的文件开头作为标记
+     */
+    static byte[] marker() {
+        final Deflater deflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        try {
+            return encode(new byte[0], 0, deflater, Deflater.NO_COMPRESSION);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 将 data 的前 length 个字节编码为一帧，deflater 需以 nowrap 方式创建
+     */
+    static byte[] encode(byte[] data, int length, Deflater deflater, int level) {
+        byte[] frame = deflate(data, length, deflater, level);
+        if (level != Deflater.NO_COMPRESSION && frame.length >= HEADER_LENGTH + length + TRAILER_LENGTH) {
+            frame = deflate(data, length, deflater, Deflater.NO_COMPRESSION);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        final int end = frame.length - TRAILER_LENGTH;
+        writeInt(frame, 0, 0x04088b1f);
+        writeInt(frame, 4, MAGIC);
+        writeInt(frame, 8, 0x000cff00);
+        writeInt(frame, 12, 0x00085a54);
+        writeInt(frame, 16, frame.length);
+        writeInt(frame, 20, length);
+        writeInt(frame, end, (int) crc.getValue());
+        writeInt(frame, end + 4, length);
+        return frame;
+    }
+
+    private static byte[] deflate(byte[] data, int length, Deflater deflater, int level) {
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        byte[] frame = new byte[HEADER_LENGTH + length + (length >> 10) + 64];
+        int position = HEADER_LENGTH;
+        while (!deflater.finished()) {
+            if (position == frame.length - TRAILER_LENGTH) {
+                frame = Arrays.copyOf(frame, frame.length * 2);
+            }
+            position += deflater.deflate(frame, position, frame.length - TRAILER_LENGTH - position);
+        }
+        return Arrays.copyOf(frame, position + TRAILER_LENGTH);
+    }
+
+    /**
+     * 帧头中的整帧字节数，不是本格式的帧头时返回 -1
+     */
+    static int frameLength(byte[] header, int offset) {
+        if (readInt(header, offset) != 0x04088b1f || readInt(header, offset + 4) != MAGIC
+                || readInt(header, offset + 8) != 0x000cff00 || readInt(header, offset + 12) != 0x00085a54) {
+            return -1;
+        }
+        final int length = readInt(header, offset + 16);
+        return length < HEADER_LENGTH + TRAILER_LENGTH ? -1 : length;
+    }
+
+    /**
+     * 帧头中的未压缩字节数
+     */
+    static int contentLength(byte[] header, int offset) {
+        return readInt(header, offset + 20);
+    }
+
+    /**
+     * 解压从 offset 开始的一帧，校验长度与 CRC32
+     */
+    static byte[] decode(byte[] frame, int offset, Inflater inflater) throws ZipException {
+        final int length = frameLength(frame, offset);
+        if (length < 0) {
+            throw new ZipException("Not a frame header");
+        }
+        final byte[] content = new byte[contentLength(frame, offset)];
+        inflater.reset();
+        inflater.setInput(frame, offset + HEADER_LENGTH, length - HEADER_LENGTH - TRAILER_LENGTH);
+        try {
+            int inflated = 0;
+            while (!inflater.finished() && inflated < content.length) {
+                final int n = inflater.inflate(content, inflated, content.length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != content.length) {
+                throw new ZipException("Frame shorter than its length: " + inflated + " < " + content.length);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        if ((int) crc.getValue() != readInt(frame, offset + length - TRAILER_LENGTH)) {
+            throw new ZipException("Frame CRC mismatch");
+        }
+        return content;
+    }
+
+    /**
+     * 内容开头是否为常见的已压缩格式（gzip、zip、zstd、xz、bzip2、7z、rar、png、jpeg、gif、webp、mp4）
+     */
+    static boolean isCompressed(byte[] head, int length) {
+        if (length < 4) {
+            return false;
+        }
+        final int b0 = head[0] & 0xff;
+        final int b1 = head[1] & 0xff;
+        final int b2 = head[2] & 0xff;
+        final int b3 = head[3] & 0xff;
+        return (b0 == 0x1f && b1 == 0x8b)
+                || (b0 == 'P' && b1 == 'K' && b2 == 3 && b3 == 4)
+                || (b0 == 0x28 && b1 == 0xb5 && b2 == 0x2f && b3 == 0xfd)
+                || (b0 == 0xfd && b1 == '7' && b2 == 'z' && b3 == 'X')
+                || (b0 == 'B' && b1 == 'Z' && b2 == 'h')
+                || (b0 == '7' && b1 == 'z' && b2 == 0xbc && b3 == 0xaf)
+                || (b0 == 'R' && b1 == 'a' && b2 == 'r' && b3 == '!')
+                || (b0 == 0x89 && b1 == 'P' && b2 == 'N' && b3 == 'G')
+                || (b0 == 0xff && b1 == 0xd8 && b2 == 0xff)
+                || (b0 == 'G' && b1 == 'I' && b2 == 'F' && b3 == '8')
+                || (b0 == 'R' && b1 == 'I' && b2 == 'F' && b3 == 'F')
+                || (length >= 8 && head[4] == 'f' && head[5] == 't' && head[6] == 'y' && head[7] == 'p');
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,44 @@
+package priv.dino.tus.server.storage;
+
+import java.nio.file.Path;
+
+/**
+ * 散列布局：{@code <root>/ab/cd/<id>}
+ * <p>
+ * 雪花id的低位是序列号与机器id，高位是时间，直接取id的某几位分布不均匀，
+ * 因此先对id做一次 64 位混淆再取两个字节，文件均匀分布到 65536 个目录中，每个目录的文件数保持在较小的量级。
+ *
+ * @author dino
+ * @date 2026/10/18 19:20
+ */
+public class HashFanOutStorageLayout implements StorageLayout {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public String name() {
+        return "hash";
+    }
+
+    @Override
+    public Path resolve(Path root, long id) {
+        final long hash = mix(id);
+        return root.resolve(hex(hash)).resolve(hex(hash >>> 8)).resolve(Long.toString(id));
+    }
+
+    private static String hex(long b) {
+        return new String(new char[]{HEX[(int) (b >>> 4) & 0xf], HEX[(int) b & 0xf]});
+    }
+
+    /**
+     * MurmurHash3 的 64 位收尾混淆函数
+     */
+    static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -5,9 +5,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
 import priv.dino.tus.server.manage.domain.File;
 import priv.dino.tus.server.core.error.GlobalException;
 import reactor.core.publisher.Flux;
@@ -15,14 +17,27 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.function.Function;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * 本地存储 实现类
+ * <p>
+ * 文件按 {@link StorageDisks} 分布在一块或多块盘上，每个操作在文件所在盘的 I/O 线程上执行。
  *
  * @author dino
  * @date 2021/10/29 15:24
@@ -32,8 +47,21 @@ import java.util.function.Function;
 @RequiredArgsConstructor
 public class LocalStorageImpl implements FileStorage {
 
-    private final Path fileDirectory;
-    private final Function<Path, Mono<AsynchronousFileChannel>> channelFunction;
+    static final String STATE_SUFFIX = ".state";
+
+    private final StorageDisks storageDisks;
+    private final FileChannelCache fileChannelCache;
+    private final TrashCollector trashCollector;
+    private final FileSyncer fileSyncer;
+    private final DataBufferFactory storageBufferFactory;
+    private final TusServerProperties tusServerProperties;
+    private final UploadMetrics uploadMetrics;
+    private final AtomicInteger activeWrites = new AtomicInteger();
+
+    @Override
+    public File place(@NonNull File file) {
+        return storageDisks.place(file);
+    }
 
     /**
      * 创建文件
@@ -45,18 +73,41 @@ public class LocalStorageImpl implements FileStorage {
      */
     @Override
     public Mono<File> createFile(@NonNull File file) {
-        return Mono.fromSupplier(() -> {
+        return Mono.defer(() -> {
+            final File placed = storageDisks.place(file);
+            return storageDisks.locate(placed.getId()).flatMap(disk -> Mono.fromSupplier(() -> {
+                try {
+                    Files.createFile(disk.getPaths().prepare(placed.getId()));
+                    return placed;
+                } catch (IOException e) {
+                    throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File creation failed: " + file,e);
+                }
+            }).subscribeOn(disk.getScheduler()));
+        });
+    }
+
+    @Override
+    public Mono<Void> link(@NonNull Long sourceId, @NonNull Long id) {
+        return storageDisks.locate(sourceId).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            final Path source = disk.getPaths().locate(sourceId);
             try {
-                Files.createFile(Paths.get(fileDirectory.toString(), file.getId().toString()));
-                return file;
-            } catch (IOException e) {
-                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File creation failed: " + file,e);
+                // 硬链接只能在同一文件系统内，新文件放在来源文件所在的盘上
+                storageDisks.record(id, disk.getIndex());
+                final Path target = disk.getPaths().prepare(id);
+                // 不支持硬链接时不退回复制，复制整个文件会拖住创建请求；失败后由调用方正常创建上传
+                Files.createLink(target, source);
+            } catch (UnsupportedOperationException | IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File link failed: " + sourceId + " -> " + id, e);
             }
-        });
+        }).subscribeOn(disk.getScheduler()));
     }
 
     /**
      * 写文件
+     * <p>
+     * 按配置的持久化级别，数据落盘后才返回写入的字节数，此后才会持久化偏移量。
+     * 请求体中的小缓冲区先合并为 writeSize 大小的写入单元，每个单元一次定位写；
+     * 同一时刻每个上传最多攒一个单元并写一个单元，写完才继续向连接请求数据，背压直达客户端。
      *
      * @param id     文件id
      * @param parts  数据缓冲区
@@ -67,55 +118,417 @@ public class LocalStorageImpl implements FileStorage {
      */
     @Override
     public Mono<Integer> writeChunk(@NonNull Long id, @NonNull Flux<DataBuffer> parts, long offset) {
-        final Path file = Paths.get(fileDirectory.toString(), id.toString());
-        final Mono<AsynchronousFileChannel> channel = channelFunction.apply(file);
-
-        return channel
-                .flatMapMany(asynchronousFileChannel -> DataBufferUtils.write(parts, asynchronousFileChannel, offset))
-                .map(dataBuffer -> {
-                    final int capacity = dataBuffer.capacity();
-                    DataBufferUtils.release(dataBuffer);
-                    return capacity;
+        return storageDisks.locate(id).flatMap(disk -> this.writeChunk(disk, id, parts, offset));
+    }
+
+    private Mono<Integer> writeChunk(StorageDisks.Disk disk, Long id, Flux<DataBuffer> parts, long offset) {
+        final Path file = disk.getPaths().locate(id);
+
+        // 写入单元交给通道时开始计时，写完发出时结束，不含等待客户端数据的时间
+        final long[] started = new long[1];
+        return Mono.using(() -> fileChannelCache.acquire(id, file, disk.getExecutor()),
+                        lease -> DataBufferUtils.write(this.combine(parts).doOnNext(unit -> started[0] = System.nanoTime()), lease.getChannel(), offset)
+                                .map(dataBuffer -> {
+                                    uploadMetrics.write(System.nanoTime() - started[0]);
+                                    final int written = dataBuffer.readableByteCount();
+                                    DataBufferUtils.release(dataBuffer);
+                                    return written;
+                                })
+                                .reduce(0, Integer::sum)
+                                .doOnNext(uploadMetrics::bytesWritten)
+                                .doOnNext(disk::written)
+                                .flatMap(written -> fileSyncer.sync(id, lease.getChannel()).thenReturn(written)),
+                        FileChannelCache.Lease::close)
+                .doOnSubscribe(subscription -> {
+                    activeWrites.incrementAndGet();
+                    disk.getActiveWrites().incrementAndGet();
                 })
-                .reduce(0, Integer::sum)
-                 /*2021/12/14 Schedulers.boundedElastic() 调用一个有界的弹性线程池阻塞工作来解决警告：不建议在非阻塞上下文中调用“订阅”?????????*/
-                .publishOn(Schedulers.boundedElastic())
-                .doOnTerminate(() -> channel.subscribe(this::closeChannel));
+                .doFinally(signalType -> {
+                    activeWrites.decrementAndGet();
+                    disk.getActiveWrites().decrementAndGet();
+                });
+    }
+
+    /**
+     * 将连续的小缓冲区合并为不小于 writeSize 的写入单元，合并后的缓冲区从存储缓冲区工厂分配
+     */
+    private Flux<DataBuffer> combine(Flux<DataBuffer> parts) {
+        final int writeSize = tusServerProperties.getBuffer().getWriteSize();
+        if (writeSize <= 0) {
+            return parts;
+        }
+        return Flux.defer(() -> {
+            final int[] pending = new int[1];
+            return parts.bufferUntil(part -> {
+                        pending[0] += part.readableByteCount();
+                        if (pending[0] < writeSize) {
+                            return false;
+                        }
+                        pending[0] = 0;
+                        return true;
+                    })
+                    .map(this::join)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
     }
 
-    void closeChannel( @NonNull final AsynchronousFileChannel asynchronousFileChannel){
+    private DataBuffer join(List<DataBuffer> buffers) {
+        if (buffers.size() == 1) {
+            return buffers.get(0);
+        }
+        final int size = buffers.stream().mapToInt(DataBuffer::readableByteCount).sum();
+        final DataBuffer unit = storageBufferFactory.allocateBuffer(size);
         try {
-            asynchronousFileChannel.close();
-        } catch (IOException e) {
-            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Channel close error",e);
+            buffers.forEach(unit::write);
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(unit);
+            throw e;
+        } finally {
+            buffers.forEach(DataBufferUtils::release);
         }
+        return unit;
+    }
+
+    /**
+     * 释放上传占用的文件通道
+     *
+     * @param id 文件id
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 14:30
+     */
+    @Override
+    public Mono<Void> release(@NonNull Long id) {
+        return Mono.fromRunnable(() -> fileChannelCache.invalidate(id));
+    }
+
+    /**
+     * 截断文件
+     *
+     * @param id     文件id
+     * @param offset 偏移量
+     * @return reactor.core.publisher.Mono<java.lang.Void>
+     * @author dino
+     * @date 2026/10/18 10:12
+     */
+    @Override
+    public Mono<Void> truncate(@NonNull Long id, long offset) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            try (FileChannel fileChannel = FileChannel.open(disk.getPaths().locate(id), WRITE)) {
+                fileChannel.truncate(offset);
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File truncate failed: " + id, e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    @Override
+    public Mono<Void> discard(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            fileChannelCache.invalidate(id);
+            final Path trashed = trashCollector.getTrashDirectory(disk.getPaths().getRoot()).resolve(id.toString());
+            try {
+                try {
+                    this.moveToTrash(disk.getPaths().locate(id), trashed);
+                } catch (NoSuchFileException e) {
+                    // 解析路径之后文件可能刚被布局迁移移走，重新解析一次
+                    this.moveToTrash(disk.getPaths().locate(id), trashed);
+                }
+                trashCollector.enqueue(trashed);
+            } catch (NoSuchFileException e) {
+                log.debug("File already removed: {}", id);
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File discard failed: " + id, e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    private void moveToTrash(Path file, Path trashed) throws IOException {
+        Files.deleteIfExists(stateOf(file));
+        Files.deleteIfExists(offsetOf(file));
+        Files.move(file, trashed, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Mono<Long> delete(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.fromCallable(() -> {
+            fileChannelCache.invalidate(id);
+            final Path file = disk.getPaths().locate(id);
+            try {
+                Files.deleteIfExists(stateOf(file));
+                Files.deleteIfExists(offsetOf(file));
+                final long size = Files.size(file);
+                Files.delete(file);
+                return size;
+            } catch (NoSuchFileException e) {
+                return 0L;
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File delete failed: " + id, e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    @Override
+    public Mono<byte[]> readState(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.fromCallable(() -> {
+            try {
+                return Files.readAllBytes(stateOf(disk.getPaths().locate(id)));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }).onErrorMap(IOException.class, e -> new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "State read failed: " + id, e))
+                .subscribeOn(disk.getScheduler()));
+    }
+
+    @Override
+    public Mono<Void> writeState(@NonNull Long id, @NonNull byte[] state) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            try {
+                Files.write(stateOf(disk.getPaths().locate(id)), state);
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "State write failed: " + id, e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    @Override
+    public Mono<Void> deleteState(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            try {
+                Files.deleteIfExists(stateOf(disk.getPaths().locate(id)));
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "State delete failed: " + id, e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    /**
+     * 附属状态文件与上传文件在同一目录：{@code <id>.state}
+     */
+    static Path stateOf(Path file) {
+        return file.resolveSibling(file.getFileName() + STATE_SUFFIX);
+    }
+
+    /**
+     * 偏移量以记录为准，但不超过文件大小：数据与记录没有一起落盘时，以实际写入的数据为准
+     */
+    @Override
+    public Mono<File> readOffset(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.fromCallable(() -> {
+            final Path file = disk.getPaths().locate(id);
+            final File record = this.readOffsetRecord(disk, id, file);
+            return record == null ? null : record.withContentOffset(Math.min(record.getContentOffset(), Files.size(file)));
+        }).onErrorResume(NoSuchFileException.class, e -> Mono.empty())
+                .onErrorMap(IOException.class, e -> new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Offset record read failed: " + id, e))
+                .subscribeOn(disk.getScheduler()));
+    }
+
+    /**
+     * 只读取记录，不与文件大小比较；压缩存储的文件大小不是偏移量，由 {@link CompressingFileStorage} 自行比较
+     */
+    Mono<File> readOffsetRecord(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.fromCallable(() -> this.readOffsetRecord(disk, id, disk.getPaths().locate(id)))
+                .onErrorResume(NoSuchFileException.class, e -> Mono.empty())
+                .onErrorMap(IOException.class, e -> new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Offset record read failed: " + id, e))
+                .subscribeOn(disk.getScheduler()));
+    }
+
+    private File readOffsetRecord(StorageDisks.Disk disk, Long id, Path file) throws IOException {
+        final File record = OffsetRecord.decode(id, Files.readAllBytes(offsetOf(file)));
+        if (record == null) {
+            log.warn("Offset record of upload {} is corrupt, ignored", id);
+            return null;
+        }
+        return record.withDisk(disk.getIndex());
+    }
+
+    /**
+     * 定长的记录一次定位写整体覆盖，不截断也不重命名；开启持久化时与数据一样落盘后返回
+     */
+    @Override
+    public Mono<Void> writeOffset(@NonNull File file) {
+        final ByteBuffer record = ByteBuffer.wrap(OffsetRecord.encode(file));
+        return storageDisks.locate(file.getId()).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            try (FileChannel channel = FileChannel.open(offsetOf(disk.getPaths().locate(file.getId())), CREATE, WRITE)) {
+                while (record.hasRemaining()) {
+                    channel.write(record, record.position());
+                }
+                if (fileSyncer.isEnabled()) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Offset record write failed: " + file.getId(), e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    @Override
+    public Mono<Void> deleteOffset(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.<Void>fromRunnable(() -> {
+            try {
+                Files.deleteIfExists(offsetOf(disk.getPaths().locate(id)));
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Offset record delete failed: " + id, e);
+            }
+        }).subscribeOn(disk.getScheduler()));
+    }
+
+    /**
+     * 偏移量记录与上传文件在同一目录：{@code <id>.offset}
+     */
+    static Path offsetOf(Path file) {
+        return file.resolveSibling(file.getFileName() + OffsetRecord.SUFFIX);
+    }
+
+    @Override
+    public Mono<Long> size(@NonNull Long id) {
+        return storageDisks.locate(id).flatMap(disk -> Mono.fromCallable(() -> {
+                    final Path file = disk.getPaths().locate(id);
+                    return Files.exists(file) ? Files.size(file) : null;
+                })
+                .onErrorMap(IOException.class, e -> new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File stat failed: " + id, e))
+                .subscribeOn(disk.getScheduler()));
     }
 
     /**
      * 合并文件
+     * <p>
+     * 每个分片在目标文件中的位置由前面分片的长度决定，因此各分片可以并行地通过
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} 直接拷贝到目标位置，
+     * 数据不经过用户空间，也不占用 Netty 的事件循环线程。拷贝在目标文件所在盘的 I/O 线程上执行，
+     * 分片的所在盘从分片记录中得到。
      *
-     * @param id                      文件id
-     * @param extractPartialUploadIds 合并请求的ID
-     * @param offset                  偏移量
-     * @return reactor.core.publisher.Mono<java.lang.Integer>
+     * @param id             文件id
+     * @param partialUploads 按 Upload-Concat 顺序排列的分片上传
+     * @return reactor.core.publisher.Mono<java.lang.Long>
      * @author dino
      * @date 2021/11/24 10:52
      */
     @Override
-    public Mono<Integer> mergeChunk(Long id, Long[] extractPartialUploadIds, long offset) {
-        Flux<DataBuffer> parts = Flux.just(extractPartialUploadIds)
-                .flatMapSequential(extractPartialUploadId -> DataBufferUtils.read(Paths.get(fileDirectory.toString(), extractPartialUploadId.toString()), new DefaultDataBufferFactory(), 4096));
+    public Mono<Long> mergeChunk(@NonNull Long id, @NonNull List<File> partialUploads) {
+        // 从清单解析的分片没有所在盘，不能按文件目录登记，由 transfer 在盘的线程上查找
+        partialUploads.stream()
+                .filter(partialUpload -> partialUpload.getDisk() != null)
+                .forEach(partialUpload -> storageDisks.record(partialUpload.getId(), partialUpload.getDisk()));
+        final StorageDisks.Disk disk = storageDisks.of(id);
+        final Path target = this.getPath(id);
+        final long[] positions = new long[partialUploads.size()];
+        for (int i = 1; i < positions.length; i++) {
+            positions[i] = positions[i - 1] + partialUploads.get(i - 1).getContentLength();
+        }
 
+        return Mono.fromSupplier(System::nanoTime)
+                .flatMap(start -> Flux.range(0, partialUploads.size())
+                        .flatMap(i -> Mono.fromCallable(() -> this.transfer(partialUploads.get(i), target, positions[i]))
+                                        .subscribeOn(disk.getScheduler()),
+                                tusServerProperties.getMerge().getParallelism())
+                        .reduce(0L, Long::sum)
+                        .doOnNext(disk::written)
+                        .doOnNext(total -> {
+                            final long nanos = System.nanoTime() - start;
+                            uploadMetrics.merged(total, nanos);
+                            final long elapsed = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nanos));
+                            log.info("Merged {} partial uploads into {}: {} bytes in {} ms ({} MB/s)",
+                                    partialUploads.size(), id, total, elapsed, total * 1000 / elapsed / (1024 * 1024));
+                        }))
+                .doOnSubscribe(subscription -> {
+                    activeWrites.incrementAndGet();
+                    disk.getActiveWrites().incrementAndGet();
+                })
+                .doFinally(signalType -> {
+                    activeWrites.decrementAndGet();
+                    disk.getActiveWrites().decrementAndGet();
+                });
+    }
 
-        /*parts.subscribe(buffer -> {
-            byte[] bytes = new byte[buffer.readableByteCount()];
-            buffer.read(bytes);
-            DataBufferUtils.release(buffer);
-            String body = new String(bytes, UTF_8);
-            System.out.println(body);
+    private long transfer(File partialUpload, Path target, long position) {
+        final Path source = this.getPath(partialUpload.getId());
+        final long count = partialUpload.getContentLength();
+        final long mergeSize = tusServerProperties.getBuffer().getMergeSize();
+        try (FileChannel sourceChannel = FileChannel.open(source, READ);
+             FileChannel targetChannel = FileChannel.open(target, WRITE)) {
+            targetChannel.position(position);
+            long transferred = 0;
+            while (transferred < count) {
+                final long n = sourceChannel.transferTo(transferred, Math.min(count - transferred, mergeSize), targetChannel);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            if (transferred != count) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR,
+                        String.format("Partial upload %s is shorter than its length: %d < %d", partialUpload.getId(), transferred, count));
+            }
+            if (fileSyncer.isEnabled()) {
+                targetChannel.force(false);
+            }
+            return transferred;
+        } catch (IOException e) {
+            throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "File merge failed: " + partialUpload.getId(), e);
+        }
+    }
 
-        });*/
+    /**
+     * 读文件的一段区间
+     * <p>
+     * 缓冲区由共享的（默认池化的）工厂分配，由下游写出响应后释放。
+     *
+     * @param id       文件id
+     * @param position 起始位置
+     * @param count    读取的字节数
+     * @return reactor.core.publisher.Flux<org.springframework.core.io.buffer.DataBuffer>
+     * @author dino
+     * @date 2026/10/18 11:05
+     */
+    @Override
+    public Flux<DataBuffer> readChunk(@NonNull Long id, long position, long count) {
+        if (count <= 0) {
+            return Flux.empty();
+        }
+        return storageDisks.locate(id).flatMapMany(disk -> DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.readAsynchronousFileChannel(() -> this.open(disk, disk.getPaths().locate(id)), position,
+                        storageBufferFactory, tusServerProperties.getBuffer().getDownloadSize()),
+                count)
+                .doOnNext(buffer -> disk.read(buffer.readableByteCount())));
+    }
 
-        return writeChunk(id, parts, offset);
+    private AsynchronousFileChannel open(StorageDisks.Disk disk, Path file) throws IOException {
+        return disk.getExecutor() == null
+                ? AsynchronousFileChannel.open(file, READ)
+                : AsynchronousFileChannel.open(file, EnumSet.of(READ), disk.getExecutor());
+    }
+
+    @Override
+    public Mono<String> contentEncoding(@NonNull Long id) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<FileSegment> encodedRegion(@NonNull Long id) {
+        return Mono.empty();
+    }
+
+    @Override
+    public int activeWrites() {
+        return activeWrites.get();
+    }
+
+    @Override
+    public Path getPath(@NonNull Long id) {
+        return storageDisks.of(id).getPaths().locate(id);
+    }
+
+    @Override
+    public Mono<Void> prune(@NonNull LocalDateTime before) {
+        return Mono.<Void>fromRunnable(() -> {
+            try {
+                for (StorageDisks.Disk disk : storageDisks.getDisks()) {
+                    disk.getPaths().prune(before.toLocalDate());
+                }
+            } catch (IOException e) {
+                throw new GlobalException(HttpStatus.INTERNAL_SERVER_ERROR, "Directory prune failed: " + before, e);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
     }
 }
@@ -0,0 +1,79 @@
+package priv.dino.tus.server.storage;
+
+import priv.dino.tus.server.manage.domain.File;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * 上传的偏移量记录
+ * <p>
+ * 偏移量以文件系统为准时，每次写入校验通过后整体覆盖 {@code <id>.offset}，HEAD 与 PATCH 不查数据库即可得到偏移量。
+ * 记录只有几十个字节，一次定位写完成；末尾带 CRC32，读到写了一半的记录时视为不存在，回退到数据库。
+ * 记录的偏移量只在数据写入（按持久化级别落盘）之后才前进，读取时再与文件大小取较小值，
+ * 进程崩溃后最多让客户端重传最后一次写入的数据，不会把未写入的区间当作已上传。
+ * <p>
+ * durability 为 CHUNK 或 GROUP_COMMIT 时数据先于记录落盘，记录写入后同样落盘才返回，
+ * 掉电或内核崩溃后记录与已确认的偏移量一致，不会超过已落盘的数据；
+ * 为 NONE 时数据与记录都只在页缓存中，上面的保证只对进程崩溃成立，掉电后记录可能停在较早的偏移量或校验失败（回退到数据库）。
+ *
+ * @author dino
+ * @date 2026/10/19 02:10
+ */
+final class OffsetRecord {
+
+    static final String SUFFIX = ".offset";
+
+    static final int SIZE = 45;
+
+    private static final int MAGIC = 0x5455534F;
+
+    private OffsetRecord() {}
+
+    static byte[] encode(File file) {
+        final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.putInt(MAGIC)
+                .putLong(file.getContentLength())
+                .putLong(file.getContentOffset())
+                .putLong(file.getLastUploadedChunkNumber() == null ? 0 : file.getLastUploadedChunkNumber())
+                .putLong(file.getCreatedAt() == null ? Long.MIN_VALUE : file.getCreatedAt().toEpochSecond(ZoneOffset.UTC))
+                .putInt(file.getCreatedAt() == null ? 0 : file.getCreatedAt().getNano())
+                .put((byte) (file.isPartialStatus() ? 1 : 0));
+        final CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc32.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * 解码记录，长度、标记或校验和不符时返回空
+     */
+    static File decode(Long id, byte[] bytes) {
+        if (bytes == null || bytes.length != SIZE) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, SIZE - 4);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(SIZE - 4) != (int) crc32.getValue()) {
+            return null;
+        }
+        buffer.position(4);
+        final long contentLength = buffer.getLong();
+        final long contentOffset = buffer.getLong();
+        final long lastUploadedChunkNumber = buffer.getLong();
+        final long seconds = buffer.getLong();
+        final int nanos = buffer.getInt();
+        final boolean partial = buffer.get() == 1;
+        return File.builder()
+                .id(id)
+                .contentLength(contentLength)
+                .contentOffset(contentOffset)
+                .lastUploadedChunkNumber(lastUploadedChunkNumber)
+                .createdAt(seconds == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC))
+                .partialStatus(partial)
+                .build();
+    }
+}
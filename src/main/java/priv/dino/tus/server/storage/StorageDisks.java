@@ -0,0 +1,324 @@
+package priv.dino.tus.server.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 存储盘
+ * <p>
+ * 文件目录是 0 号盘，额外配置的存储目录依次编号。新上传按放置策略选盘，所在盘的序号保存在上传记录中，
+ * 从数据库读出上传时登记到有容量上限的缓存里，之后的读写、合并与删除直接找到所在盘；
+ * 缓存中没有的上传（如被淘汰）才逐个盘查找，异步操作在 boundedElastic 线程上查找；仍找不到时按 0 号盘处理，不登记。
+ * <p>
+ * 配置了多块盘时，每块盘有独立的 I/O 线程池：异步文件通道的读写与阻塞的文件操作都在所在盘的线程池上执行，
+ * 一块盘变慢只会让它自己的队列变长，不会占满其他盘的线程。只有一块盘时沿用默认的线程。
+ *
+ * @author dino
+ * @date 2026/10/19 00:30
+ */
+@Slf4j
+public class StorageDisks implements MeterBinder, DisposableBean {
+
+    private final TusServerProperties.Disks properties;
+    private final List<Disk> disks;
+    private final Cache<Long, Integer> placements;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder probes = new LongAdder();
+
+    public StorageDisks(StoragePaths storagePaths) {
+        this(Collections.singletonList(storagePaths), new TusServerProperties.Disks());
+    }
+
+    public StorageDisks(List<StoragePaths> roots, TusServerProperties.Disks properties) {
+        this.properties = properties;
+        final List<Disk> list = new ArrayList<>(roots.size());
+        for (int i = 0; i < roots.size(); i++) {
+            list.add(new Disk(i, roots.get(i), roots.size() > 1 ? properties.getIoThreads() : 0));
+        }
+        this.disks = Collections.unmodifiableList(list);
+        this.placements = Caffeine.newBuilder().maximumSize(properties.getPlacementCacheSize()).build();
+        for (Disk disk : disks.subList(1, disks.size())) {
+            this.skipMigration(disk.getPaths());
+        }
+    }
+
+    /**
+     * 额外的盘上没有平铺文件时直接写入布局标记，不再回退查找平铺路径；布局迁移只处理文件目录
+     */
+    private void skipMigration(StoragePaths paths) {
+        if (!paths.isLegacyFallback()) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(paths.getRoot(),
+                path -> path.getFileName().toString().matches("\\d+") && Files.isRegularFile(path))) {
+            if (files.iterator().hasNext()) {
+                log.warn("Flat files in {} are not migrated, paths fall back to the flat layout", paths.getRoot());
+                return;
+            }
+            paths.migrated();
+        } catch (IOException e) {
+            log.warn("Storage layout marker of {} not written", paths.getRoot(), e);
+        }
+    }
+
+    public List<Disk> getDisks() {
+        return disks;
+    }
+
+    public List<Path> getRoots() {
+        return disks.stream().map(disk -> disk.getPaths().getRoot()).collect(Collectors.toList());
+    }
+
+    public boolean isMultiple() {
+        return disks.size() > 1;
+    }
+
+    /**
+     * 为新上传选盘，返回的上传带有所在盘序号；已有所在盘或只有一块盘时原样返回
+     *
+     * @param file 上传
+     * @return priv.dino.tus.server.manage.domain.File
+     */
+    public File place(@NonNull File file) {
+        if (!this.isMultiple()) {
+            return file;
+        }
+        if (file.getDisk() != null) {
+            this.record(file.getId(), file.getDisk());
+            return file;
+        }
+        final Integer placed = file.getId() == null ? null : placements.getIfPresent(file.getId());
+        final int index = placed != null ? placed : this.choose().getIndex();
+        this.record(file.getId(), index);
+        return file.withDisk(index);
+    }
+
+    private Disk choose() {
+        switch (properties.getPlacement()) {
+            case LEAST_INFLIGHT:
+                return disks.stream().min(Comparator.comparingInt(Disk::activeWrites)).orElse(disks.get(0));
+            case ROUND_ROBIN:
+                return disks.get(Math.floorMod(next.getAndIncrement(), disks.size()));
+            default:
+                return disks.stream().min(Comparator.comparingLong(Disk::usedBytes)).orElse(disks.get(0));
+        }
+    }
+
+    /**
+     * 登记上传所在盘，序号为空表示在文件目录
+     *
+     * @param id   上传id
+     * @param disk 所在盘序号
+     */
+    public void record(Long id, Integer disk) {
+        if (id != null && this.isMultiple()) {
+            placements.put(id, disk == null || disk < 0 || disk >= disks.size() ? 0 : disk);
+        }
+    }
+
+    /**
+     * 上传所在盘，未登记时在调用线程上逐个盘查找
+     *
+     * @param id 上传id
+     * @return priv.dino.tus.server.storage.StorageDisks.Disk
+     */
+    public Disk of(@NonNull Long id) {
+        if (!this.isMultiple()) {
+            return disks.get(0);
+        }
+        final Integer index = placements.getIfPresent(id);
+        return index != null ? disks.get(index) : this.probe(id);
+    }
+
+    /**
+     * 上传所在盘，未登记时在 boundedElastic 线程上逐个盘查找，不阻塞调用线程
+     *
+     * @param id 上传id
+     * @return reactor.core.publisher.Mono<priv.dino.tus.server.storage.StorageDisks.Disk>
+     */
+    public Mono<Disk> locate(@NonNull Long id) {
+        if (!this.isMultiple()) {
+            return Mono.just(disks.get(0));
+        }
+        final Integer index = placements.getIfPresent(id);
+        return index != null
+                ? Mono.just(disks.get(index))
+                : Mono.fromSupplier(() -> this.probe(id)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 找到的盘登记到缓存；都没有时按 0 号盘处理但不登记，文件稍后出现（如正在创建或迁移）时仍能找到
+     */
+    private Disk probe(Long id) {
+        probes.increment();
+        final Disk found = disks.stream()
+                .filter(disk -> Files.exists(disk.getPaths().locate(id)))
+                .findFirst()
+                .orElse(null);
+        if (found == null) {
+            return disks.get(0);
+        }
+        placements.put(id, found.getIndex());
+        return found;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        for (Disk disk : disks) {
+            final Tags tags = Tags.of("disk", String.valueOf(disk.getIndex()), "root", disk.getPaths().getRoot().toString());
+            FunctionCounter.builder("tus.disk.written", disk.written, LongAdder::sum)
+                    .description("Bytes written to the disk")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("tus.disk.read", disk.read, LongAdder::sum)
+                    .description("Bytes read from the disk")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("tus.disk.queue", disk, Disk::queueDepth)
+                    .description("I/O operations running or waiting on the disk's threads")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("tus.disk.writes.active", disk, Disk::activeWrites)
+                    .description("Uploads currently writing to the disk")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("tus.disk.used", disk, Disk::usedBytes)
+                    .description("Used bytes of the file system holding the disk's root")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+        }
+        FunctionCounter.builder("tus.disk.probes", probes, LongAdder::sum)
+                .description("Lookups that searched every disk because the upload's placement was not cached")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        disks.forEach(Disk::dispose);
+    }
+
+    /**
+     * 一块存储盘
+     */
+    public static final class Disk {
+
+        private final int index;
+        private final StoragePaths paths;
+        private final ThreadPoolExecutor executor;
+        private final Scheduler scheduler;
+        private final AtomicInteger activeWrites = new AtomicInteger();
+        private final LongAdder written = new LongAdder();
+        private final LongAdder read = new LongAdder();
+        private FileStore fileStore;
+
+        private Disk(int index, StoragePaths paths, int ioThreads) {
+            this.index = index;
+            this.paths = paths;
+            if (ioThreads > 0) {
+                final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tus-disk-" + index + "-");
+                threadFactory.setDaemon(true);
+                this.executor = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+                this.executor.allowCoreThreadTimeOut(true);
+                this.scheduler = Schedulers.fromExecutorService(executor, "tus-disk-" + index);
+            } else {
+                this.executor = null;
+                this.scheduler = Schedulers.boundedElastic();
+            }
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public StoragePaths getPaths() {
+            return paths;
+        }
+
+        /**
+         * 打开异步文件通道使用的线程池，只有一块盘时为空（使用默认线程池）
+         */
+        public ExecutorService getExecutor() {
+            return executor;
+        }
+
+        /**
+         * 阻塞的文件操作使用的调度器
+         */
+        public Scheduler getScheduler() {
+            return scheduler;
+        }
+
+        public AtomicInteger getActiveWrites() {
+            return activeWrites;
+        }
+
+        public int activeWrites() {
+            return activeWrites.get();
+        }
+
+        public void written(long bytes) {
+            written.add(bytes);
+        }
+
+        public void read(long bytes) {
+            read.add(bytes);
+        }
+
+        public int queueDepth() {
+            return executor == null ? 0 : executor.getQueue().size() + executor.getActiveCount();
+        }
+
+        public long usedBytes() {
+            try {
+                if (fileStore == null) {
+                    fileStore = Files.getFileStore(paths.getRoot());
+                }
+                return fileStore.getTotalSpace() - fileStore.getUnallocatedSpace();
+            } catch (IOException e) {
+                log.warn("Disk usage of {} unavailable", paths.getRoot(), e);
+                return Long.MAX_VALUE;
+            }
+        }
+
+        private void dispose() {
+            if (executor != null) {
+                scheduler.dispose();
+                executor.shutdown();
+            }
+        }
+    }
+}
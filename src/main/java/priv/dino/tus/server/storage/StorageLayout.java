@@ -0,0 +1,55 @@
+package priv.dino.tus.server.storage;
+
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * 文件在存储目录中的路径布局
+ * <p>
+ * 路径只由上传id计算得出，不需要查询数据库。
+ *
+ * @author dino
+ * @date 2026/10/18 19:20
+ */
+public interface StorageLayout {
+
+    /**
+     * 布局名称，写入存储目录下的布局标记文件
+     *
+     * @return java.lang.String
+     */
+    String name();
+
+    /**
+     * 上传文件的路径
+     *
+     * @param root 存储目录
+     * @param id   文件id
+     * @return java.nio.file.Path
+     */
+    Path resolve(Path root, long id);
+
+    /**
+     * 删除指定日期之前已经为空的目录，只有按时间分桶的布局需要
+     *
+     * @param root   存储目录
+     * @param before 日期（不含）
+     * @throws IOException 删除失败
+     */
+    default void prune(Path root, LocalDate before) throws IOException {
+    }
+
+    static StorageLayout of(TusServerProperties.Layout.Strategy strategy) {
+        switch (strategy) {
+            case HASH:
+                return new HashFanOutStorageLayout();
+            case TIME:
+                return new TimeBucketStorageLayout();
+            default:
+                return new FlatStorageLayout();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package priv.dino.tus.server.storage;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在线迁移平铺文件到当前布局
+ * <p>
+ * 启动完成后在后台逐个迁移存储目录下的平铺文件，服务照常处理请求。每个文件先在新位置创建硬链接再删除旧路径，
+ * 迁移过程中两个路径至少有一个可以访问，已经打开的文件通道不受影响；不支持硬链接的文件系统退化为原子重命名。
+ * 全部迁移成功后写入布局标记，之后不再回退查找平铺路径。
+ *
+ * @author dino
+ * @date 2026/10/18 19:20
+ */
+@Slf4j
+public class StorageLayoutMigrator implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final StoragePaths storagePaths;
+    private final TusServerProperties.Layout properties;
+
+    public StorageLayoutMigrator(StoragePaths storagePaths, TusServerProperties.Layout properties) {
+        this.storagePaths = storagePaths;
+        this.properties = properties;
+    }
+
+    @Override
+    public void onApplicationEvent(@NonNull ApplicationReadyEvent event) {
+        if (properties.isMigrate() && storagePaths.isLegacyFallback()) {
+            Mono.fromRunnable(this::migrate)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe(null, e -> log.error("Storage layout migration failed", e));
+        }
+    }
+
+    /**
+     * 迁移全部平铺文件
+     *
+     * @return 迁移失败的文件数
+     */
+    public int migrate() {
+        final Path root = storagePaths.getRoot();
+        final long interval = properties.getMigrateRate() > 0 ? TimeUnit.SECONDS.toNanos(1) / properties.getMigrateRate() : 0;
+        int migrated = 0;
+        int failed = 0;
+        log.info("Migrating flat files in {} to {} layout", root, storagePaths.getLayout().name());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root,
+                path -> path.getFileName().toString().matches("\\d+") && Files.isRegularFile(path))) {
+            for (Path file : files) {
+                final long started = System.nanoTime();
+                if (this.migrate(Long.valueOf(file.getFileName().toString()), file)) {
+                    migrated++;
+                } else {
+                    failed++;
+                }
+                final long remaining = interval - (System.nanoTime() - started);
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                }
+            }
+            if (failed == 0) {
+                storagePaths.migrated();
+            }
+        } catch (IOException e) {
+            log.error("Storage layout migration aborted after {} files", migrated, e);
+            return failed + 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed + 1;
+        }
+        log.info("Storage layout migration finished: {} migrated, {} failed", migrated, failed);
+        return failed;
+    }
+
+    /**
+     * 附属状态文件与偏移量记录随上传文件一起移动
+     */
+    private void migrateState(Path flat, Path target) throws IOException {
+        final Path state = LocalStorageImpl.stateOf(flat);
+        if (Files.exists(state)) {
+            Files.move(state, LocalStorageImpl.stateOf(target), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        final Path offset = LocalStorageImpl.offsetOf(flat);
+        if (Files.exists(offset)) {
+            Files.move(offset, LocalStorageImpl.offsetOf(target), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private boolean migrate(Long id, Path flat) {
+        final Path target = storagePaths.resolve(id);
+        try {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.createLink(target, flat);
+            } catch (FileAlreadyExistsException e) {
+                // 上次迁移在删除旧路径之前中断
+                if (!Files.isSameFile(target, flat)) {
+                    log.warn("Both {} and {} exist, keep the flat file", target, flat);
+                    return false;
+                }
+            } catch (UnsupportedOperationException e) {
+                Files.move(flat, target, StandardCopyOption.ATOMIC_MOVE);
+                this.migrateState(flat, target);
+                return true;
+            }
+            Files.delete(flat);
+            this.migrateState(flat, target);
+            return true;
+        } catch (NoSuchFileException e) {
+            // 迁移过程中被删除或移入回收站
+            return true;
+        } catch (IOException e) {
+            log.warn("Storage layout migration failed: {}", flat, e);
+            return false;
+        }
+    }
+}
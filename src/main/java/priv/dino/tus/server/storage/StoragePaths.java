@@ -0,0 +1,112 @@
+package priv.dino.tus.server.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * 上传文件路径
+ * <p>
+ * 新文件按配置的 {@link StorageLayout} 存放。切换到非平铺布局后，迁移完成之前原来平铺的文件仍然可以访问：
+ * 按新布局找不到时再查找平铺路径。迁移全部完成后写入布局标记文件，之后启动不再回退。
+ *
+ * @author dino
+ * @date 2026/10/18 19:20
+ */
+@Slf4j
+public class StoragePaths {
+
+    public static final String LAYOUT_MARKER = ".layout";
+
+    private final Path root;
+    private final StorageLayout layout;
+    private final FlatStorageLayout flat = new FlatStorageLayout();
+    private volatile boolean legacyFallback;
+
+    public StoragePaths(Path root, StorageLayout layout) {
+        this.root = root;
+        this.layout = layout;
+        this.legacyFallback = !(layout instanceof FlatStorageLayout) && !layout.name().equals(this.readMarker());
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public StorageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 是否仍可能存在未迁移的平铺文件
+     */
+    public boolean isLegacyFallback() {
+        return legacyFallback;
+    }
+
+    /**
+     * 按当前布局计算的路径，用于新建文件
+     */
+    public Path resolve(Long id) {
+        return layout.resolve(root, id);
+    }
+
+    /**
+     * 平铺布局下的路径
+     */
+    public Path resolveFlat(Long id) {
+        return flat.resolve(root, id);
+    }
+
+    /**
+     * 已存在文件的路径：迁移期间按新布局找不到时回退到平铺路径
+     */
+    public Path locate(Long id) {
+        final Path path = this.resolve(id);
+        if (legacyFallback && !Files.exists(path)) {
+            final Path legacy = this.resolveFlat(id);
+            if (Files.exists(legacy)) {
+                return legacy;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 创建文件所在的目录，返回文件路径
+     */
+    public Path prepare(Long id) throws IOException {
+        final Path path = this.resolve(id);
+        if (!path.getParent().equals(root)) {
+            Files.createDirectories(path.getParent());
+        }
+        return path;
+    }
+
+    public void prune(LocalDate before) throws IOException {
+        layout.prune(root, before);
+    }
+
+    /**
+     * 平铺文件已全部迁移：关闭回退并写入布局标记
+     */
+    public void migrated() throws IOException {
+        Files.write(root.resolve(LAYOUT_MARKER), layout.name().getBytes(StandardCharsets.UTF_8));
+        legacyFallback = false;
+        log.info("Storage layout migrated to {}", layout.name());
+    }
+
+    private String readMarker() {
+        try {
+            final Path marker = root.resolve(LAYOUT_MARKER);
+            return Files.exists(marker) ? new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            log.warn("Storage layout marker unreadable, keep flat fallback", e);
+            return null;
+        }
+    }
+}
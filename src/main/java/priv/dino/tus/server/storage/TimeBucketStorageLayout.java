@@ -0,0 +1,98 @@
+package priv.dino.tus.server.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import priv.dino.tus.server.core.util.SnowflakeIdWorker;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 按时间分桶的布局：{@code <root>/yyyy/MM/dd/<id>}
+ * <p>
+ * 日期取自雪花id中的生成时间（UTC），同一天创建的上传在同一个目录中。已完成的上传与过期的上传
+ * 共用日期目录，过期时不能整个删除；回收过期上传后只删除已经变空的日期目录，不必遍历其他日期。
+ *
+ * @author dino
+ * @date 2026/10/18 19:20
+ */
+@Slf4j
+public class TimeBucketStorageLayout implements StorageLayout {
+
+    @Override
+    public String name() {
+        return "time";
+    }
+
+    @Override
+    public Path resolve(Path root, long id) {
+        final LocalDate date = bucket(id);
+        return root.resolve(Integer.toString(date.getYear()))
+                .resolve(twoDigits(date.getMonthValue()))
+                .resolve(twoDigits(date.getDayOfMonth()))
+                .resolve(Long.toString(id));
+    }
+
+    static LocalDate bucket(long id) {
+        return Instant.ofEpochMilli(SnowflakeIdWorker.extractTimestamp(id)).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static String twoDigits(int value) {
+        return value < 10 ? "0" + value : Integer.toString(value);
+    }
+
+    @Override
+    public void prune(Path root, LocalDate before) throws IOException {
+        for (Path year : directories(root, 4)) {
+            final int y = Integer.parseInt(year.getFileName().toString());
+            if (y > before.getYear()) {
+                continue;
+            }
+            for (Path month : directories(year, 2)) {
+                final int m = Integer.parseInt(month.getFileName().toString());
+                if (y == before.getYear() && m > before.getMonthValue()) {
+                    continue;
+                }
+                for (Path day : directories(month, 2)) {
+                    if (LocalDate.of(y, m, Integer.parseInt(day.getFileName().toString())).isBefore(before)) {
+                        deleteIfEmpty(day);
+                    }
+                }
+                if (y < before.getYear() || m < before.getMonthValue()) {
+                    deleteIfEmpty(month);
+                }
+            }
+            if (y < before.getYear()) {
+                deleteIfEmpty(year);
+            }
+        }
+    }
+
+    private static List<Path> directories(Path parent, int digits) throws IOException {
+        try (Stream<Path> children = Files.list(parent)) {
+            return children.filter(Files::isDirectory)
+                    .filter(p -> p.getFileName().toString().matches("\\d{" + digits + "}"))
+                    .collect(Collectors.toList());
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static void deleteIfEmpty(Path directory) throws IOException {
+        try {
+            Files.delete(directory);
+            log.debug("Pruned empty bucket: {}", directory);
+        } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+            // 仍有未过期或已完成的上传
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package priv.dino.tus.server.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 回收站
+ * <p>
+ * 终止的上传先被重命名到存储目录下的 {@code .trash} 目录（同一文件系统内的重命名与文件大小无关），
+ * 再由受限的工作线程异步删除。回收站目录本身就是持久化的删除队列：启动时会重新删除其中残留的文件。
+ * 多块盘时每块盘的存储目录下各有一个回收站，文件只在所在盘内重命名。
+ *
+ * @author dino
+ * @date 2026/10/18 18:40
+ */
+@Slf4j
+public class TrashCollector implements InitializingBean, DisposableBean, MeterBinder {
+
+    public static final String TRASH_DIRECTORY = ".trash";
+
+    private final List<Path> trashDirectories;
+    private final int parallelism;
+    private final Scheduler scheduler;
+    private final Sinks.Many<Path> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private Disposable worker;
+
+    public TrashCollector(Path fileDirectory, TusServerProperties.Trash properties) {
+        this(Collections.singletonList(fileDirectory), properties);
+    }
+
+    public TrashCollector(List<Path> roots, TusServerProperties.Trash properties) {
+        this.trashDirectories = roots.stream().map(root -> root.resolve(TRASH_DIRECTORY)).collect(Collectors.toList());
+        this.parallelism = properties.getParallelism();
+        this.scheduler = Schedulers.newBoundedElastic(parallelism, Integer.MAX_VALUE, "tus-trash");
+    }
+
+    public Path getTrashDirectory() {
+        return trashDirectories.get(0);
+    }
+
+    /**
+     * 存储目录下的回收站
+     */
+    public Path getTrashDirectory(@NonNull Path root) {
+        return root.resolve(TRASH_DIRECTORY);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        for (Path trashDirectory : trashDirectories) {
+            Files.createDirectories(trashDirectory);
+        }
+        worker = queue.asFlux()
+                .flatMap(path -> Mono.fromRunnable(() -> this.unlink(path)).subscribeOn(scheduler), parallelism)
+                .subscribe();
+        for (Path trashDirectory : trashDirectories) {
+            try (Stream<Path> leftovers = Files.list(trashDirectory)) {
+                leftovers.forEach(this::enqueue);
+            }
+        }
+    }
+
+    /**
+     * 登记回收站中待删除的文件
+     */
+    public void enqueue(@NonNull Path trashed) {
+        pending.incrementAndGet();
+        queue.emitNext(trashed, (signalType, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    private void unlink(Path trashed) {
+        try {
+            final long size = Files.size(trashed);
+            Files.delete(trashed);
+            reclaimedBytes.add(size);
+        } catch (NoSuchFileException e) {
+            log.debug("Trashed file already removed: {}", trashed);
+        } catch (IOException e) {
+            log.warn("Trashed file delete failed, retry on next start: {}", trashed, e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("tus.trash.pending", pending, AtomicInteger::get)
+                .description("Terminated upload files waiting to be unlinked")
+                .register(registry);
+        FunctionCounter.builder("tus.trash.reclaimed", reclaimedBytes, LongAdder::sum)
+                .description("Bytes reclaimed by unlinking terminated uploads")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (worker != null) {
+            worker.dispose();
+        }
+        scheduler.dispose();
+    }
+}
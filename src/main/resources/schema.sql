@@ -9,7 +9,16 @@ CREATE TABLE `file` (
                         `original_name` varchar(500) NOT NULL COMMENT '文件名称',
                         `fingerprint` varchar(500) NOT NULL COMMENT '指纹',
                         `is_partial` tinyint(1) NOT NULL DEFAULT '1' COMMENT '是否部分上传:1是0否',
+                        `is_virtual` tinyint(1) NOT NULL DEFAULT '0' COMMENT '是否虚拟合并:1是0否',
+                        `concat_manifest` text DEFAULT NULL COMMENT '虚拟合并清单',
+                        `content_sha256` char(64) DEFAULT NULL COMMENT '服务端计算的SHA-256',
+                        `shaping_key` char(64) DEFAULT NULL COMMENT '带宽整形的客户端摘要',
+                        `disk` tinyint(3) unsigned DEFAULT NULL COMMENT '所在存储盘序号，为空时在文件目录',
                         `created_at` timestamp NULL DEFAULT NULL,
                         `updated_at` timestamp NULL DEFAULT NULL,
-                        PRIMARY KEY (`id`)
+                        `is_completed` tinyint(1) GENERATED ALWAYS AS (`content_offset` = `content_length`) STORED COMMENT '是否上传完成:1是0否',
+                        PRIMARY KEY (`id`),
+                        KEY `idx_file_is_virtual` (`is_virtual`),
+                        KEY `idx_file_completed_created` (`is_completed`, `created_at`, `id`),
+                        KEY `idx_file_fingerprint` (`fingerprint`(64), `content_length`, `is_completed`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件'
\ No newline at end of file
@@ -0,0 +1,94 @@
+package priv.dino.tus.server;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import priv.dino.tus.server.core.util.UploadExpiredUtils;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.service.AdmissionController;
+import priv.dino.tus.server.manage.service.ContentHasher;
+import priv.dino.tus.server.manage.service.DedupService;
+import priv.dino.tus.server.manage.service.OffsetWriteBehindBuffer;
+import priv.dino.tus.server.manage.service.UploadService;
+import priv.dino.tus.server.manage.service.UploadStateCache;
+import priv.dino.tus.server.storage.FileChannelCache;
+import priv.dino.tus.server.storage.FileStorage;
+import priv.dino.tus.server.storage.FileSyncer;
+import priv.dino.tus.server.storage.FlatStorageLayout;
+import priv.dino.tus.server.storage.LocalStorageImpl;
+import priv.dino.tus.server.storage.StorageDisks;
+import priv.dino.tus.server.storage.StoragePaths;
+import priv.dino.tus.server.storage.TrashCollector;
+
+import java.nio.file.Path;
+
+/**
+ * 测试用的存储与上传服务装配，构造参数变化时只需修改这里
+ */
+public final class TusFixture {
+
+    private final TusServerProperties tusServerProperties;
+    private StorageDisks storageDisks;
+    private TrashCollector trashCollector;
+    private DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UploadMetrics uploadMetrics;
+
+    public TusFixture(TusServerProperties tusServerProperties) {
+        this.tusServerProperties = tusServerProperties;
+    }
+
+    /**
+     * 平铺布局的单块存储盘
+     */
+    public TusFixture directory(Path directory) {
+        return this.storageDisks(new StorageDisks(new StoragePaths(directory, new FlatStorageLayout())));
+    }
+
+    public TusFixture storageDisks(StorageDisks storageDisks) {
+        this.storageDisks = storageDisks;
+        return this;
+    }
+
+    public TusFixture trashCollector(TrashCollector trashCollector) {
+        this.trashCollector = trashCollector;
+        return this;
+    }
+
+    public TusFixture bufferFactory(DataBufferFactory bufferFactory) {
+        this.bufferFactory = bufferFactory;
+        return this;
+    }
+
+    public TusFixture meterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.uploadMetrics = null;
+        return this;
+    }
+
+    public UploadMetrics uploadMetrics() {
+        if (uploadMetrics == null) {
+            uploadMetrics = new UploadMetrics(meterRegistry);
+        }
+        return uploadMetrics;
+    }
+
+    public LocalStorageImpl localStorage() {
+        final TrashCollector trash = trashCollector != null
+                ? trashCollector
+                : new TrashCollector(storageDisks.getRoots(), tusServerProperties.getTrash());
+        return new LocalStorageImpl(storageDisks, new FileChannelCache(tusServerProperties.getChannelCache()), trash,
+                new FileSyncer(tusServerProperties.getDurability()), bufferFactory, tusServerProperties, this.uploadMetrics());
+    }
+
+    public UploadService uploadService(FileRepository fileRepository, FileStorage fileStorage) {
+        final OffsetWriteBehindBuffer offsetWriteBehindBuffer = new OffsetWriteBehindBuffer(fileRepository, fileStorage, tusServerProperties);
+        return new UploadService(fileRepository, fileStorage, new UploadExpiredUtils(tusServerProperties), tusServerProperties,
+                new UploadStateCache(fileRepository, offsetWriteBehindBuffer, tusServerProperties), offsetWriteBehindBuffer, this.uploadMetrics(),
+                new DedupService(fileRepository, fileStorage, tusServerProperties), new ContentHasher(fileStorage, tusServerProperties),
+                new AdmissionController(tusServerProperties, this.uploadMetrics()));
+    }
+}
@@ -0,0 +1,44 @@
+package priv.dino.tus.server.core.util;
+
+import org.junit.jupiter.api.Test;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.storage.FileSegment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConcatManifestUtilsTest {
+
+    private final List<File> partialUploads = ConcatManifestUtils.parse("1:10,2:5,3:20");
+
+    @Test
+    void formatRoundTrip() {
+        assertEquals("1:10,2:5,3:20", ConcatManifestUtils.format(partialUploads));
+    }
+
+    @Test
+    void sliceWholeUpload() {
+        List<FileSegment> segments = ConcatManifestUtils.slice(partialUploads, 0, 35);
+        assertEquals(3, segments.size());
+        assertEquals(new FileSegment(1L, 0, 10), segments.get(0));
+        assertEquals(new FileSegment(2L, 0, 5), segments.get(1));
+        assertEquals(new FileSegment(3L, 0, 20), segments.get(2));
+    }
+
+    @Test
+    void sliceAcrossPartBoundary() {
+        List<FileSegment> segments = ConcatManifestUtils.slice(partialUploads, 8, 10);
+        assertEquals(3, segments.size());
+        assertEquals(new FileSegment(1L, 8, 2), segments.get(0));
+        assertEquals(new FileSegment(2L, 0, 5), segments.get(1));
+        assertEquals(new FileSegment(3L, 0, 3), segments.get(2));
+    }
+
+    @Test
+    void sliceInsideOnePart() {
+        List<FileSegment> segments = ConcatManifestUtils.slice(partialUploads, 16, 4);
+        assertEquals(1, segments.size());
+        assertEquals(new FileSegment(3L, 1, 4), segments.get(0));
+    }
+}
@@ -0,0 +1,50 @@
+package priv.dino.tus.server.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Sha256Test {
+
+    @Test
+    void matchesKnownVectors() {
+        assertThat(DigestUtils.toHex(new Sha256().digest()))
+                .isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+        Sha256 sha256 = new Sha256();
+        byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+        sha256.update(abc, 0, abc.length);
+        assertThat(DigestUtils.toHex(sha256.digest()))
+                .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    void resumesFromExportedStateAcrossUnalignedChunks() throws Exception {
+        byte[] data = new byte[200_003];
+        new Random(7).nextBytes(data);
+        Sha256 sha256 = new Sha256();
+        int position = 0;
+        for (int size : new int[]{1, 63, 64, 65, 4095, 100_000}) {
+            sha256.update((ByteBuffer) ByteBuffer.allocateDirect(size).put(data, position, size).flip());
+            position += size;
+            sha256 = Sha256.importState(sha256.exportState());
+        }
+        sha256.update(data, position, data.length - position);
+
+        assertThat(sha256.length()).isEqualTo(data.length);
+        assertThat(sha256.digest()).isEqualTo(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+
+    @Test
+    void rejectsCorruptedState() {
+        byte[] state = new Sha256().exportState();
+        state[5] ^= 1;
+
+        assertThatThrownBy(() -> Sha256.importState(state)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,93 @@
+package priv.dino.tus.server.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class SnowflakeIdWorkerTest {
+
+    @Test
+    void noCollisionsUnder64Threads() throws InterruptedException {
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(3, 7);
+        int threads = 64;
+        int perThread = 20_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(worker.nextId());
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        assertThat(ids).hasSize(threads * perThread);
+    }
+
+    @Test
+    void bulkReservationIsContiguousAndUnique() {
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(1, 1);
+        long[] ids = worker.nextIds(10_000);
+        for (int i = 1; i < ids.length; i++) {
+            assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+        }
+        assertThat(worker.nextId()).isGreaterThan(ids[ids.length - 1]);
+    }
+
+    @Test
+    void clockMovingBackwardsKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(0, 0, 10) {
+            @Override
+            protected long timeGen() {
+                return clock.get();
+            }
+        };
+        long before = worker.nextId();
+        clock.addAndGet(-1000);
+        long after = worker.nextId();
+
+        assertThat(after).isGreaterThan(before);
+        assertThat(SnowflakeIdWorker.extractTimestamp(after)).isEqualTo(SnowflakeIdWorker.extractTimestamp(before));
+        assertThat(worker.getClockBackwards()).isEqualTo(1);
+    }
+
+    @Test
+    void exhaustedSequenceAfterLargeClockJumpDoesNotWait() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(0, 0, 10) {
+            @Override
+            protected long timeGen() {
+                return clock.get();
+            }
+        };
+        long before = worker.nextId();
+        clock.addAndGet(-TimeUnit.HOURS.toMillis(1));
+
+        long[] ids = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> worker.nextIds(10_000));
+
+        assertThat(ids[0]).isGreaterThan(before);
+        for (int i = 1; i < ids.length; i++) {
+            assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+        }
+    }
+}
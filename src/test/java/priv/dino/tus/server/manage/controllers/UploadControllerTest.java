@@ -7,7 +7,9 @@ import priv.dino.tus.server.core.util.UploadExpiredUtils;
 import priv.dino.tus.server.manage.controller.UploadController;
 import priv.dino.tus.server.manage.domain.File;
 import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
 import priv.dino.tus.server.manage.service.UploadService;
+import priv.dino.tus.server.manage.service.UploadStateCache;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
@@ -77,7 +79,7 @@ class UploadControllerTest {
                 .build();
 
         Mockito
-            .when(uploadService.createUpload(build))
+            .when(uploadService.createUpload(Mockito.eq(build), Mockito.anyMap()))
             .thenReturn(Mono.just(File.builder()
                 .id(1L)
                 .mimeType("plain/text")
@@ -116,7 +118,7 @@ class UploadControllerTest {
                 .lastUploadedChunkNumber(0L)
                 .build();
         Mockito
-            .when(uploadService.createUpload(metadata))
+            .when(uploadService.createUpload(Mockito.eq(metadata), Mockito.anyMap()))
             .thenReturn(Mono.error(new Exception()));
 
         webClient
@@ -150,7 +152,7 @@ class UploadControllerTest {
             .thenReturn(Mono.just(File.builder().contentOffset(3L).build()));
 
 
-        final UploadController uploadController = new UploadController(filesRepository, tusServerProperties, uploadService, uploadExpiredUtils);
+        final UploadController uploadController = new UploadController(filesRepository, tusServerProperties, uploadService, uploadExpiredUtils, new BandwidthShaper(tusServerProperties, Mockito.mock(UploadStateCache.class)));
         uploadController.uploadProcess(1L, request, 0, 3)
             .subscribe(v -> {
                 assertEquals(NO_CONTENT, v.getStatusCode());
@@ -162,7 +164,7 @@ class UploadControllerTest {
     @Test
     void header() {
         Mockito
-            .when(filesRepository.findById(1L))
+            .when(uploadService.findUpload(1L))
             .thenReturn(Mono.just(File.builder().id(1L)
                 .contentLength(100L)
                 .contentOffset(0L).build()));
@@ -181,7 +183,7 @@ class UploadControllerTest {
     @Test
     void header_notFound() {
         Mockito
-            .when(filesRepository.findById(1L))
+            .when(uploadService.findUpload(1L))
             .thenReturn(Mono.empty());
         webClient
             .head()
@@ -0,0 +1,111 @@
+package priv.dino.tus.server.manage.handler;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
+import priv.dino.tus.server.manage.service.UploadService;
+import priv.dino.tus.server.manage.service.UploadStateCache;
+import priv.dino.tus.server.storage.LocalStorageImpl;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.HEAD;
+
+class DownloadHandlerTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+
+    private WebTestClient webClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(fileDirectory.resolve("1"), "0123456789".getBytes(StandardCharsets.UTF_8));
+        Files.write(fileDirectory.resolve("2"), "abcde".getBytes(StandardCharsets.UTF_8));
+
+        TusServerProperties tusServerProperties = new TusServerProperties();
+        TusFixture fixture = new TusFixture(tusServerProperties)
+                .directory(fileDirectory)
+                .bufferFactory(new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT));
+        LocalStorageImpl fileStorage = fixture.localStorage();
+        UploadService uploadService = fixture.uploadService(fileRepository, fileStorage);
+        DownloadHandler downloadHandler = new DownloadHandler(fileRepository, uploadService, fileStorage, new BandwidthShaper(tusServerProperties, Mockito.mock(UploadStateCache.class)));
+        HeadHandler headHandler = new HeadHandler(uploadService);
+        webClient = WebTestClient.bindToRouterFunction(RouterFunctions.route(GET("/download/{uploadId}"), downloadHandler)
+                .andRoute(HEAD("/files/{uploadId}"), headHandler::handleRequest)).build();
+
+        Mockito.when(fileRepository.findById(1L)).thenReturn(Mono.just(file(1L, 10L).build()));
+        Mockito.when(fileRepository.findById(3L)).thenReturn(Mono.just(file(3L, 15L)
+                .virtualStatus(true)
+                .concatManifest("1:10,2:5")
+                .build()));
+    }
+
+    private static File.FileBuilder file(Long id, Long length) {
+        return File.builder().id(id).originalName("test.txt").contentLength(length).contentOffset(length);
+    }
+
+    @Test
+    void downloadWholeFile() {
+        webClient.get().uri("/download/1").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Accept-Ranges", "bytes")
+                .expectBody(String.class).isEqualTo("0123456789");
+    }
+
+    @Test
+    void downloadSingleRange() {
+        webClient.get().uri("/download/1").header("Range", "bytes=2-5").exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals("Content-Range", "bytes 2-5/10")
+                .expectBody(String.class).isEqualTo("2345");
+    }
+
+    @Test
+    void downloadVirtualRangeAcrossPartialUploads() {
+        webClient.get().uri("/download/3").header("Range", "bytes=8-11").exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals("Content-Range", "bytes 8-11/15")
+                .expectBody(String.class).isEqualTo("89ab");
+    }
+
+    @Test
+    void downloadVirtualWholeFile() {
+        webClient.get().uri("/download/3").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("0123456789abcde");
+    }
+
+    @Test
+    void headVirtualFinalReportsCompleteOffset() {
+        webClient.head().uri("/files/3").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Upload-Length", "15")
+                .expectHeader().valueEquals("Upload-Offset", "15");
+    }
+
+    @Test
+    void downloadVirtualRangeNotSatisfiable() {
+        webClient.get().uri("/download/3").header("Range", "bytes=20-30").exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals("Content-Range", "bytes */15");
+    }
+}
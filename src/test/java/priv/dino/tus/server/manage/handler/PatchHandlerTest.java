@@ -0,0 +1,53 @@
+package priv.dino.tus.server.manage.handler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import priv.dino.tus.server.core.util.UploadExpiredUtils;
+import priv.dino.tus.server.manage.service.BandwidthShaper;
+import priv.dino.tus.server.manage.service.UploadService;
+import priv.dino.tus.server.manage.service.UploadStateCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PATCH;
+import static priv.dino.tus.server.core.constant.TusConstant.CHECKSUM_MISMATCH_STATUS;
+import static priv.dino.tus.server.core.constant.TusConstant.CONTENT_TYPE;
+import static priv.dino.tus.server.core.constant.TusConstant.UPLOAD_CHECKSUM_HEADER;
+
+class PatchHandlerTest {
+
+    private final UploadService uploadService = Mockito.mock(UploadService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private WebTestClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        TusServerProperties tusServerProperties = new TusServerProperties();
+        tusServerProperties.setTusChecksumAlgorithms("sha1,md5");
+        PatchHandler patchHandler = new PatchHandler(uploadService, new UploadExpiredUtils(tusServerProperties), tusServerProperties,
+                new UploadMetrics(meterRegistry), new BandwidthShaper(tusServerProperties, Mockito.mock(UploadStateCache.class)));
+        webClient = WebTestClient.bindToRouterFunction(RouterFunctions.route(PATCH("/files/{uploadId}"), patchHandler::handleRequest)).build();
+    }
+
+    @Test
+    void unsupportedChecksumAlgorithmIsRejectedBeforeWriting() {
+        webClient.patch().uri("/files/1")
+                .header("Content-Type", CONTENT_TYPE)
+                .header("Upload-Offset", "0")
+                .header(UPLOAD_CHECKSUM_HEADER, "crc32 AAAAAA==")
+                .bodyValue(new byte[]{1, 2, 3})
+                .exchange()
+                .expectStatus().isEqualTo(CHECKSUM_MISMATCH_STATUS);
+
+        Mockito.verify(uploadService, Mockito.never()).uploadChunkAndGetUpdatedOffset(any(), any(), anyLong(), anyLong(), any());
+        assertThat(meterRegistry.get("tus.upload.rejections").tag("reason", "checksum").counter().count()).isEqualTo(1.0);
+    }
+}
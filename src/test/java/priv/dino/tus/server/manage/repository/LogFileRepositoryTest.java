@@ -0,0 +1,126 @@
+package priv.dino.tus.server.manage.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mapping.callback.ReactiveEntityCallbacks;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.entitycallback.FileCallback;
+import priv.dino.tus.server.core.util.SnowflakeIdWorker;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.storage.FlatStorageLayout;
+import priv.dino.tus.server.storage.StorageDisks;
+import priv.dino.tus.server.storage.StoragePaths;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogFileRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private LogFileRepository repository;
+    private final TusServerProperties.MetadataStore properties = new TusServerProperties.MetadataStore();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repository.destroy();
+    }
+
+    private LogFileRepository open() throws IOException {
+        FileCallback fileCallback = new FileCallback(new SnowflakeIdWorker(1, 1),
+                new StorageDisks(new StoragePaths(directory, new FlatStorageLayout())));
+        LogFileRepository opened = new LogFileRepository(directory.resolve(".metadata"),
+                properties, ReactiveEntityCallbacks.create(fileCallback));
+        opened.afterPropertiesSet();
+        return opened;
+    }
+
+    private LogFileRepository reopen() throws IOException {
+        repository.destroy();
+        return open();
+    }
+
+    private Long upload() {
+        return repository.save(File.builder().contentLength(100L).contentOffset(0L).fingerprint("fp").build())
+                .map(File::getId)
+                .block();
+    }
+
+    @Test
+    void recoversFromLogAndIgnoresTornTail() throws IOException {
+        repository = open();
+        Long kept = upload();
+        Long deleted = upload();
+        StepVerifier.create(repository.advanceOffset(kept, 0, 40)).expectNext(1).verifyComplete();
+        StepVerifier.create(repository.advanceOffset(kept, 0, 40)).expectNext(0).verifyComplete();
+        repository.deleteById(deleted).block();
+        repository.flush();
+        repository.destroy();
+        Files.write(directory.resolve(".metadata").resolve(LogFileRepository.LOG_PREFIX + 0), new byte[]{0, 0, 0, 64, 1, 2, 3},
+                StandardOpenOption.APPEND);
+
+        repository = open();
+
+        StepVerifier.create(repository.findById(kept).map(File::getContentOffset)).expectNext(40L).verifyComplete();
+        StepVerifier.create(repository.existsById(deleted)).expectNext(false).verifyComplete();
+        upload();
+        repository = reopen();
+        StepVerifier.create(repository.count()).expectNext(2L).verifyComplete();
+    }
+
+    @Test
+    void snapshotReplacesOlderLogs() throws IOException {
+        repository = open();
+        upload();
+        repository.snapshot();
+        Long completed = upload();
+        StepVerifier.create(repository.advanceOffset(completed, 0, 100)).expectNext(1).verifyComplete();
+
+        repository = reopen();
+
+        assertThat(directory.resolve(".metadata").resolve(LogFileRepository.SNAPSHOT)).exists();
+        assertThat(directory.resolve(".metadata").resolve(LogFileRepository.LOG_PREFIX + 0)).doesNotExist();
+        StepVerifier.create(repository.count()).expectNext(2L).verifyComplete();
+        StepVerifier.create(repository.findDedupSource("fp", 100L).map(File::getId)).expectNext(completed).verifyComplete();
+    }
+
+    @Test
+    void zeroIntervalsForceEveryWriteWithoutScheduling() throws IOException {
+        properties.setFlushInterval(0);
+        properties.setSnapshotInterval(0);
+        repository = open();
+        Long id = upload();
+        StepVerifier.create(repository.advanceOffset(id, 0, 40)).expectNext(1).verifyComplete();
+        repository.snapshot();
+        StepVerifier.create(repository.advanceOffset(id, 40, 10)).expectNext(1).verifyComplete();
+
+        repository = reopen();
+
+        StepVerifier.create(repository.findById(id).map(File::getContentOffset)).expectNext(50L).verifyComplete();
+    }
+
+    @Test
+    void appendsRunOnTheLogThreadAndSurviveCancellation() throws IOException {
+        properties.setFlushInterval(0);
+        repository = open();
+        Long id = upload();
+
+        StepVerifier.create(repository.advanceOffset(id, 0, 40).map(updated -> Thread.currentThread().getName()))
+                .assertNext(thread -> assertThat(thread).startsWith("tus-metadata-log-"))
+                .verifyComplete();
+        // 取消不中断追加线程，共用的日志文件保持打开
+        repository.advanceOffset(id, 40, 10).subscribe().dispose();
+        StepVerifier.create(repository.updateContentSha256(id, "sha")).expectNext(1).verifyComplete();
+
+        repository = reopen();
+
+        StepVerifier.create(repository.findById(id).map(File::getContentSha256)).expectNext("sha").verifyComplete();
+    }
+}
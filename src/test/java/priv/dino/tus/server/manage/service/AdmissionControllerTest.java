@@ -0,0 +1,83 @@
+package priv.dino.tus.server.manage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.error.OverloadException;
+import priv.dino.tus.server.core.metrics.UploadMetrics;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private final UploadMetrics uploadMetrics = new UploadMetrics(meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        tusServerProperties.getAdmission().setEnabled(true);
+        tusServerProperties.getAdmission().setMinLimit(1);
+    }
+
+    private AdmissionController start() {
+        AdmissionController admissionController = new AdmissionController(tusServerProperties, uploadMetrics);
+        admissionController.bindTo(meterRegistry);
+        return admissionController;
+    }
+
+    @Test
+    void rejectsAboveLimitWithRetryAfter() {
+        tusServerProperties.getAdmission().setInitialLimit(1);
+        tusServerProperties.getAdmission().setWindow(60000);
+        AdmissionController admissionController = start();
+
+        Disposable first = admissionController.admit(Mono.never()).subscribe();
+        StepVerifier.create(admissionController.admit(Mono.just(1)))
+                .verifyErrorSatisfies(e -> {
+                    assertThat(((OverloadException) e).getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(((OverloadException) e).getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+                });
+        first.dispose();
+        StepVerifier.create(admissionController.admit(Mono.just(1))).expectNext(1).verifyComplete();
+
+        assertThat(meterRegistry.get("tus.admission.rejections").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("tus.admission.inflight").gauge().value()).isZero();
+    }
+
+    @Test
+    void limitShrinksWhenWriteLatencyRises() {
+        tusServerProperties.getAdmission().setInitialLimit(10);
+        tusServerProperties.getAdmission().setWindow(0);
+        AdmissionController admissionController = start();
+        List<Disposable> patches = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            patches.add(admissionController.admit(Mono.never()).subscribe());
+        }
+
+        for (int i = 0; i < 5; i++) {
+            uploadMetrics.write(TimeUnit.MILLISECONDS.toNanos(1));
+            admissionController.update();
+        }
+        final int grown = admissionController.getLimit();
+        for (int i = 0; i < 20; i++) {
+            uploadMetrics.write(TimeUnit.MILLISECONDS.toNanos(20));
+            admissionController.update();
+        }
+
+        assertThat(grown).isGreaterThan(10);
+        assertThat(admissionController.getLimit()).isLessThan(10);
+        assertThat(meterRegistry.get("tus.admission.queue").gauge().value()).isPositive();
+        patches.forEach(Disposable::dispose);
+    }
+}
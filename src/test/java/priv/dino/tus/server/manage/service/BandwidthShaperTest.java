@@ -0,0 +1,115 @@
+package priv.dino.tus.server.manage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BandwidthShaperTest {
+
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UploadStateCache uploadStateCache = Mockito.mock(UploadStateCache.class);
+
+    private BandwidthShaper start() {
+        tusServerProperties.getShaping().setEnabled(true);
+        BandwidthShaper bandwidthShaper = new BandwidthShaper(tusServerProperties, uploadStateCache);
+        bandwidthShaper.bindTo(meterRegistry);
+        return bandwidthShaper;
+    }
+
+    private static Flux<DataBuffer> body(int buffers, List<Long> requested) {
+        return Flux.range(0, buffers)
+                .<DataBuffer>map(i -> DefaultDataBufferFactory.sharedInstance.wrap(new byte[10000]))
+                .doOnRequest(requested::add);
+    }
+
+    @Test
+    void throttlesPerClientThroughDemand() {
+        tusServerProperties.getShaping().setKey(TusServerProperties.Shaping.Key.HEADER);
+        tusServerProperties.getShaping().setKeyName("X-Tenant");
+        tusServerProperties.getShaping().setUploadRate(100000);
+        tusServerProperties.getShaping().setUploadBurst(10000);
+        BandwidthShaper bandwidthShaper = start();
+        MockServerHttpRequest tenantA = MockServerHttpRequest.patch("/").header("X-Tenant", "a").build();
+        MockServerHttpRequest tenantB = MockServerHttpRequest.patch("/").header("X-Tenant", "b").build();
+        List<Long> requested = new ArrayList<>();
+
+        final long started = System.nanoTime();
+        StepVerifier.create(bandwidthShaper.shapeUpload(tenantA, 1L, body(4, requested))).expectNextCount(4).verifyComplete();
+        final Duration throttled = Duration.ofNanos(System.nanoTime() - started);
+        StepVerifier.create(bandwidthShaper.shapeUpload(tenantB, 2L, body(1, new ArrayList<>())))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofMillis(50));
+
+        // 30000 bytes over the burst at 100000 bytes/s
+        assertThat(throttled).isGreaterThanOrEqualTo(Duration.ofMillis(250));
+        assertThat(requested).allMatch(n -> n == 1);
+        // 请求头的值只以摘要保存
+        assertThat(bandwidthShaper.key(tenantA)).isEqualTo("h:ca978112ca1bbdcafac231b39a23dc4da786eff8147c4e72b9807785afee48bb");
+        assertThat(bandwidthShaper.key(MockServerHttpRequest.patch("/").build())).startsWith("ip:");
+        assertThat(meterRegistry.get("tus.shaping.delay").tag("direction", "upload").counter().count()).isPositive();
+        assertThat(meterRegistry.get("tus.shaping.clients").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void globalCapIsSharedAcrossClients() {
+        tusServerProperties.getShaping().setGlobalRate(100000);
+        tusServerProperties.getShaping().setGlobalBurst(10000);
+        BandwidthShaper bandwidthShaper = start();
+        AtomicLong bytes = new AtomicLong();
+
+        final long started = System.nanoTime();
+        Flux.merge(
+                bandwidthShaper.shapeDownload(MockServerHttpRequest.get("/").remoteAddress(new InetSocketAddress("10.0.0.1", 1)).build(), File.builder().build(), body(2, new ArrayList<>())),
+                bandwidthShaper.shapeDownload(MockServerHttpRequest.get("/").remoteAddress(new InetSocketAddress("10.0.0.2", 1)).build(), File.builder().build(), body(2, new ArrayList<>())))
+                .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                .blockLast();
+
+        assertThat(bytes.get()).isEqualTo(40000);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isGreaterThanOrEqualTo(Duration.ofMillis(250));
+        assertThat(bandwidthShaper.isUploadShaped()).isTrue();
+    }
+
+    @Test
+    void metadataKeyIsResolvedFromTheUploadRecord() {
+        tusServerProperties.getShaping().setKey(TusServerProperties.Shaping.Key.METADATA);
+        tusServerProperties.getShaping().setKeyName("tenant");
+        tusServerProperties.getShaping().setUploadRate(100000);
+        tusServerProperties.getShaping().setUploadBurst(10000);
+        BandwidthShaper bandwidthShaper = start();
+        String shapingKey = bandwidthShaper.creationKey(MockServerHttpRequest.post("/")
+                .header("Upload-Metadata", "filename ZS50eHQ=,tenant YQ==").build());
+        Mockito.when(uploadStateCache.get(1L)).thenReturn(Mono.just(File.builder().id(1L).shapingKey(shapingKey).build()));
+        Mockito.when(uploadStateCache.get(2L)).thenReturn(Mono.just(File.builder().id(2L).shapingKey(shapingKey).build()));
+
+        // PATCH 不带 Upload-Metadata，两个上传来自不同地址但属于同一客户端
+        StepVerifier.create(bandwidthShaper.shapeUpload(MockServerHttpRequest.patch("/").remoteAddress(new InetSocketAddress("10.0.0.1", 1)).build(),
+                        1L, body(1, new ArrayList<>())))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(bandwidthShaper.shapeUpload(MockServerHttpRequest.patch("/").remoteAddress(new InetSocketAddress("10.0.0.2", 1)).build(),
+                        2L, body(1, new ArrayList<>())))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(shapingKey).hasSize(64);
+        assertThat(meterRegistry.get("tus.shaping.clients").gauge().value()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,81 @@
+package priv.dino.tus.server.manage.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.LocalStorageImpl;
+import priv.dino.tus.server.storage.TrashCollector;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+
+class ConcatCompactionServiceTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private TrashCollector trashCollector;
+    private LocalStorageImpl fileStorage;
+    private ConcatCompactionService compactionService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        trashCollector = new TrashCollector(fileDirectory, tusServerProperties.getTrash());
+        trashCollector.afterPropertiesSet();
+        TusFixture fixture = new TusFixture(tusServerProperties).directory(fileDirectory).trashCollector(trashCollector);
+        fileStorage = fixture.localStorage();
+        OffsetWriteBehindBuffer offsetWriteBehindBuffer = new OffsetWriteBehindBuffer(fileRepository, fileStorage, tusServerProperties);
+        compactionService = new ConcatCompactionService(fileRepository, fileStorage,
+                new UploadStateCache(fileRepository, offsetWriteBehindBuffer, tusServerProperties),
+                fixture.uploadService(fileRepository, fileStorage));
+        Files.write(fileDirectory.resolve("1"), "0123456789".getBytes(StandardCharsets.UTF_8));
+        Files.write(fileDirectory.resolve("2"), "abcde".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        trashCollector.destroy();
+    }
+
+    @Test
+    void compactionCopiesSegmentsAndDiscardsTerminatedPartials() throws IOException {
+        File virtualFinal = File.builder().id(3L).contentLength(15L).contentOffset(15L)
+                .virtualStatus(true).concatManifest("1:10,2:5").build();
+        Mockito.when(fileRepository.save(any(File.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        Mockito.when(fileRepository.findAllByVirtualStatusIsTrue()).thenReturn(Flux.empty());
+        // 分片 2 在压实前已被终止，只剩文件
+        Mockito.when(fileRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Flux.just(File.builder().id(1L).build()));
+
+        StepVerifier.create(compactionService.compact(virtualFinal))
+                .assertNext(compacted -> {
+                    assertThat(compacted.isVirtualStatus()).isFalse();
+                    assertThat(compacted.getConcatManifest()).isNull();
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<File> saved = ArgumentCaptor.forClass(File.class);
+        Mockito.verify(fileRepository).save(saved.capture());
+        assertThat(saved.getValue().isVirtualStatus()).isFalse();
+        assertThat(new String(Files.readAllBytes(fileStorage.getPath(3L)), StandardCharsets.UTF_8)).isEqualTo("0123456789abcde");
+        assertThat(fileDirectory.resolve("1")).exists();
+        assertThat(fileDirectory.resolve("2")).doesNotExist();
+    }
+}
@@ -0,0 +1,92 @@
+package priv.dino.tus.server.manage.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+class OffsetReconcilerTest {
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+    private final FileStorage fileStorage = Mockito.mock(FileStorage.class);
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private final AtomicInteger reading = new AtomicInteger();
+    private final AtomicInteger maxReading = new AtomicInteger();
+    private OffsetWriteBehindBuffer offsetWriteBehindBuffer;
+    private UploadStateCache uploadStateCache;
+    private OffsetReconciler offsetReconciler;
+
+    @BeforeEach
+    void setUp() {
+        tusServerProperties.setDuration(1L);
+        tusServerProperties.getOffsetPersistence().setMode(TusServerProperties.OffsetPersistence.Mode.FILESYSTEM);
+        tusServerProperties.getOffsetPersistence().setBatchSize(10);
+        tusServerProperties.getOffsetPersistence().setReconcileParallelism(4);
+        offsetWriteBehindBuffer = new OffsetWriteBehindBuffer(fileRepository, fileStorage, tusServerProperties);
+        uploadStateCache = new UploadStateCache(fileRepository, offsetWriteBehindBuffer, tusServerProperties);
+        offsetReconciler = new OffsetReconciler(fileRepository, fileStorage, uploadStateCache, offsetWriteBehindBuffer, tusServerProperties);
+    }
+
+    private static File file(Long id, long offset) {
+        return File.builder().id(id).contentLength(100L).contentOffset(offset).lastUploadedChunkNumber(offset / 10)
+                .createdAt(LocalDateTime.now()).build();
+    }
+
+    /**
+     * 偏移量记录读取得较慢，记录同时进行的读取数
+     */
+    private Mono<File> record(File file) {
+        return Mono.delay(Duration.ofMillis(100))
+                .thenReturn(file)
+                .doOnSubscribe(subscription -> maxReading.accumulateAndGet(reading.incrementAndGet(), Math::max))
+                .doFinally(signalType -> reading.decrementAndGet());
+    }
+
+    @Test
+    void repairsAheadRecordsInParallelAndSkipsCachedUploads() {
+        final File behind = file(1L, 10);
+        final File current = file(2L, 20);
+        final File cached = file(3L, 30);
+        uploadStateCache.put(cached);
+        Mockito.when(fileRepository.findExpiredAfter(any(), any(), anyLong(), eq(10))).thenReturn(Flux.just(behind, current, cached));
+        Mockito.when(fileStorage.readOffset(1L)).thenReturn(this.record(file(1L, 40)));
+        Mockito.when(fileStorage.readOffset(2L)).thenReturn(this.record(file(2L, 20)));
+
+        assertThat(offsetReconciler.reconcile()).isEqualTo(1);
+
+        assertThat(maxReading.get()).isEqualTo(2);
+        assertThat(offsetWriteBehindBuffer.size()).isEqualTo(1);
+        StepVerifier.create(offsetWriteBehindBuffer.reconcile(behind).map(File::getContentOffset)).expectNext(40L).verifyComplete();
+        Mockito.verify(fileStorage, Mockito.never()).readOffset(3L);
+    }
+
+    @Test
+    void uploadWithoutRecordIsBootstrappedFromFileSize() {
+        final File legacy = file(1L, 0);
+        Mockito.when(fileRepository.findExpiredAfter(any(), any(), anyLong(), eq(10))).thenReturn(Flux.just(legacy));
+        Mockito.when(fileStorage.readOffset(1L)).thenReturn(Mono.empty());
+        Mockito.when(fileStorage.size(1L)).thenReturn(Mono.just(30L));
+        Mockito.when(fileStorage.writeOffset(any())).thenReturn(Mono.empty());
+
+        assertThat(offsetReconciler.reconcile()).isEqualTo(1);
+
+        StepVerifier.create(offsetWriteBehindBuffer.reconcile(legacy).map(File::getContentOffset)).expectNext(30L).verifyComplete();
+        Mockito.verify(fileStorage).writeOffset(argThat(file -> file.getId() == 1L && file.getContentOffset() == 30L));
+    }
+}
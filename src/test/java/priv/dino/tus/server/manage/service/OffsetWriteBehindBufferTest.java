@@ -0,0 +1,110 @@
+package priv.dino.tus.server.manage.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+class OffsetWriteBehindBufferTest {
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+    private final FileStorage fileStorage = Mockito.mock(FileStorage.class);
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private OffsetWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        tusServerProperties.getOffsetPersistence().setMode(TusServerProperties.OffsetPersistence.Mode.WRITE_BEHIND);
+        buffer = new OffsetWriteBehindBuffer(fileRepository, fileStorage, tusServerProperties);
+    }
+
+    private static File file(Long id, long offset) {
+        return File.builder().id(id).contentLength(100L).contentOffset(offset).lastUploadedChunkNumber(offset / 10).build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescesUpdatesIntoOneBatch() {
+        tusServerProperties.getOffsetPersistence().setMaxStaleness(0);
+        Mockito.when(fileRepository.updateOffsets(anyCollection())).thenReturn(Mono.just(2));
+
+        buffer.enqueue(file(1L, 10));
+        buffer.enqueue(file(1L, 20));
+        buffer.enqueue(file(2L, 30));
+
+        StepVerifier.create(buffer.flush(false)).expectNext(2).verifyComplete();
+        ArgumentCaptor<Collection<File>> captor = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(fileRepository).updateOffsets(captor.capture());
+        assertThat(captor.getValue()).extracting(File::getContentOffset).containsExactlyInAnyOrder(20L, 30L);
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void scheduledFlushReturnsAtOnceAndSkipsWhileRunning() {
+        tusServerProperties.getOffsetPersistence().setMaxStaleness(0);
+        final Sinks.One<Integer> updating = Sinks.one();
+        Mockito.when(fileRepository.updateOffsets(anyCollection())).thenReturn(updating.asMono());
+        buffer.enqueue(file(1L, 10));
+
+        buffer.flushStale();
+        Mockito.verify(fileRepository, Mockito.timeout(1000)).updateOffsets(anyCollection());
+        buffer.flushStale();
+        assertThat(buffer.size()).isEqualTo(1);
+
+        updating.tryEmitValue(1);
+        assertThat(buffer.size()).isZero();
+        Mockito.verify(fileRepository, Mockito.times(1)).updateOffsets(anyCollection());
+    }
+
+    @Test
+    void keepsFreshAndFailedEntries() {
+        buffer.enqueue(file(1L, 10));
+        StepVerifier.create(buffer.flush(false)).expectNext(0).verifyComplete();
+        Mockito.verify(fileRepository, Mockito.never()).updateOffsets(anyCollection());
+
+        Mockito.when(fileRepository.updateOffsets(anyCollection())).thenReturn(Mono.error(new IllegalStateException("down")));
+        StepVerifier.create(buffer.flush(true)).verifyError(IllegalStateException.class);
+        assertThat(buffer.size()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcilesWithPendingOffsetAndFileSize() {
+        buffer.enqueue(file(1L, 40));
+        StepVerifier.create(buffer.reconcile(file(1L, 10)))
+                .assertNext(f -> assertThat(f.getContentOffset()).isEqualTo(40L))
+                .verifyComplete();
+
+        Mockito.when(fileStorage.size(2L)).thenReturn(Mono.just(70L));
+        StepVerifier.create(buffer.reconcile(file(2L, 50)))
+                .assertNext(f -> assertThat(f.getContentOffset()).isEqualTo(70L))
+                .verifyComplete();
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+
+    @Test
+    void reconcilesWithOffsetRecordInFilesystemMode() {
+        tusServerProperties.getOffsetPersistence().setMode(TusServerProperties.OffsetPersistence.Mode.FILESYSTEM);
+        buffer.enqueue(file(1L, 60));
+        buffer.restore(file(1L, 40));
+        Mockito.when(fileStorage.readOffset(2L)).thenReturn(Mono.just(file(2L, 70)));
+        Mockito.when(fileStorage.readOffset(3L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(buffer.reconcile(file(1L, 10)).map(File::getContentOffset)).expectNext(60L).verifyComplete();
+        StepVerifier.create(buffer.reconcile(file(2L, 50)).map(File::getContentOffset)).expectNext(70L).verifyComplete();
+        StepVerifier.create(buffer.reconcile(file(3L, 50)).map(File::getContentOffset)).expectNext(50L).verifyComplete();
+        Mockito.verify(fileStorage, Mockito.never()).size(Mockito.anyLong());
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,78 @@
+package priv.dino.tus.server.manage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+class UploadReaperServiceTest {
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+    private final FileStorage fileStorage = Mockito.mock(FileStorage.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UploadReaperService reaper;
+
+    @BeforeEach
+    void setUp() {
+        TusServerProperties tusServerProperties = new TusServerProperties();
+        tusServerProperties.setDuration(1L);
+        tusServerProperties.getReaper().setBatchSize(2);
+        OffsetWriteBehindBuffer offsetWriteBehindBuffer = new OffsetWriteBehindBuffer(fileRepository, fileStorage, tusServerProperties);
+        reaper = new UploadReaperService(fileRepository, fileStorage,
+                new UploadStateCache(fileRepository, offsetWriteBehindBuffer, tusServerProperties), offsetWriteBehindBuffer, tusServerProperties);
+        reaper.bindTo(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reaper.destroy();
+    }
+
+    private static File expired(Long id, LocalDateTime createdAt) {
+        return File.builder().id(id).contentLength(100L).contentOffset(10L).createdAt(createdAt).build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reapsPagesWithKeysetCursorFilesBeforeRows() {
+        LocalDateTime t1 = LocalDateTime.now().minusDays(3);
+        LocalDateTime t2 = t1.plusMinutes(1);
+        Mockito.when(fileRepository.findExpiredAfter(any(), any(), anyLong(), anyInt())).thenReturn(Flux.empty());
+        Mockito.when(fileRepository.findExpiredAfter(any(), eq(LocalDateTime.of(1970, 1, 1, 0, 0)), eq(0L), eq(2)))
+                .thenReturn(Flux.just(expired(1L, t1), expired(2L, t1)));
+        Mockito.when(fileRepository.findExpiredAfter(any(), eq(t1), eq(2L), eq(2)))
+                .thenReturn(Flux.just(expired(3L, t2)));
+        Mockito.when(fileStorage.delete(anyLong())).thenReturn(Mono.just(10L));
+        Mockito.when(fileRepository.deleteAllById(any(Iterable.class))).thenReturn(Mono.empty());
+        Mockito.when(fileStorage.prune(any())).thenReturn(Mono.empty());
+
+        reaper.reap();
+
+        InOrder inOrder = Mockito.inOrder(fileStorage, fileRepository);
+        inOrder.verify(fileStorage, Mockito.times(2)).delete(anyLong());
+        inOrder.verify(fileRepository).deleteAllById(Arrays.asList(1L, 2L));
+        inOrder.verify(fileStorage).delete(3L);
+        inOrder.verify(fileRepository).deleteAllById(Arrays.asList(3L));
+        inOrder.verify(fileStorage).prune(any());
+        assertThat(meterRegistry.get("tus.reaper.reclaimed").functionCounter().count()).isEqualTo(30);
+        assertThat(meterRegistry.get("tus.reaper.uploads").functionCounter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("tus.reaper.lag").gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,280 @@
+package priv.dino.tus.server.manage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.util.DigestUtils;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuples;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static priv.dino.tus.server.core.constant.TusConstant.CHECKSUM_MISMATCH_STATUS;
+
+class UploadServiceTest {
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+    private final FileStorage fileStorage = Mockito.mock(FileStorage.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private UploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        tusServerProperties.setDuration(1L);
+        uploadService = new TusFixture(tusServerProperties).meterRegistry(meterRegistry).uploadService(fileRepository, fileStorage);
+
+        Mockito.when(fileRepository.findUploadStateById(1L)).thenReturn(Mono.just(File.builder()
+                .id(1L).contentLength(100L).contentOffset(10L).lastUploadedChunkNumber(1L)
+                .createdAt(LocalDateTime.now())
+                .build()));
+    }
+
+    @Test
+    void advancesOffsetWithOneStatement() {
+        Mockito.when(fileStorage.writeChunk(eq(1L), any(), eq(10L))).thenReturn(Mono.just(5));
+        Mockito.when(fileRepository.advanceOffset(1L, 10L, 5L)).thenReturn(Mono.just(1));
+
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, Flux.empty(), 10L, 5L))
+                .assertNext(f -> {
+                    assertThat(f.getContentOffset()).isEqualTo(15L);
+                    assertThat(f.getLastUploadedChunkNumber()).isEqualTo(2L);
+                })
+                .verifyComplete();
+        Mockito.verify(fileRepository, Mockito.never()).save(any(File.class));
+    }
+
+    @Test
+    void lostRaceIsConflict() {
+        Mockito.when(fileStorage.writeChunk(eq(1L), any(), eq(10L))).thenReturn(Mono.just(5));
+        Mockito.when(fileRepository.advanceOffset(1L, 10L, 5L)).thenReturn(Mono.just(0));
+
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, Flux.empty(), 10L, 5L))
+                .verifyErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatus()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(meterRegistry.get("tus.upload.rejections").tag("reason", "offset_mismatch").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("tus.upload.patch.duration").tag("phase", "database").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("tus.upload.patch.active").gauge().value()).isZero();
+    }
+
+    @Test
+    void concurrentPatchIsConflict() {
+        Sinks.One<Integer> firstWrite = Sinks.one();
+        Mockito.when(fileStorage.writeChunk(eq(1L), any(), anyLong())).thenReturn(firstWrite.asMono());
+        Mockito.when(fileRepository.advanceOffset(1L, 10L, 5L)).thenReturn(Mono.just(1));
+
+        Flux<DataBuffer> parts = Flux.empty();
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, parts, 10L, 5L))
+                .then(() -> StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, parts, 10L, 5L))
+                        .verifyErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatus()).isEqualTo(HttpStatus.CONFLICT)))
+                .then(() -> firstWrite.tryEmitValue(5))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    /**
+     * 写入时消费数据块，摘要在消费的同时计算
+     */
+    @SuppressWarnings("unchecked")
+    private void consumeChunk() {
+        Mockito.when(fileStorage.writeChunk(eq(1L), any(), eq(10L))).thenAnswer(invocation -> ((Flux<DataBuffer>) invocation.getArgument(1))
+                .map(DataBuffer::readableByteCount)
+                .reduce(0, Integer::sum));
+    }
+
+    private static Flux<DataBuffer> chunk(byte[] content) {
+        return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(content));
+    }
+
+    @Test
+    void matchingChecksumAdvancesOffset() throws Exception {
+        final byte[] content = "hello".getBytes(StandardCharsets.US_ASCII);
+        final String checksum = DigestUtils.encodeChecksum("sha1", MessageDigest.getInstance("SHA-1").digest(content));
+        this.consumeChunk();
+        Mockito.when(fileRepository.advanceOffset(1L, 10L, 5L)).thenReturn(Mono.just(1));
+
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, chunk(content), 10L, 5L, Optional.of(Tuples.of("sha1", checksum))))
+                .assertNext(f -> assertThat(f.getContentOffset()).isEqualTo(15L))
+                .verifyComplete();
+        Mockito.verify(fileStorage, Mockito.never()).truncate(anyLong(), anyLong());
+    }
+
+    @Test
+    void checksumMismatchTruncatesTheChunkAndReturns460() throws Exception {
+        final byte[] content = "hello".getBytes(StandardCharsets.US_ASCII);
+        final String checksum = DigestUtils.encodeChecksum("sha1", MessageDigest.getInstance("SHA-1").digest("other".getBytes(StandardCharsets.US_ASCII)));
+        this.consumeChunk();
+        Mockito.when(fileStorage.truncate(1L, 10L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, chunk(content), 10L, 5L, Optional.of(Tuples.of("sha1", checksum))))
+                .verifyErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getRawStatusCode()).isEqualTo(CHECKSUM_MISMATCH_STATUS));
+        Mockito.verify(fileStorage).truncate(1L, 10L);
+        Mockito.verify(fileRepository, Mockito.never()).advanceOffset(anyLong(), anyLong(), anyLong());
+        assertThat(meterRegistry.get("tus.upload.rejections").tag("reason", "checksum").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void terminationCancelsPatchAndKeepsReferencedPartials() {
+        Mockito.when(fileStorage.writeChunk(eq(1L), any(), anyLong())).thenReturn(Mono.never());
+        Mockito.when(fileRepository.deleteAllById(any(Iterable.class))).thenReturn(Mono.empty());
+        Mockito.when(fileRepository.findAllById(any(Iterable.class))).thenReturn(Flux.empty());
+        Mockito.when(fileRepository.findAllByVirtualStatusIsTrue()).thenReturn(Flux.just(File.builder()
+                .id(9L).virtualStatus(true).concatManifest("2:10,3:10").build()));
+        Mockito.when(fileStorage.discard(anyLong())).thenReturn(Mono.empty());
+
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L, Flux.empty(), 10L, 5L))
+                .then(() -> StepVerifier.create(uploadService.terminateUploads(Arrays.asList(1L, 2L))).verifyComplete())
+                .verifyErrorSatisfies(e -> assertThat(((ResponseStatusException) e).getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+
+        Mockito.verify(fileRepository).deleteAllById(Arrays.asList(1L, 2L));
+        Mockito.verify(fileStorage).discard(1L);
+        Mockito.verify(fileStorage, Mockito.never()).discard(2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void terminatingVirtualFinalDiscardsItsTerminatedPartials() {
+        Mockito.when(fileRepository.findAllById(Collections.singletonList(9L))).thenReturn(Flux.just(File.builder()
+                .id(9L).virtualStatus(true).concatManifest("2:10,3:10").build()));
+        Mockito.when(fileRepository.findAllById(Arrays.asList(2L, 3L))).thenReturn(Flux.just(File.builder().id(3L).build()));
+        Mockito.when(fileRepository.deleteAllById(any(Iterable.class))).thenReturn(Mono.empty());
+        // 终止前虚拟合并文件自己仍在记录中，它的清单不再算作引用
+        Mockito.when(fileRepository.findAllByVirtualStatusIsTrue()).thenReturn(Flux.just(File.builder()
+                .id(9L).virtualStatus(true).concatManifest("2:10,3:10").build()));
+        Mockito.when(fileStorage.discard(anyLong())).thenReturn(Mono.empty());
+
+        StepVerifier.create(uploadService.terminateUploads(Collections.singletonList(9L))).verifyComplete();
+
+        final InOrder inOrder = Mockito.inOrder(fileStorage, fileRepository);
+        inOrder.verify(fileStorage).discard(9L);
+        inOrder.verify(fileRepository).deleteAllById(Collections.singletonList(9L));
+        Mockito.verify(fileStorage).discard(2L);
+        Mockito.verify(fileStorage, Mockito.never()).discard(3L);
+    }
+
+    @Test
+    void completionStoresWholeFileDigestResumedFromStoredBytes() throws Exception {
+        tusServerProperties.getHash().setEnabled(true);
+        byte[] content = new byte[100];
+        new Random(1).nextBytes(content);
+        DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+        Mockito.when(fileStorage.readState(1L)).thenReturn(Mono.empty());
+        Mockito.when(fileStorage.readChunk(1L, 0L, 10L)).thenReturn(Flux.just(bufferFactory.wrap(Arrays.copyOfRange(content, 0, 10))));
+        Mockito.when(fileStorage.writeChunk(eq(1L), any(), eq(10L))).thenAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(1)
+                .map(DataBuffer::readableByteCount)
+                .reduce(0, Integer::sum));
+        Mockito.when(fileStorage.writeState(eq(1L), any())).thenReturn(Mono.empty());
+        Mockito.when(fileStorage.deleteState(1L)).thenReturn(Mono.empty());
+        Mockito.when(fileStorage.release(1L)).thenReturn(Mono.empty());
+        Mockito.when(fileRepository.advanceOffset(1L, 10L, 90L)).thenReturn(Mono.just(1));
+        Mockito.when(fileRepository.updateContentSha256(eq(1L), any())).thenReturn(Mono.just(1));
+        String expected = DigestUtils.toHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        StepVerifier.create(uploadService.uploadChunkAndGetUpdatedOffset(1L,
+                        Flux.just(bufferFactory.wrap(Arrays.copyOfRange(content, 10, 50)), bufferFactory.wrap(Arrays.copyOfRange(content, 50, 100))), 10L, 90L))
+                .assertNext(f -> assertThat(f.getContentSha256()).isEqualTo(expected))
+                .verifyComplete();
+        Mockito.verify(fileRepository).updateContentSha256(1L, expected);
+        Mockito.verify(fileStorage).deleteState(1L);
+    }
+
+    @Test
+    void matchingFingerprintCreatesCompletedUploadSharingBytes() {
+        tusServerProperties.getDedup().setEnabled(true);
+        Mockito.when(fileRepository.findDedupSource("fp", 100L)).thenReturn(Mono.just(File.builder().id(5L).contentLength(100L).build()));
+        Mockito.when(fileRepository.save(any(File.class))).thenAnswer(invocation -> Mono.just(invocation.<File>getArgument(0).withId(6L)));
+        Mockito.when(fileStorage.link(5L, 6L)).thenReturn(Mono.empty());
+        File file = File.builder().contentLength(100L).contentOffset(0L).fingerprint("fp").build();
+
+        StepVerifier.create(uploadService.createUpload(file, Collections.singletonMap(DedupService.FINGERPRINT, "fp")))
+                .assertNext(f -> assertThat(f.getContentOffset()).isEqualTo(100L))
+                .verifyComplete();
+        StepVerifier.create(uploadService.createUpload(file, Collections.singletonMap(DedupService.FINGERPRINT, "fp")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Mockito.verify(fileRepository, Mockito.times(1)).findDedupSource("fp", 100L);
+        Mockito.verify(fileStorage, Mockito.never()).createFile(any());
+    }
+
+    @Test
+    void missingSourceFallsBackToNormalUpload() {
+        tusServerProperties.getDedup().setEnabled(true);
+        Mockito.when(fileRepository.findDedupSource("fp", 100L)).thenReturn(Mono.just(File.builder().id(5L).contentLength(100L).build()));
+        Mockito.when(fileRepository.save(any(File.class))).thenAnswer(invocation -> Mono.just(invocation.<File>getArgument(0).withId(6L)));
+        Mockito.when(fileRepository.deleteById(6L)).thenReturn(Mono.empty());
+        Mockito.when(fileStorage.link(5L, 6L)).thenReturn(Mono.error(new IllegalStateException("gone")));
+        Mockito.when(fileStorage.place(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(fileStorage.createFile(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        File file = File.builder().contentLength(100L).contentOffset(0L).fingerprint("fp").build();
+
+        StepVerifier.create(uploadService.createUpload(file, Collections.singletonMap(DedupService.FINGERPRINT, "fp")))
+                .assertNext(f -> assertThat(f.getContentOffset()).isZero())
+                .verifyComplete();
+        Mockito.verify(fileRepository).deleteById(6L);
+    }
+
+    @Test
+    void sourceWithoutDigestIsNotHashedOnCreation() {
+        tusServerProperties.getDedup().setEnabled(true);
+        tusServerProperties.getDedup().setVerify(true);
+        Mockito.when(fileRepository.findDedupSource("fp", 100L)).thenReturn(Mono.just(File.builder().id(5L).contentLength(100L).build()));
+        Mockito.when(fileRepository.save(any(File.class))).thenAnswer(invocation -> Mono.just(invocation.<File>getArgument(0).withId(6L)));
+        Mockito.when(fileStorage.place(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        Mockito.when(fileStorage.createFile(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        Mockito.when(fileStorage.readChunk(5L, 0, 100L)).thenReturn(Flux.empty());
+        Mockito.when(fileRepository.updateContentSha256(eq(5L), any())).thenReturn(Mono.just(1));
+        File file = File.builder().contentLength(100L).contentOffset(0L).fingerprint("fp").build();
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put(DedupService.FINGERPRINT, "fp");
+        metadata.put(DedupService.SHA256, "00");
+
+        StepVerifier.create(uploadService.createUpload(file, metadata))
+                .assertNext(f -> assertThat(f.getContentOffset()).isZero())
+                .verifyComplete();
+
+        Mockito.verify(fileStorage, Mockito.never()).link(any(), any());
+        // 来源摘要在后台补算
+        Mockito.verify(fileRepository, Mockito.timeout(5000)).updateContentSha256(eq(5L), any());
+    }
+
+    @Test
+    void headInFilesystemModeReadsOffsetRecordWithoutRepository() {
+        tusServerProperties.getOffsetPersistence().setMode(TusServerProperties.OffsetPersistence.Mode.FILESYSTEM);
+        Mockito.when(fileStorage.readOffset(1L)).thenReturn(Mono.just(File.builder()
+                .id(1L).contentLength(100L).contentOffset(40L).lastUploadedChunkNumber(4L).build()));
+
+        StepVerifier.create(uploadService.findUpload(1L).map(File::getContentOffset))
+                .expectNext(40L)
+                .verifyComplete();
+
+        Mockito.verify(fileRepository, Mockito.never()).findById(anyLong());
+        Mockito.verify(fileRepository, Mockito.never()).findUploadStateById(anyLong());
+    }
+}
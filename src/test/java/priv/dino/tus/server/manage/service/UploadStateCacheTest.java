@@ -0,0 +1,91 @@
+package priv.dino.tus.server.manage.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import priv.dino.tus.server.manage.repository.FileRepository;
+import priv.dino.tus.server.storage.FileStorage;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+class UploadStateCacheTest {
+
+    private final FileRepository fileRepository = Mockito.mock(FileRepository.class);
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private UploadStateCache uploadStateCache;
+
+    @BeforeEach
+    void setUp() {
+        tusServerProperties.setDuration(1L);
+        uploadStateCache = new UploadStateCache(fileRepository,
+                new OffsetWriteBehindBuffer(fileRepository, Mockito.mock(FileStorage.class), tusServerProperties), tusServerProperties);
+    }
+
+    private static File file(Long id, long offset, LocalDateTime createdAt) {
+        return File.builder().id(id).contentLength(100L).contentOffset(offset).lastUploadedChunkNumber(1L).createdAt(createdAt).build();
+    }
+
+    @Test
+    void loadsOnceThenServesFromCache() {
+        Mockito.when(fileRepository.findById(1L)).thenReturn(Mono.just(file(1L, 10, LocalDateTime.now())));
+
+        StepVerifier.create(uploadStateCache.get(1L).map(File::getContentOffset)).expectNext(10L).verifyComplete();
+        uploadStateCache.advance(file(1L, 30, null));
+        StepVerifier.create(uploadStateCache.get(1L).map(File::getContentOffset)).expectNext(30L).verifyComplete();
+
+        Mockito.verify(fileRepository, Mockito.times(1)).findById(1L);
+    }
+
+    @Test
+    void getIfPresentReadsTheCacheOnSubscription() {
+        Mono<File> cached = uploadStateCache.getIfPresent(1L);
+        StepVerifier.create(cached).verifyComplete();
+
+        uploadStateCache.put(file(1L, 10, LocalDateTime.now()));
+        StepVerifier.create(cached.map(File::getContentOffset)).expectNext(10L).verifyComplete();
+
+        uploadStateCache.invalidate(1L);
+        StepVerifier.create(cached).verifyComplete();
+        Mockito.verifyNoInteractions(fileRepository);
+    }
+
+    @Test
+    void expiredUploadsAreNotKept() {
+        uploadStateCache.put(file(1L, 10, LocalDateTime.now().minusDays(2)));
+
+        StepVerifier.create(uploadStateCache.getIfPresent(1L)).verifyComplete();
+    }
+
+    @Test
+    void advanceDuringLoadIsNotOverwrittenByTheLoadedState() {
+        final Sinks.One<File> loading = Sinks.one();
+        Mockito.when(fileRepository.findById(1L)).thenReturn(loading.asMono());
+
+        StepVerifier.create(uploadStateCache.get(1L).map(File::getContentOffset))
+                .then(() -> uploadStateCache.advance(file(1L, 30, null)))
+                .then(() -> loading.tryEmitValue(file(1L, 10, LocalDateTime.now())))
+                .expectNext(30L)
+                .verifyComplete();
+        StepVerifier.create(uploadStateCache.getIfPresent(1L).map(File::getContentOffset)).expectNext(30L).verifyComplete();
+    }
+
+    @Test
+    void slowerLoadKeepsTheHigherCachedOffset() {
+        final Sinks.One<File> slow = Sinks.one();
+        Mockito.when(fileRepository.findById(1L)).thenReturn(slow.asMono(), Mono.just(file(1L, 10, LocalDateTime.now())));
+
+        StepVerifier.create(uploadStateCache.get(1L).map(File::getContentOffset))
+                .then(() -> {
+                    StepVerifier.create(uploadStateCache.get(1L).map(File::getContentOffset)).expectNext(10L).verifyComplete();
+                    uploadStateCache.advance(file(1L, 30, null));
+                    slow.tryEmitValue(file(1L, 10, LocalDateTime.now()));
+                })
+                .expectNext(30L)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,119 @@
+package priv.dino.tus.server.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressingFileStorageTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private LocalStorageImpl localStorage;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() {
+        tusServerProperties.getCompression().setFrameSize(1000);
+        localStorage = new TusFixture(tusServerProperties).directory(fileDirectory).localStorage();
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; csv.length() < 5000; i++) {
+            csv.append(i).append(",row-").append(i % 7).append('\n');
+        }
+        content = Arrays.copyOf(csv.toString().getBytes(StandardCharsets.US_ASCII), 5000);
+    }
+
+    private CompressingFileStorage storage() {
+        return new CompressingFileStorage(localStorage, tusServerProperties);
+    }
+
+    private static Flux<DataBuffer> parts(byte[] bytes, int from, int to) {
+        return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(bytes, from, to)));
+    }
+
+    private static byte[] join(Flux<DataBuffer> buffers) {
+        return DataBufferUtils.join(buffers).map(buffer -> {
+            final byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            return bytes;
+        }).defaultIfEmpty(new byte[0]).block();
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    void framedUploadResumesAndReadsAnyRangeAfterRestart() throws IOException {
+        CompressingFileStorage storage = storage();
+        storage.createFile(File.builder().id(1L).mimeType("text/csv").build()).block();
+
+        assertThat(storage.writeChunk(1L, parts(content, 0, 2500), 0).block()).isEqualTo(2500);
+        assertThat(storage.writeChunk(1L, parts(content, 2500, 3000), 2500).block()).isEqualTo(500);
+        storage.truncate(1L, 2500).block();
+        // a crash in the middle of a frame leaves a torn tail behind
+        try (FileChannel channel = FileChannel.open(storage.getPath(1L), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x1f, (byte) 0x8b, 8}));
+        }
+
+        storage = storage();
+        assertThat(storage.size(1L).block()).isEqualTo(2500L);
+        assertThat(storage.writeChunk(1L, parts(content, 2500, 5000), 2500).block()).isEqualTo(2500);
+        assertThat(Files.size(storage.getPath(1L))).isLessThan(content.length);
+
+        storage = storage();
+        assertThat(storage.contentEncoding(1L).block()).isEqualTo(CompressingFileStorage.ENCODING);
+        assertThat(join(storage.readChunk(1L, 0, 5000))).isEqualTo(content);
+        assertThat(join(storage.readChunk(1L, 1900, 1300))).isEqualTo(Arrays.copyOfRange(content, 1900, 3200));
+
+        final FileSegment region = storage.encodedRegion(1L).block();
+        final byte[] stored = Files.readAllBytes(storage.getPath(1L));
+        assertThat(gunzip(Arrays.copyOfRange(stored, (int) region.getPosition(), (int) (region.getPosition() + region.getCount())))).isEqualTo(content);
+    }
+
+    @Test
+    void compressedOrUnmatchedContentIsStoredAsIs() throws IOException {
+        final CompressingFileStorage storage = storage();
+        storage.createFile(File.builder().id(1L).mimeType("text/plain").build()).block();
+        storage.createFile(File.builder().id(2L).mimeType("image/png").build()).block();
+        final byte[] gzip = new byte[]{0x1f, (byte) 0x8b, 8, 0, 1, 2, 3, 4};
+
+        assertThat(storage.writeChunk(1L, parts(gzip, 0, 8), 0).block()).isEqualTo(8);
+        assertThat(storage.writeChunk(2L, parts(content, 0, 100), 0).block()).isEqualTo(100);
+
+        assertThat(Files.readAllBytes(storage.getPath(1L))).isEqualTo(gzip);
+        assertThat(Files.readAllBytes(storage.getPath(2L))).isEqualTo(Arrays.copyOf(content, 100));
+        assertThat(storage().contentEncoding(1L).blockOptional()).isEmpty();
+    }
+}
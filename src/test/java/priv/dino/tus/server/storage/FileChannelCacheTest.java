@@ -0,0 +1,77 @@
+package priv.dino.tus.server.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileChannelCacheTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    private final TusServerProperties.ChannelCache properties = new TusServerProperties.ChannelCache();
+
+    private FileChannelCache fileChannelCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createFile(fileDirectory.resolve("1"));
+        Files.createFile(fileDirectory.resolve("2"));
+        properties.setMaxOpen(1);
+        fileChannelCache = new FileChannelCache(properties);
+    }
+
+    @Test
+    void reusesChannelForSameUpload() {
+        FileChannelCache.Lease first = fileChannelCache.acquire(1L, fileDirectory.resolve("1"));
+        first.close();
+        FileChannelCache.Lease second = fileChannelCache.acquire(1L, fileDirectory.resolve("1"));
+        assertSame(first.getChannel(), second.getChannel());
+        assertTrue(second.getChannel().isOpen());
+        second.close();
+    }
+
+    @Test
+    void invalidateClosesAfterLastRelease() {
+        FileChannelCache.Lease lease = fileChannelCache.acquire(1L, fileDirectory.resolve("1"));
+        fileChannelCache.invalidate(1L);
+        assertTrue(lease.getChannel().isOpen());
+        lease.close();
+        assertFalse(lease.getChannel().isOpen());
+    }
+
+    @Test
+    void evictsIdleChannelWhenLimitReached() {
+        FileChannelCache.Lease first = fileChannelCache.acquire(1L, fileDirectory.resolve("1"));
+        first.close();
+        FileChannelCache.Lease second = fileChannelCache.acquire(2L, fileDirectory.resolve("2"));
+        assertFalse(first.getChannel().isOpen());
+        second.close();
+        assertTrue(second.getChannel().isOpen());
+    }
+
+    @Test
+    void usesUncachedChannelWhenLimitReachedAndAllInUse() {
+        FileChannelCache.Lease first = fileChannelCache.acquire(1L, fileDirectory.resolve("1"));
+        FileChannelCache.Lease second = fileChannelCache.acquire(2L, fileDirectory.resolve("2"));
+        second.close();
+        assertFalse(second.getChannel().isOpen());
+        assertTrue(first.getChannel().isOpen());
+        first.close();
+    }
+
+    @Test
+    void failedOpenDoesNotCountAsOpenChannel() {
+        assertThrows(RuntimeException.class, () -> fileChannelCache.acquire(3L, fileDirectory.resolve("missing")));
+        FileChannelCache.Lease lease = fileChannelCache.acquire(1L, fileDirectory.resolve("1"));
+        lease.close();
+        assertTrue(lease.getChannel().isOpen());
+    }
+}
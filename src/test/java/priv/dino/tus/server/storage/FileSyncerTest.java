@@ -0,0 +1,74 @@
+package priv.dino.tus.server.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSyncerTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    @Test
+    void groupCommitReleasesWaitersAfterOneFsyncPerFile() throws Exception {
+        TusServerProperties.Durability properties = new TusServerProperties.Durability();
+        properties.setMode(TusServerProperties.Durability.Mode.GROUP_COMMIT);
+        properties.setInterval(50);
+        FileSyncer fileSyncer = new FileSyncer(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        fileSyncer.bindTo(registry);
+        try (AsynchronousFileChannel first = AsynchronousFileChannel.open(Files.createFile(fileDirectory.resolve("1")), WRITE);
+             AsynchronousFileChannel second = AsynchronousFileChannel.open(Files.createFile(fileDirectory.resolve("2")), WRITE)) {
+
+            StepVerifier.create(Flux.merge(fileSyncer.sync(1L, first), fileSyncer.sync(1L, first), fileSyncer.sync(2L, second)))
+                    .expectSubscription()
+                    .expectNoEvent(Duration.ofMillis(10))
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+        } finally {
+            fileSyncer.destroy();
+        }
+
+        assertThat(registry.get("tus.storage.fsync.duration").timer().count()).isEqualTo(2);
+        assertThat(registry.get("tus.storage.fsync.group").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void cancelledWaiterIsNotSyncedAndReleaseLeavesFlusherThread() throws Exception {
+        TusServerProperties.Durability properties = new TusServerProperties.Durability();
+        properties.setMode(TusServerProperties.Durability.Mode.GROUP_COMMIT);
+        properties.setInterval(60_000);
+        FileSyncer fileSyncer = new FileSyncer(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        fileSyncer.bindTo(registry);
+        try {
+            AsynchronousFileChannel closed = AsynchronousFileChannel.open(Files.createFile(fileDirectory.resolve("1")), WRITE);
+            fileSyncer.sync(1L, closed).subscribe().dispose();
+            closed.close();
+            try (AsynchronousFileChannel open = AsynchronousFileChannel.open(Files.createFile(fileDirectory.resolve("2")), WRITE)) {
+                Mono<String> released = fileSyncer.sync(2L, open).then(Mono.fromCallable(() -> Thread.currentThread().getName()));
+
+                StepVerifier.create(released)
+                        .then(fileSyncer::flush)
+                        .assertNext(thread -> assertThat(thread).startsWith("parallel"))
+                        .verifyComplete();
+            }
+        } finally {
+            fileSyncer.destroy();
+        }
+
+        assertThat(registry.get("tus.storage.fsync.duration").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,106 @@
+package priv.dino.tus.server.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalStorageImplTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private LocalStorageImpl storage() {
+        return new TusFixture(tusServerProperties).directory(fileDirectory).bufferFactory(bufferFactory).meterRegistry(meterRegistry).localStorage();
+    }
+
+    @Test
+    void smallBuffersAreCombinedIntoWriteUnits() throws Exception {
+        tusServerProperties.getBuffer().setWriteSize(4096);
+        LocalStorageImpl storage = this.storage();
+        storage.createFile(File.builder().id(1L).build()).block();
+        byte[] content = new byte[10000];
+        ThreadLocalRandom.current().nextBytes(content);
+
+        Integer written = storage.writeChunk(1L, Flux.range(0, 10)
+                .map(i -> bufferFactory.wrap(Arrays.copyOfRange(content, i * 1000, i * 1000 + 1000))), 0).block();
+        storage.release(1L).block();
+
+        assertThat(written).isEqualTo(10000);
+        assertThat(Files.readAllBytes(storage.getPath(1L))).isEqualTo(content);
+        assertThat(meterRegistry.get("tus.upload.writes").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void partialsOfDifferentSizesAreMergedAtTheirPositions() throws Exception {
+        tusServerProperties.getBuffer().setMergeSize(4096);
+        tusServerProperties.getMerge().setParallelism(3);
+        LocalStorageImpl storage = this.storage();
+        int[] sizes = {10000, 1, 0, 70001};
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        List<File> partials = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] content = new byte[sizes[i]];
+            ThreadLocalRandom.current().nextBytes(content);
+            Files.write(fileDirectory.resolve(String.valueOf(i + 1)), content);
+            expected.write(content);
+            partials.add(File.builder().id(i + 1L).contentLength((long) sizes[i]).build());
+        }
+        storage.createFile(File.builder().id(10L).build()).block();
+
+        StepVerifier.create(storage.mergeChunk(10L, partials)).expectNext((long) expected.size()).verifyComplete();
+
+        assertThat(Files.size(storage.getPath(10L))).isEqualTo(expected.size());
+        assertThat(Files.readAllBytes(storage.getPath(10L))).isEqualTo(expected.toByteArray());
+    }
+
+    @Test
+    void offsetRecordIsCappedByFileSizeAndIgnoredWhenTorn() throws Exception {
+        LocalStorageImpl storage = this.storage();
+        storage.createFile(File.builder().id(1L).build()).block();
+        storage.writeChunk(1L, Flux.just(bufferFactory.wrap(new byte[30])), 0).block();
+        storage.release(1L).block();
+        LocalDateTime createdAt = LocalDateTime.of(2026, 10, 19, 2, 10, 0, 123456789);
+
+        storage.writeOffset(File.builder().id(1L).contentLength(100L).contentOffset(20L).lastUploadedChunkNumber(2L)
+                .createdAt(createdAt).build()).block();
+        StepVerifier.create(storage.readOffset(1L))
+                .assertNext(f -> {
+                    assertThat(f.getContentOffset()).isEqualTo(20L);
+                    assertThat(f.getContentLength()).isEqualTo(100L);
+                    assertThat(f.getCreatedAt()).isEqualTo(createdAt);
+                })
+                .verifyComplete();
+
+        storage.writeOffset(File.builder().id(1L).contentLength(100L).contentOffset(60L).lastUploadedChunkNumber(3L).build()).block();
+        StepVerifier.create(storage.readOffset(1L).map(File::getContentOffset)).expectNext(30L).verifyComplete();
+
+        Path record = LocalStorageImpl.offsetOf(storage.getPath(1L));
+        Files.write(record, Arrays.copyOf(Files.readAllBytes(record), OffsetRecord.SIZE - 1));
+        StepVerifier.create(storage.readOffset(1L)).verifyComplete();
+
+        storage.delete(1L).block();
+        assertThat(record).doesNotExist();
+    }
+}
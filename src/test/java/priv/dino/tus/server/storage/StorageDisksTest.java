@@ -0,0 +1,146 @@
+package priv.dino.tus.server.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.util.ConcatManifestUtils;
+import priv.dino.tus.server.manage.domain.File;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageDisksTest {
+
+    @TempDir
+    Path first;
+
+    @TempDir
+    Path second;
+
+    private final TusServerProperties tusServerProperties = new TusServerProperties();
+    private SimpleMeterRegistry meterRegistry;
+    private StorageDisks storageDisks;
+    private TrashCollector trashCollector;
+
+    @AfterEach
+    void tearDown() {
+        trashCollector.destroy();
+        storageDisks.destroy();
+    }
+
+    private LocalStorageImpl start() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        tusServerProperties.getDisks().setPlacement(TusServerProperties.Disks.Placement.ROUND_ROBIN);
+        storageDisks = new StorageDisks(Arrays.asList(new StoragePaths(first, new HashFanOutStorageLayout()),
+                new StoragePaths(second, new HashFanOutStorageLayout())), tusServerProperties.getDisks());
+        storageDisks.bindTo(meterRegistry);
+        trashCollector = new TrashCollector(storageDisks.getRoots(), tusServerProperties.getTrash());
+        trashCollector.afterPropertiesSet();
+        return new TusFixture(tusServerProperties).storageDisks(storageDisks).trashCollector(trashCollector)
+                .meterRegistry(meterRegistry).localStorage();
+    }
+
+    @Test
+    void uploadsArePlacedAcrossDisksAndFoundByRecordedPlacement() throws IOException {
+        LocalStorageImpl storage = start();
+        final byte[] content = "jbod".getBytes(StandardCharsets.US_ASCII);
+
+        final File one = storage.place(File.builder().id(1L).build());
+        final File two = storage.place(File.builder().id(2L).build());
+        storage.createFile(one).block();
+        storage.createFile(two).block();
+        storage.writeChunk(2L, Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(content)), 0).block();
+        storage.release(2L).block();
+        storage.link(2L, 3L).block();
+
+        assertThat(Arrays.asList(one.getDisk(), two.getDisk())).containsExactly(0, 1);
+        assertThat(storage.getPath(1L)).startsWith(first);
+        assertThat(storage.getPath(2L)).startsWith(second);
+        assertThat(storage.getPath(3L)).startsWith(second);
+        assertThat(Files.readAllBytes(storage.getPath(3L))).isEqualTo(content);
+        assertThat(meterRegistry.get("tus.disk.written").tag("disk", "1").functionCounter().count()).isEqualTo(content.length);
+        assertThat(meterRegistry.get("tus.disk.written").tag("disk", "0").functionCounter().count()).isZero();
+
+        // placement recorded on the upload is used as is, the cache is only a shortcut
+        trashCollector.destroy();
+        storageDisks.destroy();
+        storage = start();
+        storageDisks.record(2L, two.getDisk());
+        final List<byte[]> read = storage.readChunk(2L, 0, content.length)
+                .map(buffer -> {
+                    final byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .collectList().block();
+        assertThat(read).hasSize(1);
+        assertThat(read.get(0)).isEqualTo(content);
+        assertThat(meterRegistry.get("tus.disk.probes").functionCounter().count()).isZero();
+
+        // an upload missing from the cache is searched on every disk
+        assertThat(storage.getPath(3L)).startsWith(second);
+        assertThat(meterRegistry.get("tus.disk.probes").functionCounter().count()).isEqualTo(1);
+
+        // terminated uploads are renamed into the trash of their own disk
+        final Path linked = storage.getPath(3L);
+        storage.discard(3L).block();
+        assertThat(linked).doesNotExist();
+        assertThat(storage.getPath(2L)).exists();
+        assertThat(meterRegistry.get("tus.disk.read").tag("disk", "1").functionCounter().count()).isEqualTo(content.length);
+    }
+
+    @Test
+    void missingUploadIsProbedOffTheCallerAndNotPinnedToTheFirstDisk() throws IOException {
+        LocalStorageImpl storage = start();
+        final Thread caller = Thread.currentThread();
+
+        final StorageDisks.Disk missing = storageDisks.locate(4L)
+                .doOnNext(disk -> assertThat(Thread.currentThread()).isNotSameAs(caller))
+                .block();
+        assertThat(missing.getIndex()).isZero();
+
+        // the file shows up on the second disk later, e.g. written by another node
+        Files.createFile(storageDisks.getDisks().get(1).getPaths().prepare(4L));
+        assertThat(storage.size(4L).block()).isZero();
+        assertThat(storage.getPath(4L)).startsWith(second);
+        assertThat(meterRegistry.get("tus.disk.probes").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void compactionFindsPartialsOnTheirOwnDisks() throws IOException {
+        LocalStorageImpl storage = start();
+        final byte[] head = "head".getBytes(StandardCharsets.US_ASCII);
+        final byte[] tail = "tail".getBytes(StandardCharsets.US_ASCII);
+        storage.createFile(storage.place(File.builder().id(1L).build())).block();
+        storage.createFile(storage.place(File.builder().id(2L).build())).block();
+        storage.writeChunk(1L, Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(head)), 0).block();
+        storage.writeChunk(2L, Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(tail)), 0).block();
+        storage.release(1L).block();
+        storage.release(2L).block();
+
+        // compaction runs after a restart, the manifest only carries ids and lengths
+        trashCollector.destroy();
+        storageDisks.destroy();
+        storage = start();
+        final File compacted = storage.place(File.builder().id(3L).build());
+        storage.createFile(compacted).block();
+        storage.mergeChunk(3L, ConcatManifestUtils.parse("1:4,2:4")).block();
+
+        assertThat(new String(Files.readAllBytes(storage.getPath(3L)), StandardCharsets.US_ASCII)).isEqualTo("headtail");
+        assertThat(storage.getPath(1L)).startsWith(first);
+        assertThat(storage.getPath(2L)).startsWith(second);
+    }
+}
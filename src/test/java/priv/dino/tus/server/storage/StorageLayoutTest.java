@@ -0,0 +1,68 @@
+package priv.dino.tus.server.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+import priv.dino.tus.server.core.util.SnowflakeIdWorker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageLayoutTest {
+
+    @TempDir
+    Path root;
+
+    private static long idAt(LocalDate date) {
+        final long millis = date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        return (millis - SnowflakeIdWorker.TWEPOCH) << SnowflakeIdWorker.TIMESTAMP_LEFT_SHIFT | 42;
+    }
+
+    @Test
+    void resolvesHashAndTimeBuckets() {
+        final long id = idAt(LocalDate.of(2026, 3, 7));
+
+        assertThat(new TimeBucketStorageLayout().resolve(root, id)).isEqualTo(root.resolve("2026/03/07/" + id));
+        assertThat(root.relativize(new HashFanOutStorageLayout().resolve(root, id)).toString())
+                .matches("[0-9a-f]{2}/[0-9a-f]{2}/" + id);
+        assertThat(new HashFanOutStorageLayout().resolve(root, id + 1).getParent())
+                .isNotEqualTo(new HashFanOutStorageLayout().resolve(root, id).getParent());
+    }
+
+    @Test
+    void migratesFlatFilesOnline() throws Exception {
+        final long id = idAt(LocalDate.of(2026, 3, 7));
+        Files.write(root.resolve(Long.toString(id)), new byte[]{1, 2, 3});
+        final StoragePaths storagePaths = new StoragePaths(root, new TimeBucketStorageLayout());
+
+        assertThat(storagePaths.locate(id)).isEqualTo(root.resolve(Long.toString(id)));
+
+        final TusServerProperties.Layout properties = new TusServerProperties.Layout();
+        properties.setMigrateRate(0);
+        assertThat(new StorageLayoutMigrator(storagePaths, properties).migrate()).isZero();
+
+        assertThat(storagePaths.isLegacyFallback()).isFalse();
+        assertThat(storagePaths.locate(id)).isEqualTo(root.resolve("2026/03/07/" + id)).hasBinaryContent(new byte[]{1, 2, 3});
+        assertThat(root.resolve(Long.toString(id))).doesNotExist();
+        assertThat(new StoragePaths(root, new TimeBucketStorageLayout()).isLegacyFallback()).isFalse();
+    }
+
+    @Test
+    void prunesOnlyEmptyExpiredBuckets() throws Exception {
+        final StoragePaths storagePaths = new StoragePaths(root, new TimeBucketStorageLayout());
+        Files.createDirectories(storagePaths.prepare(idAt(LocalDate.of(2025, 12, 31))).getParent());
+        final Path kept = storagePaths.prepare(idAt(LocalDate.of(2026, 1, 2)));
+        Files.createFile(kept);
+        final Path emptyDay = storagePaths.prepare(idAt(LocalDate.of(2026, 1, 5))).getParent();
+
+        storagePaths.prune(LocalDate.of(2026, 1, 10));
+
+        assertThat(root.resolve("2025")).doesNotExist();
+        assertThat(kept).exists();
+        assertThat(emptyDay).doesNotExist();
+    }
+}
@@ -0,0 +1,63 @@
+package priv.dino.tus.server.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import priv.dino.tus.server.TusFixture;
+import priv.dino.tus.server.core.configuration.properties.TusServerProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrashCollectorTest {
+
+    @TempDir
+    Path fileDirectory;
+
+    private TrashCollector trashCollector;
+
+    @AfterEach
+    void tearDown() {
+        trashCollector.destroy();
+    }
+
+    private void start() throws IOException {
+        trashCollector = new TrashCollector(fileDirectory, new TusServerProperties().getTrash());
+        trashCollector.afterPropertiesSet();
+    }
+
+    private static void awaitDeleted(Path path) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Files.exists(path) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(path).doesNotExist();
+    }
+
+    @Test
+    void discardMovesToTrashAndUnlinksInBackground() throws Exception {
+        start();
+        LocalStorageImpl storage = new TusFixture(new TusServerProperties()).directory(fileDirectory).trashCollector(trashCollector).localStorage();
+        Files.write(fileDirectory.resolve("1"), new byte[1024]);
+
+        storage.discard(1L).block();
+        storage.discard(2L).block();
+
+        assertThat(fileDirectory.resolve("1")).doesNotExist();
+        awaitDeleted(trashCollector.getTrashDirectory().resolve("1"));
+    }
+
+    @Test
+    void leftoversAreDeletedOnStart() throws Exception {
+        Path trash = Files.createDirectories(fileDirectory.resolve(TrashCollector.TRASH_DIRECTORY));
+        Files.write(trash.resolve("7"), new byte[16]);
+
+        start();
+
+        awaitDeleted(trash.resolve("7"));
+    }
+}